@@ -13,7 +13,33 @@ precision mediump float;
 
 // MS
 #if defined(instanced)
+  #if defined(instancedCompact)
+    attribute vec4 i_posScale;     // xyz: translation, w: uniform scale
+    attribute vec4 i_rotation;     // quaternion
+    #if defined(instancedAnimated)
+    attribute vec4 i_spin;         // xyz: rotation axis, w: radians per second
+    uniform HIGH float u_time;
+    #endif
+
+    // rotates v by the unit quaternion q
+    vec3 quatRotate(vec4 q, vec3 v) {
+        return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);
+    }
+
+    // i_rotation, followed by the spin around the instance's own axis when animated
+    vec4 instanceRotation() {
+    #if defined(instancedAnimated)
+        HIGH float halfAngle = i_spin.w * u_time * 0.5;
+        vec4 spin = vec4(i_spin.xyz * sin(halfAngle), cos(halfAngle));
+        return vec4(i_rotation.w * spin.xyz + spin.w * i_rotation.xyz + cross(i_rotation.xyz, spin.xyz),
+            i_rotation.w * spin.w - dot(i_rotation.xyz, spin.xyz));
+    #else
+        return i_rotation;
+    #endif
+    }
+  #else
     attribute mat4 i_worldTrans;
+  #endif
 #endif // instanced
 uniform mat4 u_worldTrans;
 uniform mat4 u_projViewTrans;
@@ -213,8 +239,10 @@ void main() {
     #endif
 
     // MS
-    #if defined(instanced)
-      pos *= i_worldTrans;
+    #if defined(instancedCompact)
+      pos = vec4(quatRotate(instanceRotation(), pos.xyz * i_posScale.w) + i_posScale.xyz * pos.w, pos.w);
+    #elif defined(instanced)
+      pos = i_worldTrans * pos;
     #endif
     // end MS
 
@@ -1,11 +1,59 @@
 in vec3 a_position;
 in vec2 a_texCoords0;
+#ifdef instancedCompact
+in vec4 i_posScale;     // xyz: translation, w: uniform scale
+in vec4 i_rotation;     // quaternion
+#ifdef instancedAnimated
+in vec4 i_spin;         // xyz: rotation axis, w: radians per second
+uniform float u_time;
+#endif
+#else
 in mat4 i_worldTrans;
+#endif
 
 uniform mat4 u_projViewTrans;
+#ifdef instancedBillboard
+// impostor level of detail: a_position.xy is a quad drawn facing the camera
+uniform vec3 u_cameraRight;
+uniform vec3 u_cameraUp;
+#endif
 out vec2 TexCoords;
 
+#ifdef instancedCompact
+// rotates v by the unit quaternion q
+vec3 quatRotate(vec4 q, vec3 v) {
+    return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);
+}
+
+// i_rotation, followed by the spin around the instance's own axis when animated
+vec4 instanceRotation() {
+#ifdef instancedAnimated
+    float halfAngle = i_spin.w * u_time * 0.5;
+    vec4 spin = vec4(i_spin.xyz * sin(halfAngle), cos(halfAngle));
+    return vec4(i_rotation.w * spin.xyz + spin.w * i_rotation.xyz + cross(i_rotation.xyz, spin.xyz),
+        i_rotation.w * spin.w - dot(i_rotation.xyz, spin.xyz));
+#else
+    return i_rotation;
+#endif
+}
+#endif
+
 void main () {
     TexCoords = a_texCoords0;
+#if defined(instancedBillboard)
+#ifdef instancedCompact
+    vec3 center = i_posScale.xyz;
+    float scale = i_posScale.w;
+#else
+    vec3 center = i_worldTrans[3].xyz;
+    float scale = length(i_worldTrans[0].xyz);
+#endif
+    vec3 worldPos = center + (u_cameraRight * a_position.x + u_cameraUp * a_position.y) * scale;
+    gl_Position = u_projViewTrans * vec4(worldPos, 1.0);
+#elif defined(instancedCompact)
+    vec3 worldPos = quatRotate(instanceRotation(), a_position * i_posScale.w) + i_posScale.xyz;
+    gl_Position = u_projViewTrans * vec4(worldPos, 1.0);
+#else
     gl_Position = u_projViewTrans * i_worldTrans * vec4(a_position, 1.0);
+#endif
 }
@@ -22,7 +22,33 @@
 
 // MS
 #if defined(instanced)
+  #if defined(instancedCompact)
+    attribute vec4 i_posScale;     // xyz: translation, w: uniform scale
+    attribute vec4 i_rotation;     // quaternion
+    #if defined(instancedAnimated)
+    attribute vec4 i_spin;         // xyz: rotation axis, w: radians per second
+    uniform HIGH float u_time;
+    #endif
+
+    // rotates v by the unit quaternion q
+    vec3 quatRotate(vec4 q, vec3 v) {
+        return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);
+    }
+
+    // i_rotation, followed by the spin around the instance's own axis when animated
+    vec4 instanceRotation() {
+    #if defined(instancedAnimated)
+        HIGH float halfAngle = i_spin.w * u_time * 0.5;
+        vec4 spin = vec4(i_spin.xyz * sin(halfAngle), cos(halfAngle));
+        return vec4(i_rotation.w * spin.xyz + spin.w * i_rotation.xyz + cross(i_rotation.xyz, spin.xyz),
+            i_rotation.w * spin.w - dot(i_rotation.xyz, spin.xyz));
+    #else
+        return i_rotation;
+    #endif
+    }
+  #else
     attribute mat4 i_worldTrans;
+  #endif
 #endif // instanced
 
 
@@ -310,12 +336,19 @@ void main() {
 		vec4 pos = u_worldTrans * vec4(morph_pos, 1.0);
 	#endif
 
-    // MS
+    // MS: the node transform (u_worldTrans, u_normalMatrix) comes first, then the instance, for models of several nodes
     vec3 normalVec = a_normal;
-    #if defined(instanced)
-        pos *= i_worldTrans;
-        //normalVec = a_normal * transpose(inverse(mat3(i_worldTrans)));
-        normalVec = a_normal * mat3(i_worldTrans);
+    mat3 instanceRot = mat3(1.0);
+    #if defined(instancedCompact)
+        vec4 rotation = instanceRotation();
+        pos = vec4(quatRotate(rotation, pos.xyz * i_posScale.w) + i_posScale.xyz * pos.w, pos.w);
+        // uniform scale, rotation only
+        instanceRot = mat3(quatRotate(rotation, vec3(1.0, 0.0, 0.0)), quatRotate(rotation, vec3(0.0, 1.0, 0.0)),
+            quatRotate(rotation, vec3(0.0, 0.0, 1.0)));
+    #elif defined(instanced)
+        pos = i_worldTrans * pos;
+        //instanceRot = transpose(inverse(mat3(i_worldTrans)));
+        instanceRot = mat3(i_worldTrans); // uniform scale, no inverse transpose needed
     #endif
     // end MS
 
@@ -408,12 +441,12 @@ void main() {
 			#endif
 
 
-			vec3 normalW = normalize(vec3(u_normalMatrix * normal.xyz));
-			vec3 tangentW = normalize(vec3(u_worldTrans * vec4(tangent, 0.0)));
+			vec3 normalW = normalize(instanceRot * vec3(u_normalMatrix * normal.xyz));             // MS: instanceRot
+			vec3 tangentW = normalize(instanceRot * vec3(u_worldTrans * vec4(tangent, 0.0)));  // MS: instanceRot
 			vec3 bitangentW = cross(normalW, tangentW) * a_tangent.w;
 			v_TBN = mat3(tangentW, bitangentW, normalW);
 		#else // tangentFlag != 1
-			v_normal = normalize(vec3(u_normalMatrix * normal.xyz));
+			v_normal = normalize(instanceRot * vec3(u_normalMatrix * normal.xyz));   // MS: instanceRot
 		#endif
 	#endif // normalFlag
 
@@ -0,0 +1,11 @@
+precision mediump float;
+
+out vec4 FragColor;
+uniform sampler2D u_texture;
+in vec2 TexCoords;
+in float Shade;
+
+void main () {
+    vec4 color = texture(u_texture, TexCoords);
+    FragColor = vec4(color.rgb * Shade, color.a);
+}
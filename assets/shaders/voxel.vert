@@ -0,0 +1,15 @@
+in vec3 a_position;
+in vec2 a_texCoords0;
+in float a_shade;
+
+uniform mat4 u_projViewTrans;
+uniform mat4 u_worldTrans;
+out vec2 TexCoords;
+out float Shade;
+
+// greedy meshed chunk of the voxel terrain: positions and texture coordinates are in voxels, the texture repeats
+void main () {
+    TexCoords = a_texCoords0;
+    Shade = a_shade;
+    gl_Position = u_projViewTrans * u_worldTrans * vec4(a_position, 1.0);
+}
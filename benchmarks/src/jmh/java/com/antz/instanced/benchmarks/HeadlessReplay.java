@@ -0,0 +1,116 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.CameraPath;
+import com.antz.instanced.CameraReplay;
+import com.antz.instanced.ForkJoinTaskRunner;
+import com.antz.instanced.FrameMetrics;
+import com.antz.instanced.FrameMetrics.Metric;
+import com.antz.instanced.InstanceBuffer;
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceGrid;
+import com.antz.instanced.InstanceStore;
+import com.antz.instanced.InstanceUpdater;
+import com.antz.instanced.SerialTaskRunner;
+import com.antz.instanced.TaskRunner;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+
+/** The camera, culling and update side of the benchmark mode of ModelInstancedRenderingBasicScreen, on the libGDX
+ * headless backend: no window or GPU, so it runs anywhere.
+ *
+ * It replays the camera path over the box field with the screen's camera and culling, logs the {@link FrameMetrics}
+ * and writes them to {@code frame-metrics-headless.csv}. The instance totals it logs only depend on the path, the
+ * seed and the field, a change in them means the culling or the update changed. CameraReplayTest checks them over a
+ * smaller field.
+ *
+ * Run with: gradlew benchmarks:replay [-Pargs="camera path, instances per side, threads"] */
+public class HeadlessReplay extends ApplicationAdapter {
+
+    private final String cameraPath;
+    private final int instanceCountSide;
+    private final int threads;
+
+    private final FrameMetrics metrics = new FrameMetrics(10000);
+    private CameraReplay replay;
+    private PerspectiveCamera camera;
+    private InstanceBuffer instances;
+    private TaskRunner runner;
+    private InstanceUpdater updater;
+    private long instancesUpdated, instancesTested;
+
+    public HeadlessReplay(String cameraPath, int instanceCountSide, int threads) {
+        this.cameraPath = cameraPath;
+        this.instanceCountSide = instanceCountSide;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) {
+        String cameraPath = args.length > 0 ? args[0] : CameraReplay.DEFAULT_PATH;
+        int side = args.length > 1 ? Integer.parseInt(args[1]) : 101;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = 0; // as fast as possible, the replay has a fixed time step
+        new HeadlessApplication(new HeadlessReplay(cameraPath, side, threads), configuration);
+    }
+
+    @Override
+    public void create() {
+        replay = new CameraReplay(CameraPath.load(Gdx.files.internal(cameraPath)), 1 / 60f, 42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        float size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+
+        // same camera and culling as the Basic screen on desktop
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 2f;
+
+        InstanceStore store = new InstanceStore(instanceCount);
+        replay.seedRandom();
+        float spacing = InstanceFields.boxField(store, instanceCountSide);
+
+        instances = new InstanceBuffer(null, instanceCount, 16); // never flushed, no mesh needed
+        runner = threads == 1 ? new SerialTaskRunner() : new ForkJoinTaskRunner(threads);
+        updater = new InstanceUpdater(store, runner, Vector3.X, Vector3.Y);
+        updater.setCulling(size * 2, camera.far * 0.25f);
+        updater.setGrid(new InstanceGrid(store, 8f * spacing));
+    }
+
+    @Override
+    public void render() {
+        if (replay.isFinished()) return; // exit() takes effect after one more frame
+        metrics.beginFrame();
+
+        metrics.begin(Metric.INPUT);
+        float delta = replay.step(camera, Vector3.Zero, 1f);
+        metrics.end(Metric.INPUT);
+
+        metrics.begin(Metric.UPDATE);
+        instancesUpdated += updater.update(camera, 45 * delta, instances);
+        instancesTested += updater.getInstancesTested();
+        metrics.end(Metric.UPDATE);
+
+        metrics.begin(Metric.UPLOAD);
+        instances.clearDirty(); // what would have been sent to the GPU
+        metrics.end(Metric.UPLOAD);
+
+        metrics.endFrame(delta, null);
+
+        if (replay.isFinished()) {
+            Gdx.app.log("HeadlessReplay", replay.getFrame() + " frames, " + instancesUpdated + " instances updated, "
+                + instancesTested + " instances tested");
+            Gdx.app.log("HeadlessReplay", metrics.toString());
+            metrics.writeCsv(Gdx.files.local("frame-metrics-headless.csv"));
+            Gdx.app.exit();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        runner.dispose();
+    }
+}
@@ -0,0 +1,63 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceGrid;
+import com.antz.instanced.InstanceStore;
+import com.badlogic.gdx.math.MathUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Startup cost of the screens without GL: building the box field, the voxel terrain and the PBR model field, and
+ * sorting the box field into its {@link InstanceGrid}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstanceFieldBenchmark {
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private InstanceStore store;
+    private float size;
+
+    @Setup
+    public void setup() {
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        store = new InstanceStore(instanceCount);
+        size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+    }
+
+    @Benchmark
+    public InstanceStore boxField() {
+        InstanceFields.boxField(store, instanceCountSide);
+        return store;
+    }
+
+    @Benchmark
+    public InstanceStore voxelTerrain() {
+        InstanceFields.voxelTerrain(store, size);
+        return store;
+    }
+
+    @Benchmark
+    public InstanceStore modelField() {
+        InstanceFields.modelField(store, instanceCountSide, 2f * 9f);
+        return store;
+    }
+
+    @Benchmark
+    public InstanceGrid boxFieldGrid() {
+        float spacing = InstanceFields.boxField(store, instanceCountSide);
+        return new InstanceGrid(store, 8f * spacing);
+    }
+}
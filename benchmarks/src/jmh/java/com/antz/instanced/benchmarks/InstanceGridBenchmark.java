@@ -0,0 +1,92 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceBuffer;
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceGrid;
+import com.antz.instanced.InstanceStore;
+import com.antz.instanced.InstanceUpdater;
+import com.antz.instanced.SerialTaskRunner;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Culling of the box field one instance at a time against culling with an {@link InstanceGrid}, with the camera of
+ * ModelInstancedRenderingBasicScreen looking from inside the field towards one corner. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstanceGridBenchmark {
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private PerspectiveCamera camera;
+    private InstanceBuffer instances;
+    private InstanceUpdater bruteForce, gridded;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        float size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 2f;
+        camera.position.set(0, 0, 0);
+        camera.up.set(Vector3.Y);
+
+        InstanceStore gridStore = new InstanceStore(instanceCount);
+        InstanceFields.boxField(gridStore, instanceCountSide);
+        InstanceGrid grid = new InstanceGrid(gridStore, 8f / (instanceCountSide * 0.5f));
+
+        // same instances in the same (grid) order, culled one by one
+        InstanceStore store = new InstanceStore(instanceCount);
+        System.arraycopy(gridStore.positions, 0, store.positions, 0, store.positions.length);
+        System.arraycopy(gridStore.rotations, 0, store.rotations, 0, store.rotations.length);
+
+        instances = new InstanceBuffer(null, instanceCount, 16); // never flushed, no mesh needed
+        bruteForce = new InstanceUpdater(store, new SerialTaskRunner(), Vector3.X, Vector3.Y);
+        bruteForce.setCulling(size * 2, camera.far * 0.25f);
+        gridded = new InstanceUpdater(gridStore, new SerialTaskRunner(), Vector3.X, Vector3.Y);
+        gridded.setCulling(size * 2, camera.far * 0.25f);
+        gridded.setGrid(grid);
+
+        lookAt(1, 1, 1);
+    }
+
+    private void lookAt(float x, float y, float z) {
+        camera.direction.set(x, y, z).nor();
+        camera.up.set(Vector3.Y);
+        camera.update();
+    }
+
+    private int update(InstanceUpdater updater) {
+        int updated = updater.update(camera, 45 / 60f, instances);
+        instances.clearDirty();
+        return updated;
+    }
+
+    @Benchmark
+    public int bruteForce() {
+        return update(bruteForce);
+    }
+
+    @Benchmark
+    public int grid() {
+        return update(gridded);
+    }
+}
@@ -0,0 +1,54 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceLayout;
+import com.antz.instanced.InstanceStore;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Packing every instance of the store in each {@link InstanceLayout}, which is what
+ * {@link com.antz.instanced.InstanceBuffer#packAll()} and the full uploads cost on the CPU side. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstanceLayoutBenchmark {
+
+    @Param({"MATRIX", "COMPACT", "ANIMATED"})
+    public InstanceLayout layout;
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private InstanceStore store;
+    private float[] data;
+
+    @Setup
+    public void setup() {
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        store = new InstanceStore(instanceCount);
+        data = new float[instanceCount * layout.floatsPerInstance];
+
+        InstanceFields.boxField(store, instanceCountSide);
+        InstanceFields.alternateSpins(store, Vector3.X, Vector3.Y, 45);
+    }
+
+    @Benchmark
+    public float[] packAll() {
+        int floats = layout.floatsPerInstance;
+        for (int i = 0; i < store.getCount(); i++)
+            layout.pack(store, i, data, i * floats);
+        return data;
+    }
+}
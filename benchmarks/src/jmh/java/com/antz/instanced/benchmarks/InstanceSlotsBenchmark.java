@@ -0,0 +1,56 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceSlots;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Spawning and despawning through {@link InstanceSlots}, the bookkeeping of InstancedBatch: a thousand instances
+ * replaced at random per invocation, the time per add + remove should not depend on how many instances live.
+ * InstanceSlotsTest checks the handles. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InstanceSlotsBenchmark {
+
+    private static final int CHURN = 1000;
+
+    @Param({"1000", "1000000"})
+    public int liveCount;
+
+    private InstanceSlots slots;
+    private final IntArray handles = new IntArray();
+    private final RandomXS128 random = new RandomXS128(42);
+
+    @Setup
+    public void setup() {
+        slots = new InstanceSlots(16); // grows while filling
+        handles.clear();
+        for (int i = 0; i < liveCount; i++)
+            handles.add(slots.add());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHURN)
+    public int churn() {
+        int handle = 0;
+        for (int i = 0; i < CHURN; i++) {
+            int index = random.nextInt(handles.size);
+            slots.remove(handles.get(index));
+            handle = slots.add();
+            handles.set(index, handle);
+        }
+        return handle;
+    }
+}
@@ -0,0 +1,133 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceStore;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Rotation update of the box field: the old per element FloatBuffer loop against the {@link InstanceStore} one.
+ * Both cull with the same camera as ModelInstancedRenderingBasicScreen and produce the matrix of every updated instance. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstanceStoreBenchmark {
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private int instanceCount;
+    private float size, cullingFactor;
+    private PerspectiveCamera camera;
+
+    // FloatBuffer path
+    private FloatBuffer offsets;
+    private float[] floatTemp;
+    private Matrix4 mat4;
+
+    // InstanceStore path
+    private InstanceStore store;
+    private float[] data;
+    private Quaternion rotationX, rotationY;
+
+    private final Vector3 vec3Temp = new Vector3();
+    private final float delta = 1f / 60f;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+        MathUtils.random.setSeed(42);
+        instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 2f;
+        camera.position.set(0, 0, 0);
+        camera.direction.set(Vector3.Z);
+        camera.up.set(Vector3.Y);
+        camera.update();
+        cullingFactor = camera.far * 0.25f;
+
+        offsets = BufferUtils.newFloatBuffer(instanceCount * 16);
+        floatTemp = new float[16];
+        mat4 = new Matrix4();
+
+        store = new InstanceStore(instanceCount);
+        data = new float[instanceCount * 16];
+        rotationX = new Quaternion();
+        rotationY = new Quaternion();
+
+        InstanceFields.boxField(store, instanceCountSide);
+        Quaternion q = new Quaternion();
+        for (int i = 0; i < instanceCount; i++) {
+            offsets.put(mat4.set(store.getPosition(i, vec3Temp), store.getRotation(i, q)).getValues());
+            store.getMatrix(i, data, i * 16);
+        }
+        offsets.position(0);
+    }
+
+    @Benchmark
+    public int floatBufferPath() {
+        int updated = 0;
+        for (int x = 0; x < instanceCount; x++) {
+            int targetIndex = x * 16;
+            vec3Temp.set(offsets.get(targetIndex + 12), offsets.get(targetIndex + 13), offsets.get(targetIndex + 14));
+            if (!(camera.frustum.sphereInFrustum(vec3Temp, size * 2)) || vec3Temp.dst(camera.position) > cullingFactor) continue;
+            updated++;
+
+            for (int n = 0; n < 16; n++)
+                floatTemp[n] = offsets.get(targetIndex + n);
+            mat4.set(floatTemp);
+
+            if (x % 2 == 0)
+                mat4.rotate(Vector3.X, 45 * delta);
+            else
+                mat4.rotate(Vector3.Y, 45 * delta);
+
+            offsets.position(targetIndex);
+            offsets.put(mat4.getValues());
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public int instanceStorePath() {
+        rotationX.set(Vector3.X, 45 * delta);
+        rotationY.set(Vector3.Y, 45 * delta);
+        float[] positions = store.positions;
+
+        int updated = 0;
+        for (int x = 0; x < instanceCount; x++) {
+            int p = x * 3;
+            vec3Temp.set(positions[p], positions[p + 1], positions[p + 2]);
+            if (!(camera.frustum.sphereInFrustum(vec3Temp, size * 2)) || vec3Temp.dst(camera.position) > cullingFactor) continue;
+            updated++;
+
+            if (x % 2 == 0)
+                store.rotate(x, rotationX);
+            else
+                store.rotate(x, rotationY);
+
+            // what InstanceBuffer.flush() does for the dirty instances
+            store.getMatrix(x, data, x * 16);
+        }
+        return updated;
+    }
+}
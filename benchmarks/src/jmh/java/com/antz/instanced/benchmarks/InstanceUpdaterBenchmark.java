@@ -0,0 +1,80 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.ForkJoinTaskRunner;
+import com.antz.instanced.InstanceBuffer;
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceStore;
+import com.antz.instanced.InstanceUpdater;
+import com.antz.instanced.SerialTaskRunner;
+import com.antz.instanced.TaskRunner;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/** Scaling of the chunked {@link InstanceUpdater} from 1 thread ({@link SerialTaskRunner}) to N threads
+ * ({@link ForkJoinTaskRunner}), on the box field with culling turned off so every instance spins. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstanceUpdaterBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private PerspectiveCamera camera;
+    private InstanceBuffer instances;
+    private TaskRunner runner;
+    private InstanceUpdater updater;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+
+        // camera outside of the field looking at all of it
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 10f;
+        camera.position.set(0, 0, -4);
+        camera.direction.set(Vector3.Z);
+        camera.up.set(Vector3.Y);
+        camera.update();
+
+        InstanceStore store = new InstanceStore(instanceCount);
+        InstanceFields.boxField(store, instanceCountSide);
+
+        runner = threads == 1 ? new SerialTaskRunner() : new ForkJoinTaskRunner(threads);
+        instances = new InstanceBuffer(null, instanceCount, 16); // never flushed, no mesh needed
+        updater = new InstanceUpdater(store, runner, Vector3.X, Vector3.Y);
+        updater.setCulling(1f / (float)Math.sqrt(instanceCount) * 0.95f * 2, camera.far);
+    }
+
+    @TearDown
+    public void tearDown() {
+        runner.dispose();
+    }
+
+    @Benchmark
+    public int update() {
+        int updated = updater.update(camera, 45 / 60f, instances);
+        instances.clearDirty();
+        return updated;
+    }
+}
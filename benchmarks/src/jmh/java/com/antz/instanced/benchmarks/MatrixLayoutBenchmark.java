@@ -0,0 +1,109 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceStore;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Rotation update of the PBR zebra field (no culling, every instance updated) with the old transposed matrices,
+ * un-transposed and transposed again around every rotation, against the column major layout now shared with the
+ * Basic screen, with and without the {@link InstanceStore}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MatrixLayoutBenchmark {
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) instances
+    public int instanceCountSide;
+
+    private int instanceCount;
+    private float[] transposed, columnMajor, packed;
+    private InstanceStore store;
+    private final Matrix4 mat4 = new Matrix4();
+    private final float[] floatTemp = new float[16];
+    private final Quaternion rotationX = new Quaternion(), rotationZ = new Quaternion();
+    private final float delta = 1f / 60f;
+
+    @Setup
+    public void setup() {
+        MathUtils.random.setSeed(42);
+        instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        transposed = new float[instanceCount * 16];
+        columnMajor = new float[instanceCount * 16];
+        packed = new float[instanceCount * 16];
+        store = new InstanceStore(instanceCount);
+
+        Vector3 position = new Vector3();
+        Quaternion q = new Quaternion();
+        int index = 0;
+        for (int x = 1; x <= instanceCountSide; x++) {
+            for (int y = 1; y <= instanceCountSide; y++) {
+                for (int z = 1; z <= instanceCountSide; z++) {
+                    position.set(x * 18f, y * 18f, z * 18f);
+                    q.setFromAxisRad(Vector3.Y, MathUtils.random(0.0f, (float)Math.PI * 2.0f));
+                    mat4.set(position, q);
+                    System.arraycopy(mat4.val, 0, columnMajor, index * 16, 16);
+                    System.arraycopy(mat4.tra().val, 0, transposed, index * 16, 16);
+                    store.set(index++, position, q);
+                }
+            }
+        }
+        rotationX.set(Vector3.X, 45 * delta);
+        rotationZ.set(Vector3.Z, 45 * delta);
+    }
+
+    @Benchmark
+    public float[] transposedMatrix() {
+        for (int x = 0; x < instanceCount; x++) {
+            int targetIndex = x * 16;
+            System.arraycopy(transposed, targetIndex, floatTemp, 0, 16);
+            mat4.set(floatTemp);
+            mat4.tra(); // convert back to regular Matrix4
+
+            if (x % 2 == 0)
+                mat4.rotate(Vector3.X, 45 * delta);
+            else
+                mat4.rotate(Vector3.Z, 45 * delta);
+
+            System.arraycopy(mat4.tra().val, 0, transposed, targetIndex, 16); // transpose again
+        }
+        return transposed;
+    }
+
+    @Benchmark
+    public float[] columnMajorMatrix() {
+        for (int x = 0; x < instanceCount; x++) {
+            int targetIndex = x * 16;
+            System.arraycopy(columnMajor, targetIndex, mat4.val, 0, 16);
+
+            if (x % 2 == 0)
+                mat4.rotate(Vector3.X, 45 * delta);
+            else
+                mat4.rotate(Vector3.Z, 45 * delta);
+
+            System.arraycopy(mat4.val, 0, columnMajor, targetIndex, 16);
+        }
+        return columnMajor;
+    }
+
+    @Benchmark
+    public float[] instanceStore() {
+        for (int x = 0; x < instanceCount; x++) {
+            store.rotate(x, (x & 1) == 0 ? rotationX : rotationZ);
+            store.getMatrix(x, packed, x * 16);
+        }
+        return packed;
+    }
+}
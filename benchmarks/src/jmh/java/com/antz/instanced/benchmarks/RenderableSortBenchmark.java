@@ -0,0 +1,83 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstancedRenderableSorter;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Sorting the draws of a frame with {@link InstancedRenderableSorter}: renderables of a few shaders and materials in
+ * random order, as the renderable providers hand them to the batch. Setup logs the state changes before and after,
+ * InstancedRenderableSorterTest checks the order. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderableSortBenchmark {
+
+    private static final int SHADERS = 4, MATERIALS = 8;
+
+    @Param({"16", "1024"}) // instanced models, and a scene of regular model instances
+    public int renderableCount;
+
+    private final InstancedRenderableSorter sorter = new InstancedRenderableSorter();
+    private final Camera camera = new PerspectiveCamera();
+    private final Array<Renderable> shuffled = new Array<>();
+    private final Array<Renderable> renderables = new Array<>();
+
+    @Setup
+    public void setup() {
+        Shader[] shaders = new Shader[SHADERS];
+        for (int i = 0; i < SHADERS; i++)
+            shaders[i] = new NoShader();
+        Material[] materials = new Material[MATERIALS];
+        for (int i = 0; i < MATERIALS; i++)
+            materials[i] = new Material(ColorAttribute.createDiffuse(new Color(i / (float)MATERIALS, 0, 0, 1)));
+
+        RandomXS128 random = new RandomXS128(42);
+        shuffled.clear();
+        for (int i = 0; i < renderableCount; i++) {
+            Renderable renderable = new Renderable();
+            renderable.shader = shaders[random.nextInt(SHADERS)];
+            renderable.material = materials[random.nextInt(MATERIALS)];
+            shuffled.add(renderable);
+        }
+
+        sort();
+    }
+
+    @Benchmark
+    public Array<Renderable> sort() {
+        renderables.clear();
+        renderables.addAll(shuffled);
+        sorter.sort(camera, renderables);
+        return renderables;
+    }
+
+    // the sorter only compares shaders, nothing is drawn
+    private static class NoShader implements Shader {
+        @Override public void init() {}
+        @Override public int compareTo(Shader other) { return 0; }
+        @Override public boolean canRender(Renderable instance) { return true; }
+        @Override public void begin(Camera camera, RenderContext context) {}
+        @Override public void render(Renderable renderable) {}
+        @Override public void end() {}
+        @Override public void dispose() {}
+    }
+}
@@ -0,0 +1,123 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceLayout;
+import com.antz.instanced.shader.ShaderCache;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.BaseShaderProvider;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Looking up the shaders of renderables in a {@link ShaderCache}, building the key from the prefix and the sources as
+ * MyPBRShaderProvider does: renderables of a few permutations (instanced or not, instance layout, material flags)
+ * whose shaders a provider in use holds. ShaderCacheTest checks that every permutation is compiled once. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShaderCacheBenchmark {
+
+    private static final String VERTEX_SHADER = "void main() { gl_Position = vec4(0.0); }";
+    private static final String FRAGMENT_SHADER = "void main() { gl_FragColor = vec4(1.0); }";
+    private static final int MATERIALS = 4;
+
+    @Param({"64", "4096"})
+    public int renderableCount;
+
+    private final Array<Renderable> renderables = new Array<>();
+    private ShaderCache cache;
+
+    @Setup
+    public void setup() {
+        Material[] materials = new Material[MATERIALS];
+        materials[0] = new Material(ColorAttribute.createDiffuse(Color.WHITE));
+        materials[1] = new Material(ColorAttribute.createDiffuse(Color.RED)); // same flags, same shader
+        materials[2] = new Material(ColorAttribute.createDiffuse(Color.WHITE), new BlendingAttribute());
+        materials[3] = new Material(ColorAttribute.createDiffuse(Color.WHITE), FloatAttribute.createAlphaTest(0.5f));
+        RandomXS128 random = new RandomXS128(42);
+        renderables.clear();
+        for (int i = 0; i < renderableCount; i++) {
+            Renderable renderable = new Renderable();
+            renderable.material = materials[random.nextInt(MATERIALS)];
+            int layout = random.nextInt(InstanceLayout.values().length + 1);
+            renderable.userData = layout == 0 ? null : InstanceLayout.values()[layout - 1]; // null: not instanced
+            renderables.add(renderable);
+        }
+
+        // the shaders of a screen in use, for the lookups
+        cache = new ShaderCache();
+        CachingProvider provider = new CachingProvider();
+        for (Renderable renderable : renderables)
+            provider.getShader(renderable);
+    }
+
+    // what the prefix of MyPBRShaderProvider depends on: material attributes, instancing and instance layout
+    private static String prefix(Renderable renderable) {
+        String prefix = "#define materialMask " + renderable.material.getMask() + "\n";
+        if (renderable.userData != null)
+            prefix += "#define instanced\n" + ((InstanceLayout)renderable.userData).getShaderDefines();
+        return prefix;
+    }
+
+    @Benchmark
+    public int lookup() {
+        int found = 0;
+        for (Renderable renderable : renderables) {
+            Shader shader = cache.obtain(ShaderCache.key(prefix(renderable), VERTEX_SHADER, FRAGMENT_SHADER), renderable);
+            if (shader == null) continue;
+            cache.release(shader);
+            found++;
+        }
+        return found;
+    }
+
+    private class CachingProvider extends BaseShaderProvider {
+        @Override
+        protected Shader createShader(Renderable renderable) {
+            String prefix = prefix(renderable);
+            String key = ShaderCache.key(prefix, VERTEX_SHADER, FRAGMENT_SHADER);
+            Shader shader = cache.obtain(key, renderable);
+            if (shader == null) {
+                shader = new PrefixShader(prefix);
+                cache.add(key, shader);
+            }
+            return shader;
+        }
+    }
+
+    // stands for a compiled program, renders what has its prefix
+    private class PrefixShader implements Shader {
+        private final String prefix;
+
+        PrefixShader(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override public void init() {}
+        @Override public int compareTo(Shader other) { return 0; }
+        @Override public boolean canRender(Renderable renderable) { return prefix.equals(prefix(renderable)); }
+        @Override public void begin(Camera camera, RenderContext context) {}
+        @Override public void render(Renderable renderable) {}
+        @Override public void end() {}
+        @Override public void dispose() {
+            cache.release(this);
+        }
+    }
+}
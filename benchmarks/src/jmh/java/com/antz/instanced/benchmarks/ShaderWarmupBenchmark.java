@@ -0,0 +1,81 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceLayout;
+import com.antz.instanced.shader.ShaderWarmup;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.ObjectSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Enumerating the shader permutations of renderables with {@link ShaderWarmup}: the vertex attributes, instancing and
+ * instance layout, and material flags of the parts of the models of a scene. Meshes need a GL context, so the
+ * renderables are described by their attributes, what the key of a permutation is made from. ShaderWarmupTest checks
+ * the permutations. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShaderWarmupBenchmark {
+
+    @Param({"64", "4096"})
+    public int renderableCount;
+
+    private VertexAttributes[] vertexAttributes;
+    private VertexAttributes[] instancedAttributes; // null: not instanced
+    private Material[] materials;
+    private int[] vertex, instanced, material;      // the combination of every renderable
+
+    @Setup
+    public void setup() {
+        vertexAttributes = new VertexAttributes[] {
+            new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0)),
+            new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.Tangent(), VertexAttribute.TexCoords(0))};
+        InstanceLayout[] layouts = InstanceLayout.values();
+        instancedAttributes = new VertexAttributes[layouts.length + 1];
+        for (int i = 0; i < layouts.length; i++)
+            instancedAttributes[i + 1] = new VertexAttributes(layouts[i].createAttributes());
+        materials = new Material[] {
+            new Material(ColorAttribute.createDiffuse(Color.WHITE)),
+            new Material(ColorAttribute.createDiffuse(Color.RED)), // same flags, same shader
+            new Material(ColorAttribute.createDiffuse(Color.WHITE), new BlendingAttribute()),
+            new Material(ColorAttribute.createDiffuse(Color.WHITE), FloatAttribute.createAlphaTest(0.5f))};
+
+        RandomXS128 random = new RandomXS128(42);
+        vertex = new int[renderableCount];
+        instanced = new int[renderableCount];
+        material = new int[renderableCount];
+        for (int i = 0; i < renderableCount; i++) {
+            vertex[i] = random.nextInt(vertexAttributes.length);
+            instanced[i] = random.nextInt(instancedAttributes.length);
+            material[i] = random.nextInt(materials.length);
+        }
+    }
+
+    private String key(int renderable) {
+        return ShaderWarmup.key(vertexAttributes[vertex[renderable]], instancedAttributes[instanced[renderable]],
+            materials[material[renderable]]);
+    }
+
+    @Benchmark
+    public int enumerate() {
+        ObjectSet<String> keys = new ObjectSet<>();
+        for (int i = 0; i < renderableCount; i++)
+            keys.add(key(i));
+        return keys.size;
+    }
+}
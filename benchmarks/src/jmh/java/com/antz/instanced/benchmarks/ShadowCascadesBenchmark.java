@@ -0,0 +1,59 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.ShadowCascades;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Splitting the view and fitting the light boxes of {@link ShadowCascades}, once per frame, with the camera and light
+ * of ModelInstancedRenderingPBRScreen. ShadowCascadesTest checks the boxes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShadowCascadesBenchmark {
+
+    private static final int MAP_SIZE = 2048;
+    private static final float SHADOW_DISTANCE = 360;
+
+    @Param({"1", "4"})
+    public int cascadeCount;
+
+    private PerspectiveCamera camera;
+    private final Vector3 lightDirection = new Vector3(1, -1, 1).nor();
+    private ShadowCascades cascades;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.1f;
+        camera.far = 3636;
+        cascades = new ShadowCascades(cascadeCount, MAP_SIZE);
+        cascades.setCasterDistance(100);
+
+        camera.position.set(900, 50, 900);
+        camera.direction.set(1, -0.2f, 0.5f).nor();
+        camera.up.set(Vector3.Y);
+        camera.update();
+    }
+
+    @Benchmark
+    public ShadowCascades update() {
+        camera.direction.rotate(Vector3.Y, 0.5f);
+        camera.update();
+        cascades.update(camera, SHADOW_DISTANCE, lightDirection);
+        return cascades;
+    }
+}
@@ -0,0 +1,104 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceCompactor;
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.InstanceGrid;
+import com.antz.instanced.InstanceLayout;
+import com.antz.instanced.InstanceStore;
+import com.antz.instanced.ShadowCascades;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** The shadow casters of the zebra field of ModelInstancedRenderingPBRScreen: the instances in the frustum of the light
+ * camera of every shadow cascade, packed by an {@link InstanceCompactor} over the {@link InstanceGrid}, as
+ * InstancedModelRenderer does before every shadow pass. InstanceCompactorTest checks the casters against testing
+ * every instance. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShadowCasterBenchmark {
+
+    private static final float SIZE = 2, SEPARATION = 9;
+    private static final int CASCADES = 3, MAP_SIZE = 2048;
+    private static final InstanceLayout LAYOUT = InstanceLayout.COMPACT;
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) zebras
+    public int instanceCountSide;
+
+    private InstanceStore store;
+    private InstanceCompactor casters;
+    private PerspectiveCamera camera;
+    private ShadowCascades cascades;
+    private final OrthographicCamera[] lights = new OrthographicCamera[CASCADES];
+    private final Vector3 lightDirection = new Vector3(1, -1, 1).nor();
+    private float shadowDistance;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        store = new InstanceStore(instanceCount);
+        float spacing = InstanceFields.modelField(store, instanceCountSide, SIZE * SEPARATION);
+        casters = new InstanceCompactor(null, store, LAYOUT);
+        casters.setGrid(new InstanceGrid(store, 8f * spacing));
+
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.1f;
+        camera.far = instanceCountSide * SEPARATION * SIZE * 2;
+        shadowDistance = 20 * SEPARATION * SIZE;
+        cascades = new ShadowCascades(CASCADES, MAP_SIZE);
+        cascades.setCasterDistance(100);
+        for (int i = 0; i < CASCADES; i++)
+            lights[i] = new OrthographicCamera();
+
+        // in the middle of the field, looking along it
+        float fieldSize = instanceCountSide * spacing;
+        camera.position.set(0.5f, 0.1f, 0.5f).scl(fieldSize);
+        camera.direction.set(1, -0.2f, 0.5f).nor();
+        camera.up.set(Vector3.Y);
+        camera.update();
+    }
+
+    // the light cameras as DirectionalShadowLight#validate() places them
+    private void fitLights() {
+        cascades.update(camera, shadowDistance, lightDirection);
+        for (int i = 0; i < CASCADES; i++) {
+            OrthographicCamera light = lights[i];
+            float depth = cascades.getDepth(i);
+            light.viewportWidth = light.viewportHeight = cascades.getSize(i);
+            light.near = 0;
+            light.far = depth;
+            light.position.set(lightDirection).scl(-depth / 2).add(cascades.getCenter(i));
+            light.direction.set(lightDirection);
+            light.up.set(Vector3.Y);
+            light.normalizeUp();
+            light.update();
+        }
+    }
+
+    @Benchmark
+    public int cullCasters() {
+        camera.direction.rotate(Vector3.Y, 0.5f);
+        camera.update();
+        fitLights();
+        int count = 0;
+        for (OrthographicCamera light : lights)
+            count += casters.compact(light.frustum, SIZE * 2);
+        return count;
+    }
+}
@@ -0,0 +1,62 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.FrameMetrics;
+import com.antz.instanced.FrameMetrics.Metric;
+import com.antz.instanced.StatsHud;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.StringBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** A frame of the stats HUD text: recording the {@link FrameMetrics} of the frame and writing the lines the screens
+ * show into the {@link StatsHud} builders. Drawing them needs a GL context and is left out.
+ *
+ * Run with {@code -prof gc} to see that a frame allocates nothing, StatsHudTest checks it. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatsHudBenchmark {
+
+    private static final int INSTANCE_COUNT = 101 * 101 * 101;
+
+    private final FrameMetrics metrics = new FrameMetrics(300);
+    private final StatsHud hud = new StatsHud(null, 5, 10, 40, 40); // never drawn, no font needed
+    private final Vector3 position = new Vector3(0.125f, -0.5f, 1.75f);
+    private int frame;
+
+    @Benchmark
+    public StatsHud frame() {
+        frame++;
+        metrics.beginFrame();
+        metrics.begin(Metric.UPDATE);
+        position.x += 0.001f;
+        metrics.end(Metric.UPDATE);
+        metrics.endFrame(1 / 60f, null);
+
+        // the lines of ModelInstancedRenderingBasicScreen.drawStats()
+        hud.line(0).append("WASD + mouse drag: camera, F1: Toggle stats, SPACE: Toggle rotation. rotation=").append((frame & 1) == 0)
+            .append(", V: Toggle visible only. visibleOnly=").append(false);
+        hud.line(1).append("3D Cubes: ").append(INSTANCE_COUNT).append("  Matrix4 Updated: ").append(frame)
+            .append("   Matrix4 Skipped: ").append(INSTANCE_COUNT - frame)
+            .append("   Instances Tested: ").append(frame * 3)
+            .append("   Drawn: ").append(INSTANCE_COUNT).append(" / ").append(INSTANCE_COUNT);
+        StringBuilder line = hud.line(2).append("Update Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.UPDATE), 2).append("ms   Render Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.RENDER), 2).append("ms")
+            .append("   Ranges Flushed: ").append(frame % 7)
+            .append("   Bytes Uploaded: ").append(frame * 48L);
+        line = hud.line(3).append("FPS: ").append(60)
+            .append("  Update Threads: ").append(8).append("  Camera Position: ");
+        StatsHud.appendFixed(line, position, 2).append("  ");
+        metrics.appendGLCounters(line);
+        metrics.appendSummary(hud.line(4).append("Frame Time min/avg/p95/p99: "), Metric.FRAME).append("ms");
+        return hud;
+    }
+}
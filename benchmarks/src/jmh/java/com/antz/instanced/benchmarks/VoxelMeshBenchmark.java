@@ -0,0 +1,81 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.VoxelChunk;
+import com.antz.instanced.VoxelMesher;
+import com.antz.instanced.VoxelWorld;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Greedy meshing of the voxel terrain of the Basic screen: every chunk at startup, the fullest chunk alone, and the
+ * chunks touched by changing one voxel on a chunk border.
+ * The terrain comes from the same seed as the instanced cubes. VoxelMesherTest checks the meshes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VoxelMeshBenchmark {
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) blocks
+    public int instanceCountSide;
+
+    private VoxelWorld world;
+    private final VoxelMesher mesher = new VoxelMesher();
+    private final FloatArray vertices = new FloatArray();
+    private final Array<VoxelChunk> dirty = new Array<>();
+    private VoxelChunk fullest;
+    private int editX, editY, editZ;
+
+    @Setup
+    public void setup() {
+        MathUtils.random.setSeed(42);
+        int instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        world = new VoxelWorld();
+        InstanceFields.voxelTerrain(world, instanceCount, 1, (byte)1);
+
+        for (VoxelChunk chunk : world.getChunks())
+            if (fullest == null || chunk.getSolidCount() > fullest.getSolidCount()) fullest = chunk;
+
+        // a voxel on the corner of a chunk touches three other chunks
+        world.takeDirtyChunks(dirty);
+        editX = fullest.x * VoxelWorld.CHUNK_SIZE;
+        editY = fullest.y * VoxelWorld.CHUNK_SIZE;
+        editZ = fullest.z * VoxelWorld.CHUNK_SIZE;
+    }
+
+    @Benchmark
+    public int meshWorld() {
+        int quads = 0;
+        for (VoxelChunk chunk : world.getChunks())
+            quads += mesher.mesh(world, chunk, vertices);
+        return quads;
+    }
+
+    @Benchmark
+    public int meshFullestChunk() {
+        return mesher.mesh(world, fullest, vertices);
+    }
+
+    @Benchmark
+    public int remeshAfterEdit() {
+        byte type = world.get(editX, editY, editZ);
+        world.set(editX, editY, editZ, type == 0 ? 1 : (byte)0);
+        dirty.clear();
+        world.takeDirtyChunks(dirty);
+        int quads = 0;
+        for (VoxelChunk chunk : dirty)
+            quads += mesher.mesh(world, chunk, vertices);
+        return quads;
+    }
+}
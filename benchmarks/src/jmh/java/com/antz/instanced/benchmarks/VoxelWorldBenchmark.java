@@ -0,0 +1,76 @@
+package com.antz.instanced.benchmarks;
+
+import com.antz.instanced.InstanceFields;
+import com.antz.instanced.VoxelWorld;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** The voxel terrain as a {@link VoxelWorld}: building it, looking blocks up at random and deriving the instances of
+ * the blocks that show. VoxelWorldTest and VoxelChunkTest check them. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VoxelWorldBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"29", "101"}) // 25k (mobile/web) and 1.03M (desktop) columns
+    public int instanceCountSide;
+
+    @Param({"1", "16"}) // the instanced terrain, and 16.5M voxels on desktop
+    public int depth;
+
+    private int instanceCount;
+    private VoxelWorld world;
+    private final int[] lookups = new int[LOOKUPS * 3];
+
+    @Setup
+    public void setup() {
+        instanceCount = instanceCountSide * instanceCountSide * instanceCountSide;
+        world = generate();
+
+        // random blocks of the terrain square, half of them in the ground
+        RandomXS128 random = new RandomXS128(7);
+        int side = (int)Math.sqrt(instanceCount);
+        for (int i = 0; i < lookups.length; i += 3) {
+            lookups[i] = 1 + random.nextInt(side);
+            lookups[i + 1] = -1 - random.nextInt(depth + 1);
+            lookups[i + 2] = 1 + random.nextInt(side);
+        }
+    }
+
+    @Benchmark
+    public VoxelWorld generate() {
+        MathUtils.random.setSeed(42);
+        VoxelWorld generated = new VoxelWorld();
+        InstanceFields.voxelTerrain(generated, instanceCount, depth, (byte)1);
+        return generated;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(LOOKUPS)
+    public int lookup() {
+        int solid = 0;
+        for (int i = 0; i < lookups.length; i += 3)
+            solid += world.get(lookups[i], lookups[i + 1], lookups[i + 2]);
+        return solid;
+    }
+
+    @Benchmark
+    public int countExposed() {
+        return world.countExposed();
+    }
+}
@@ -0,0 +1,35 @@
+package com.antz.instanced;
+
+import net.mgsx.gltf.scene3d.lights.DirectionalShadowLight;
+
+/** A shadow light whose shadow map can be kept from the last frames: while cached, {@link #begin()} and {@link #end()}
+ * do nothing, so the frame buffer is not cleared and the light camera keeps the box the map was drawn with. The
+ * {@code SceneManager} still calls {@code renderDepth} with its camera, which has to draw nothing, see
+ * {@link #isCached()}. {@link ShadowCache} decides when a map is kept. */
+public class CachedShadowLight extends DirectionalShadowLight {
+
+    private boolean cached;
+
+    public CachedShadowLight(int shadowMapWidth, int shadowMapHeight) {
+        super(shadowMapWidth, shadowMapHeight);
+    }
+
+    /** @param cached true to keep the shadow map as it is this frame, only once it has been drawn */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    @Override
+    public void begin() {
+        if (!cached) super.begin();
+    }
+
+    @Override
+    public void end() {
+        if (!cached) super.end();
+    }
+}
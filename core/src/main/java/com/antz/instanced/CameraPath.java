@@ -0,0 +1,89 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** Camera position and direction keyframes, interpolated linearly in between, to fly the same way through a field
+ * every run. See {@link CameraReplay}.
+ *
+ * Positions are in units of half the size of the field, around its center, so the same path works in the unit box
+ * field and in the much larger PBR field. The file has one keyframe per line, {@code # comments} and blank lines are
+ * skipped:
+ * <pre>
+ * # seconds  position x y z  direction x y z
+ * 0          0 0 0           0 0 1
+ * </pre>
+ * Two keyframes in a row must not look in opposite directions. */
+public class CameraPath {
+
+    private static final int FLOATS_PER_KEYFRAME = 7; // time, position, direction
+
+    private final FloatArray keyframes = new FloatArray();
+    private final Vector3 tmp = new Vector3();
+
+    public static CameraPath load(FileHandle file) {
+        CameraPath path = new CameraPath();
+        String[] lines = file.readString().split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] values = line.split("\\s+");
+            if (values.length != FLOATS_PER_KEYFRAME)
+                throw new GdxRuntimeException(file.path() + " line " + (i + 1) + ": expected time, position and direction");
+            try {
+                path.add(Float.parseFloat(values[0]),
+                    Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3]),
+                    Float.parseFloat(values[4]), Float.parseFloat(values[5]), Float.parseFloat(values[6]));
+            } catch (NumberFormatException e) {
+                throw new GdxRuntimeException(file.path() + " line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (path.getKeyframeCount() == 0) throw new GdxRuntimeException(file.path() + " has no keyframes");
+        return path;
+    }
+
+    /** Adds a keyframe after the last one. */
+    public CameraPath add(float time, float x, float y, float z, float directionX, float directionY, float directionZ) {
+        if (keyframes.size > 0 && time < keyframes.get(keyframes.size - FLOATS_PER_KEYFRAME))
+            throw new GdxRuntimeException("keyframe at " + time + "s is before the previous one");
+        keyframes.add(time, x, y, z);
+        keyframes.add(directionX, directionY, directionZ);
+        return this;
+    }
+
+    public int getKeyframeCount() {
+        return keyframes.size / FLOATS_PER_KEYFRAME;
+    }
+
+    /** @return seconds to the last keyframe */
+    public float getDuration() {
+        return keyframes.size == 0 ? 0 : keyframes.get(keyframes.size - FLOATS_PER_KEYFRAME);
+    }
+
+    /** Places the camera where the path is at that time and updates it, up stays {@link Vector3#Y}.
+     * @param center center of the field
+     * @param scale half the size of the field */
+    public void apply(Camera camera, float time, Vector3 center, float scale) {
+        float[] k = keyframes.items;
+        int last = getKeyframeCount() - 1;
+        int from = 0;
+        while (from < last && k[(from + 1) * FLOATS_PER_KEYFRAME] <= time)
+            from++;
+        int to = Math.min(from + 1, last);
+
+        int a = from * FLOATS_PER_KEYFRAME, b = to * FLOATS_PER_KEYFRAME;
+        float span = k[b] - k[a];
+        float alpha = span > 0 ? Math.max(0, Math.min(1, (time - k[a]) / span)) : 0;
+
+        camera.position.set(k[a + 1], k[a + 2], k[a + 3])
+            .lerp(tmp.set(k[b + 1], k[b + 2], k[b + 3]), alpha)
+            .scl(scale).add(center);
+        camera.direction.set(k[a + 4], k[a + 5], k[a + 6]).nor()
+            .lerp(tmp.set(k[b + 4], k[b + 5], k[b + 6]).nor(), alpha).nor();
+        camera.up.set(Vector3.Y);
+        camera.update();
+    }
+}
@@ -0,0 +1,65 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+
+/** Benchmark mode of the screens: the camera flies a {@link CameraPath} with a fixed time step instead of following
+ * the user, the fields are built from a fixed random seed and the instances rotate from the start, so every run does
+ * the same work frame for frame and the {@link FrameMetrics} of two runs can be compared. */
+public class CameraReplay {
+
+    public static final String DEFAULT_PATH = "benchmark/camera-path.txt";
+
+    private final CameraPath path;
+    private final float timeStep;
+    private final long seed;
+    private float time;
+    private int frame;
+
+    /** @param timeStep seconds of every frame, whatever the real frame time
+     * @param seed for {@link MathUtils#random} before the fields are built */
+    public CameraReplay(CameraPath path, float timeStep, long seed) {
+        this.path = path;
+        this.timeStep = timeStep;
+        this.seed = seed;
+    }
+
+    /** Seeds {@link MathUtils#random}, call it right before building the field. */
+    public void seedRandom() {
+        MathUtils.random.setSeed(seed);
+    }
+
+    /** Moves the camera to the next frame of the path.
+     * @param center center of the field
+     * @param scale half the size of the field
+     * @return the delta to use for the frame */
+    public float step(Camera camera, Vector3 center, float scale) {
+        time = Math.min(path.getDuration(), time + timeStep);
+        frame++;
+        path.apply(camera, time, center, scale);
+        return timeStep;
+    }
+
+    /** @return whether the camera reached the end of the path */
+    public boolean isFinished() {
+        return time >= path.getDuration();
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void reset() {
+        time = 0;
+        frame = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.antz.instanced;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** {@link TaskRunner} spreading the tasks over the threads of a {@link ForkJoinPool}.
+ *
+ * Not available on GWT and TeaVM (no threads), this class is excluded from the GWT sources, see
+ * ModelInstancedRendering.gwt.xml. Only create it from a desktop or Android launcher. */
+public class ForkJoinTaskRunner implements TaskRunner {
+
+    private final ForkJoinPool pool;
+
+    /** Uses one thread per available core. */
+    public ForkJoinTaskRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ForkJoinTaskRunner(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public void run(int count, Task task) {
+        if (count == 0) return;
+        pool.invoke(new RangeAction(task, 0, count));
+    }
+
+    @Override
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /** Shuts the threads of the pool down, the running tasks finish first. */
+    @Override
+    public void dispose() {
+        pool.shutdown();
+    }
+
+    // splits [from, to) in halves until there is a single task left to run
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Task task;
+        private final int from, to;
+
+        RangeAction(Task task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.run(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeAction(task, from, mid), new RangeAction(task, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.StringBuilder;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.Arrays;
+
+/** Timings of the phases of the last frames and the {@link GLProfiler} counters, in a ring buffer of a fixed number of
+ * frames, with min/average/p95/p99 over that window. Shared by the screens, nothing is allocated per frame.
+ *
+ * A frame is {@link #beginFrame()}, any number of {@link #begin(Metric)}/{@link #end(Metric)} pairs (a phase measured
+ * twice in a frame adds up), then {@link #endFrame(float, GLProfiler)}. The GL calls are asynchronous, so the render
+ * and shadow phases are the time to submit them, a GPU bound frame shows in {@link Metric#FRAME} instead.
+ *
+ * {@link #writeCsv(FileHandle)} dumps the window frame by frame, to compare runs offline. */
+public class FrameMetrics {
+
+    public enum Metric {
+        /** time between frames, milliseconds */
+        FRAME("frame_ms", false),
+        /** beginFrame() to endFrame(), milliseconds */
+        CPU("cpu_ms", false),
+        INPUT("input_ms", true),
+        CULL("cull_ms", true),
+        UPDATE("update_ms", true),
+        UPLOAD("upload_ms", true),
+        RENDER("render_ms", true),
+        SHADOW("shadow_ms", true),
+        HUD("hud_ms", true),
+        DRAW_CALLS("draw_calls", false),
+        VERTICES("vertices", false),
+        SHADER_SWITCHES("shader_switches", false),
+        TEXTURE_BINDINGS("texture_bindings", false);
+
+        public final String columnName;
+        /** measured with begin() and end() */
+        public final boolean isPhase;
+
+        Metric(String columnName, boolean isPhase) {
+            this.columnName = columnName;
+            this.isPhase = isPhase;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final int window;
+    private final float[] samples; // window frames of all metrics, metric major
+    private final float[] sorted; // scratch for the percentiles
+    private final long[] phaseStart = new long[METRICS.length];
+    private final float[] current = new float[METRICS.length];
+    private long frameStart;
+    private int next, frames;
+
+    /** @param window frames kept for the statistics and the CSV */
+    public FrameMetrics(int window) {
+        this.window = window;
+        samples = new float[METRICS.length * window];
+        sorted = new float[window];
+    }
+
+    public void beginFrame() {
+        Arrays.fill(current, 0);
+        frameStart = TimeUtils.nanoTime();
+    }
+
+    public void begin(Metric phase) {
+        phaseStart[phase.ordinal()] = TimeUtils.nanoTime();
+    }
+
+    public void end(Metric phase) {
+        current[phase.ordinal()] += (TimeUtils.nanoTime() - phaseStart[phase.ordinal()]) / 1000000f;
+    }
+
+    /** Stores the frame in the window.
+     * @param delta seconds since the last frame
+     * @param profiler its counters since its last reset, can be null */
+    public void endFrame(float delta, GLProfiler profiler) {
+        current[Metric.FRAME.ordinal()] = delta * 1000f;
+        current[Metric.CPU.ordinal()] = (TimeUtils.nanoTime() - frameStart) / 1000000f;
+        if (profiler != null && profiler.isEnabled()) {
+            current[Metric.DRAW_CALLS.ordinal()] = profiler.getDrawCalls();
+            current[Metric.VERTICES.ordinal()] = profiler.getVertexCount().total;
+            current[Metric.SHADER_SWITCHES.ordinal()] = profiler.getShaderSwitches();
+            current[Metric.TEXTURE_BINDINGS.ordinal()] = profiler.getTextureBindings();
+        }
+        for (int m = 0; m < METRICS.length; m++)
+            samples[m * window + next] = current[m];
+        next = (next + 1) % window;
+        if (frames < window) frames++;
+    }
+
+    /** @return frames in the window, less than the window size only right after the start */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /** @return the value of the last frame */
+    public float getLatest(Metric metric) {
+        if (frames == 0) return 0;
+        return samples[metric.ordinal() * window + (next + window - 1) % window];
+    }
+
+    public float getMin(Metric metric) {
+        float min = Float.POSITIVE_INFINITY;
+        int offset = metric.ordinal() * window;
+        for (int i = 0; i < frames; i++)
+            min = Math.min(min, samples[offset + i]);
+        return frames == 0 ? 0 : min;
+    }
+
+    public float getMax(Metric metric) {
+        float max = 0;
+        int offset = metric.ordinal() * window;
+        for (int i = 0; i < frames; i++)
+            max = Math.max(max, samples[offset + i]);
+        return max;
+    }
+
+    public float getAverage(Metric metric) {
+        float total = 0;
+        int offset = metric.ordinal() * window;
+        for (int i = 0; i < frames; i++)
+            total += samples[offset + i];
+        return frames == 0 ? 0 : total / frames;
+    }
+
+    /** @param percentile 0 to 100, 95 for p95
+     * @return the smallest value at least that percent of the frames in the window are at or below */
+    public float getPercentile(Metric metric, float percentile) {
+        if (frames == 0) return 0;
+        System.arraycopy(samples, metric.ordinal() * window, sorted, 0, frames);
+        Arrays.sort(sorted, 0, frames);
+        int rank = (int)Math.ceil(percentile / 100f * frames) - 1;
+        return sorted[Math.max(0, Math.min(frames - 1, rank))];
+    }
+
+    /** Appends min / avg / p95 / p99 of the metric over the window with two decimals, without allocating. */
+    public StringBuilder appendSummary(StringBuilder builder, Metric metric) {
+        StatsHud.appendFixed(builder, getMin(metric), 2).append(" / ");
+        StatsHud.appendFixed(builder, getAverage(metric), 2).append(" / ");
+        StatsHud.appendFixed(builder, getPercentile(metric, 95), 2).append(" / ");
+        return StatsHud.appendFixed(builder, getPercentile(metric, 99), 2);
+    }
+
+    /** Appends the {@link GLProfiler} counters of the last frame, without allocating. */
+    public StringBuilder appendGLCounters(StringBuilder builder) {
+        return builder.append("Draw Calls: ").append((int)getLatest(Metric.DRAW_CALLS))
+            .append("  Vert Count: ").append((int)getLatest(Metric.VERTICES))
+            .append("  Shader Switches: ").append((int)getLatest(Metric.SHADER_SWITCHES))
+            .append("  Texture Bindings: ").append((int)getLatest(Metric.TEXTURE_BINDINGS));
+    }
+
+    public void reset() {
+        next = 0;
+        frames = 0;
+    }
+
+    /** Writes the frames of the window, oldest first, one column per {@link Metric}. */
+    public void writeCsv(FileHandle file) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("frame");
+        for (Metric metric : METRICS)
+            builder.append(',').append(metric.columnName);
+        builder.append('\n');
+
+        int first = (next + window - frames) % window;
+        for (int i = 0; i < frames; i++) {
+            builder.append(i);
+            for (int m = 0; m < METRICS.length; m++)
+                builder.append(',').append(samples[m * window + (first + i) % window]);
+            builder.append('\n');
+        }
+        file.writeString(builder.toString(), false);
+    }
+
+    /** min/avg/p95/p99 of every metric over the window, for the log. */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(frames).append(" frames: min / avg / p95 / p99");
+        for (Metric metric : METRICS) {
+            builder.append("\n  ").append(metric.columnName).append(": ")
+                .append(round(getMin(metric))).append(" / ")
+                .append(round(getAverage(metric))).append(" / ")
+                .append(round(getPercentile(metric, 95))).append(" / ")
+                .append(round(getPercentile(metric, 99)));
+        }
+        return builder.toString();
+    }
+
+    // two decimals, no String.format() on the web
+    private static float round(float value) {
+        return Math.round(value * 100f) / 100f;
+    }
+}
@@ -0,0 +1,278 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/** CPU copy of the per instance data of an instanced {@link Mesh}, with dirty tracking.
+ *
+ * Instead of calling {@link Mesh#updateInstanceData(int, float[])} once per changed instance, the update pass calls
+ * {@link #markDirty(int)} and the render pass calls {@link #flush()} once. Dirty instances are coalesced into contiguous
+ * ranges (small gaps are merged, see {@link #setMergeGap(int)}) and every range is copied with a single call.
+ * When most of the buffer changed it is cheaper to send everything in one go, see {@link #setFullUploadFraction(float)}.
+ *
+ * The mesh draws the first {@link #setDrawCount(int) draw count} instances, all of them unless set.
+ *
+ * A model of several meshes draws the same instances with every mesh, see {@link #addMesh(Mesh)}: the data is packed
+ * once here and every upload goes to all of them. libGDX gives each mesh its own instance buffer object, so it is the
+ * GPU copy that is made per mesh, not the per instance work.
+ *
+ * The data is either written directly in {@link #getData()}, or composed from an {@link InstanceStore} for the dirty
+ * instances only when flushing, see {@link #setSource(InstanceStore, InstanceLayout)}.
+ *
+ * Note: libGDX's InstanceBufferObject keeps its own copy of the data and sends it to the GPU with one glBufferData
+ * when the mesh is bound, so what we save here are the hundreds of thousands of small copies into that buffer. */
+public class InstanceBuffer {
+
+    private final Array<Mesh> meshes = new Array<>(false, 1, Mesh.class);
+    private final int floatsPerInstance;
+    private final int instanceCount;
+    private final float[] data;
+    private int drawCount;
+    private boolean drawCountChanged;
+    private long version;
+
+    // dirty instance indices, in the order they were marked
+    private final IntArray dirty = new IntArray(false, 1024);
+    private boolean dirtySorted = true;
+
+    // optional source the dirty instances are composed from
+    private InstanceStore source;
+    private InstanceLayout layout;
+
+    private int mergeGap = 8;                  // merge ranges separated by up to 8 clean instances
+    private float fullUploadFraction = 0.5f;   // upload everything if more than half the instances changed
+
+    // counters of the last flush()
+    private int rangesFlushed;
+    private long bytesUploaded;
+    private boolean fullUpload;
+
+    public InstanceBuffer(Mesh mesh, int instanceCount, int floatsPerInstance) {
+        if (mesh != null) meshes.add(mesh);
+        this.instanceCount = instanceCount;
+        this.floatsPerInstance = floatsPerInstance;
+        this.data = new float[instanceCount * floatsPerInstance];
+        this.drawCount = instanceCount;
+    }
+
+    /** Sends the instances to this mesh too, for the other meshes of a model, see {@link #uploadAll()}.
+     * @param mesh with instanced rendering enabled, with the same instanced attributes and at least as many instances */
+    public void addMesh(Mesh mesh) {
+        meshes.add(mesh);
+    }
+
+    public Array<Mesh> getMeshes() {
+        return meshes;
+    }
+
+    /** @return the backing array, instance i starts at i * {@link #getFloatsPerInstance()} */
+    public float[] getData() {
+        return data;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /** Sets how many instances, from the first, the mesh draws. A libGDX mesh only changes its instance count when
+     * all its instance data is set, so the next {@link #flush()} sends the first count instances at once. Dirty
+     * instances past the count are not sent. */
+    public void setDrawCount(int count) {
+        if (count < 0 || count > instanceCount) throw new IllegalArgumentException("draw count " + count + " out of [0, " + instanceCount + "]");
+        if (count == drawCount) return;
+        drawCount = count;
+        drawCountChanged = true;
+        version++;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public int getFloatsPerInstance() {
+        return floatsPerInstance;
+    }
+
+    /** @return heap bytes of the CPU copy and of the dirty list */
+    public long getMemoryBytes() {
+        return data.length * 4L + dirty.items.length * 4L;
+    }
+
+    /** @return bytes of the direct buffers libGDX keeps for the instances of the meshes, each the size of the CPU copy */
+    public long getDirectMemoryBytes() {
+        return meshes.size * data.length * 4L;
+    }
+
+    /** Composes the instance data from the given store, for the dirty instances on {@link #flush()} or for
+     * all of them with {@link #packAll()}.
+     * @param layout what is sent for every instance, must match the instanced attributes of the mesh */
+    public void setSource(InstanceStore source, InstanceLayout layout) {
+        if (floatsPerInstance != layout.floatsPerInstance)
+            throw new IllegalArgumentException(layout + " layout needs " + layout.floatsPerInstance + " floats per instance");
+        this.source = source;
+        this.layout = layout;
+    }
+
+    /** Composes every instance from the source store, see {@link #setSource(InstanceStore, InstanceLayout)}. */
+    public void packAll() {
+        version++;
+        for (int i = 0; i < instanceCount; i++)
+            layout.pack(source, i, data, i * floatsPerInstance);
+    }
+
+    /** Records that the data of the given instance changed since the last {@link #flush()}. */
+    public void markDirty(int index) {
+        version++;
+        if (dirty.size > 0) {
+            int last = dirty.peek();
+            if (index == last) return;
+            if (index < last) dirtySorted = false;
+        }
+        dirty.add(index);
+    }
+
+    /** Records that all the given instances changed since the last {@link #flush()}.
+     * @param indices instance indices, in increasing order */
+    public void markDirty(IntArray indices) {
+        if (indices.size == 0) return;
+        version++;
+        if (dirty.size > 0 && indices.first() <= dirty.peek()) dirtySorted = false;
+        dirty.addAll(indices);
+    }
+
+    /** Records that all instances in [from, to) changed since the last {@link #flush()}. */
+    public void markDirty(int from, int to) {
+        for (int i = from; i < to; i++)
+            markDirty(i);
+    }
+
+    /** @return number of instances marked dirty since the last {@link #flush()}, may count duplicates if marked out of order */
+    public int getDirtyCount() {
+        return dirty.size;
+    }
+
+    /** @return a number that changes whenever instances are marked dirty or packed, or the draw count changes: when it
+     * is the same as before, the mesh draws the same instances, see {@link ShadowCache} */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Forgets the dirty instances without sending them to the mesh. */
+    public void clearDirty() {
+        dirty.clear();
+        dirtySorted = true;
+    }
+
+    /** Sends the instances to draw to the mesh, also clears the dirty list. */
+    public void uploadAll() {
+        dirty.clear();
+        dirtySorted = true;
+        drawCountChanged = false;
+        int count = drawCount * floatsPerInstance;
+        for (int i = 0; i < meshes.size; i++)
+            meshes.items[i].setInstanceData(data, 0, count);
+        rangesFlushed = 1;
+        bytesUploaded = count * 4L * meshes.size;
+        fullUpload = true;
+    }
+
+    /** Copies all dirty instances to the mesh, using as few calls as possible.
+     * @return the number of ranges that were sent */
+    public int flush() {
+        rangesFlushed = 0;
+        bytesUploaded = 0;
+        fullUpload = false;
+        if (drawCountChanged) {
+            if (source != null) packDirty();
+            uploadAll();
+            return rangesFlushed;
+        }
+        if (dirty.size == 0) return 0;
+
+        if (!dirtySorted) dirty.sort();
+
+        int[] items = dirty.items;
+        if (source != null) packDirty();
+
+        if (dirty.size >= drawCount * fullUploadFraction) {
+            uploadAll();
+            return rangesFlushed;
+        }
+
+        // the sorted indices past the draw count are not drawn
+        int size = dirty.size;
+        while (size > 0 && items[size - 1] >= drawCount)
+            size--;
+        if (size == 0) {
+            clearDirty();
+            return 0;
+        }
+
+        int start = items[0];
+        int end = items[0];
+        for (int i = 1; i < size; i++) {
+            int index = items[i];
+            if (index <= end + 1 + mergeGap) {
+                if (index > end) end = index;
+            } else {
+                upload(start, end);
+                start = end = index;
+            }
+        }
+        upload(start, end);
+
+        dirty.clear();
+        dirtySorted = true;
+        return rangesFlushed;
+    }
+
+    private void packDirty() {
+        int[] items = dirty.items;
+        for (int i = 0; i < dirty.size; i++)
+            layout.pack(source, items[i], data, items[i] * floatsPerInstance);
+    }
+
+    // first and last are inclusive instance indices
+    private void upload(int first, int last) {
+        int offset = first * floatsPerInstance;
+        int count = (last - first + 1) * floatsPerInstance;
+        for (int i = 0; i < meshes.size; i++)
+            meshes.items[i].updateInstanceData(offset, data, offset, count);
+        rangesFlushed++;
+        bytesUploaded += count * 4L * meshes.size;
+    }
+
+    /** @param mergeGap number of clean instances allowed between two dirty ones before they are sent as separate ranges */
+    public void setMergeGap(int mergeGap) {
+        this.mergeGap = Math.max(0, mergeGap);
+    }
+
+    public int getMergeGap() {
+        return mergeGap;
+    }
+
+    /** @param fraction when at least this fraction of the instances is dirty the whole buffer is sent at once */
+    public void setFullUploadFraction(float fraction) {
+        this.fullUploadFraction = fraction;
+    }
+
+    public float getFullUploadFraction() {
+        return fullUploadFraction;
+    }
+
+    /** @return number of ranges sent by the last {@link #flush()}, each to every mesh */
+    public int getRangesFlushed() {
+        return rangesFlushed;
+    }
+
+    /** @return number of bytes copied by the last {@link #flush()}, to all the meshes */
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    /** @return true if the last {@link #flush()} sent the whole buffer */
+    public boolean wasFullUpload() {
+        return fullUpload;
+    }
+}
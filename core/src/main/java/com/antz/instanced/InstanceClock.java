@@ -0,0 +1,21 @@
+package com.antz.instanced;
+
+/** Time of the {@link InstanceLayout#ANIMATED} instances, given to the vertex shaders as the {@code u_time} uniform.
+ * Only advances while the animation runs, so pausing freezes the instances where they are. */
+public class InstanceClock {
+
+    private float time;
+
+    public void update(float delta) {
+        time += delta;
+    }
+
+    /** @return seconds the animation has been running */
+    public float getTime() {
+        return time;
+    }
+
+    public void reset() {
+        time = 0;
+    }
+}
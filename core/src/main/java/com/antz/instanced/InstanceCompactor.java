@@ -0,0 +1,105 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+
+/** Visible only draw mode: every frame the data of the instances in the camera frustum are packed at the start of
+ * the instance buffer of the mesh, and the instance count of the draw call becomes the number of visible instances.
+ *
+ * Off screen instances then cost nothing on the GPU, at the price of sending the visible instances every frame.
+ * libGDX draws {@code buffer.limit() / floatsPerInstance} instances, which {@link Mesh#setInstanceData(float[], int, int)}
+ * sets to the count given, so no change to the mesh is needed.
+ *
+ * While this mode is on the {@link InstanceBuffer} of the same mesh must not be flushed (its dirty list can be cleared
+ * instead), and it has to be sent again with {@link InstanceBuffer#packAll()} and {@link InstanceBuffer#uploadAll()}
+ * when going back to drawing every instance. */
+public class InstanceCompactor {
+
+    private final Array<Mesh> meshes = new Array<>(false, 1, Mesh.class);
+    private final InstanceStore store;
+    private final InstanceLayout layout;
+    private final Vector3 position = new Vector3();
+
+    private InstanceGrid grid;
+    private float[] data;   // allocated on first use, only needed in this mode
+    private int visibleCount;
+
+    /** @param mesh null to only pack the instances, for checks
+     * @param layout what is sent for every instance, see {@link InstanceBuffer#setSource(InstanceStore, InstanceLayout)} */
+    public InstanceCompactor(Mesh mesh, InstanceStore store, InstanceLayout layout) {
+        if (mesh != null) meshes.add(mesh);
+        this.store = store;
+        this.layout = layout;
+    }
+
+    /** Sends the visible instances to this mesh too, for the other meshes of a model, see
+     * {@link InstanceBuffer#addMesh(Mesh)}. */
+    public void addMesh(Mesh mesh) {
+        if (mesh != null) meshes.add(mesh);
+    }
+
+    /** @param grid grid built over the store, to skip and accept whole cells, or null to test every instance */
+    public void setGrid(InstanceGrid grid) {
+        this.grid = grid;
+    }
+
+    /** Packs the instances whose bounding sphere is in the frustum and sends them to the mesh.
+     * @return the number of instances that will be drawn */
+    public int compact(Frustum frustum, float radius) {
+        if (data == null) data = new float[store.getCount() * layout.floatsPerInstance];
+        visibleCount = 0;
+
+        if (grid == null) {
+            testRange(frustum, radius, 0, store.getCount());
+        } else {
+            float[] cellBounds = grid.getCellBounds();
+            for (int cell = 0; cell < grid.getCellCount(); cell++) {
+                // no distance culling for drawing, everything in the frustum is visible
+                switch (grid.classify(cellBounds, cell * 6, frustum, radius, Vector3.Zero, Float.POSITIVE_INFINITY)) {
+                    case InstanceGrid.INSIDE:
+                        for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++)
+                            layout.pack(store, i, data, visibleCount++ * layout.floatsPerInstance);
+                        break;
+                    case InstanceGrid.PARTIAL:
+                        testRange(frustum, radius, grid.getCellStart(cell), grid.getCellEnd(cell));
+                        break;
+                }
+            }
+        }
+
+        // an empty instance buffer would make the mesh draw a single non instanced copy, the caller skips rendering
+        if (visibleCount > 0) {
+            for (int i = 0; i < meshes.size; i++)
+                meshes.items[i].setInstanceData(data, 0, visibleCount * layout.floatsPerInstance);
+        }
+        return visibleCount;
+    }
+
+    private void testRange(Frustum frustum, float radius, int from, int to) {
+        float[] positions = store.positions;
+        for (int i = from; i < to; i++) {
+            int p = i * 3;
+            position.set(positions[p], positions[p + 1], positions[p + 2]);
+            if (frustum.sphereInFrustum(position, radius))
+                layout.pack(store, i, data, visibleCount++ * layout.floatsPerInstance);
+        }
+    }
+
+    /** @return the instances sent by the last {@link #compact(Frustum, float)}, packed from the start, in the order of
+     * the store */
+    public float[] getData() {
+        return data;
+    }
+
+    /** @return heap bytes of the compacted copy, 0 until the visible only mode is used */
+    public long getMemoryBytes() {
+        return data == null ? 0 : data.length * 4L;
+    }
+
+    /** @return the number of instances sent by the last {@link #compact(Frustum, float)} */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+}
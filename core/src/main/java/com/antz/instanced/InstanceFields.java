@@ -0,0 +1,141 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+/** The instance layouts of the demo screens, written to an {@link InstanceStore}.
+ *
+ * Nothing here needs a GL context, so the screens and the headless benchmarks build exactly the same fields.
+ * Rotations come from {@link MathUtils#random}, seed it first for a repeatable field. */
+public class InstanceFields {
+
+    /** Cubes of a side x side x side grid filling [-1, 1] on every axis, with random rotations.
+     * @return the distance between neighbouring instances */
+    public static float boxField(InstanceStore store, int side) {
+        Vector3 position = new Vector3();
+        Quaternion q = new Quaternion();
+
+        int index = 0;
+        for (int x = 1; x <= side; x++) {
+            for (int y = 1; y <= side; y++) {
+                for (int z = 1; z <= side; z++) {
+                    // set instance position
+                    position.set(
+                        x / (side * 0.5f) - 1f,
+                        y / (side * 0.5f) - 1f,
+                        z / (side * 0.5f) - 1f);
+
+                    // set random rotation
+                    q.setEulerAngles(MathUtils.random(-90, 90), MathUtils.random(-90, 90), MathUtils.random(-90, 90));
+
+                    // store instance transform
+                    store.set(index++, position, q);
+                }
+            }
+        }
+        return 1f / (side * 0.5f);
+    }
+
+    /** Very simple minecraft terrain of blocks of half size {@code size}: a square of randomly raised blocks, and the
+     * remaining instances stacked in a tower in the middle.
+     * @return the distance between neighbouring instances */
+    public static float voxelTerrain(InstanceStore store, float size) {
+        int count = store.getCount();
+        Vector3 position = new Vector3();
+        Quaternion q = new Quaternion();
+
+        int index = 0;
+
+        // very simple random terrain
+        float y, total = 0;
+        for (int x = 1; x <= Math.sqrt(count); x++) {
+            for (int z = 1; z <= Math.sqrt(count); z++) {
+
+                if (MathUtils.random(3) == 3)
+                    y = size * 2;
+                else
+                    y = 0;
+
+                position.set(
+                    x * size * 2,
+                    y - size * 4, // so terrain below initial camera y position
+                    z * size * 2);
+
+                // store instance transform
+                store.set(index++, position, q);
+                total++;
+            }
+        }
+
+        // build a tower in middle
+        for (int i = 0; i < (count - total); i++ ) {
+            position.set(
+                (float)Math.sqrt(count)/2f * size * 2,
+                i * size * 2 - size * 4,
+                (float)Math.sqrt(count)/2f * size * 2);
+
+            // store instance transform
+            store.set(index++, position, q);
+        }
+        return size * 2;
+    }
+
+    /** The terrain of {@link #voxelTerrain(InstanceStore, float)}, from the same random numbers, as voxels of the world:
+     * every column of the square gets depth blocks of ground under its top block, and the tower stands on the ground.
+     * Voxel (x, y, z) is where that function puts an instance at (x, y, z) times the spacing. */
+    public static void voxelTerrain(VoxelWorld world, int count, int depth, byte type) {
+        int side = (int)Math.sqrt(count);
+        for (int x = 1; x <= side; x++) {
+            for (int z = 1; z <= side; z++) {
+                int top = MathUtils.random(3) == 3 ? -1 : -2; // below the initial camera y position
+                for (int y = top - depth + 1; y <= top; y++)
+                    world.set(x, y, z, type);
+            }
+        }
+
+        // build a tower in middle
+        int middle = Math.round((float)Math.sqrt(count) / 2f);
+        for (int i = 0; i < count - side * side; i++)
+            world.set(middle, i - 2, middle, type);
+
+        world.compact(); // the full chunks below the surface take no voxel data
+    }
+
+    /** Models of a side x side x side grid starting at (spacing, spacing, spacing), each randomly rotated around
+     * X, Y or Z.
+     * @return the distance between neighbouring instances */
+    public static float modelField(InstanceStore store, int side, float spacing) {
+        Vector3 position = new Vector3();
+        Quaternion q = new Quaternion();
+
+        int index = 0;
+        for (int x = 1; x <= side; x++) {
+            for (int y = 1; y <= side; y++) {
+                for (int z = 1; z <= side; z++) {
+
+                    // sets the position of each instance
+                    position.set(x * spacing, y * spacing, z * spacing);
+
+                    // This randomly sets a random rotation to a random axis
+                    int rand = MathUtils.random(2);
+                    if (rand == 0)
+                        q.setFromAxisRad(Vector3.X, MathUtils.random(0.0f, (float)Math.PI*2.0f));
+                    else if (rand == 1)
+                        q.setFromAxisRad(Vector3.Y, MathUtils.random(0.0f, (float)Math.PI*2.0f));
+                    else
+                        q.setFromAxisRad(Vector3.Z, MathUtils.random(0.0f, (float)Math.PI*2.0f));
+
+                    store.set(index++, position, q);
+                }
+            }
+        }
+        return spacing;
+    }
+
+    /** Makes every other instance spin around one axis or the other, the same spin the CPU update gives them. */
+    public static void alternateSpins(InstanceStore store, Vector3 axisEven, Vector3 axisOdd, float degreesPerSecond) {
+        for (int i = 0; i < store.getCount(); i++)
+            store.setSpin(i, (i & 1) == 0 ? axisEven : axisOdd, degreesPerSecond);
+    }
+}
@@ -0,0 +1,176 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Plane;
+import com.badlogic.gdx.math.Vector3;
+
+/** Uniform grid over the instance positions, used to cull whole cells instead of testing every instance.
+ *
+ * Building the grid sorts the instances of the {@link InstanceStore} by cell, so every cell is a contiguous range of
+ * instance indices. Do it once after the field is created, before the instance data is packed and sent to the mesh.
+ *
+ * {@link #classify(float[], int, Frustum, float, Vector3, float)} tests the bounds of a cell (or of a group of cells)
+ * against the same conditions {@link InstanceUpdater} uses for a single instance: {@link Frustum#sphereInFrustum} and
+ * the distance to the camera. When it says {@link #INSIDE} or {@link #OUTSIDE} every instance of the cell would give
+ * that same answer, so only {@link #PARTIAL} cells need per instance tests. */
+public class InstanceGrid {
+
+    public static final int OUTSIDE = 0;
+    public static final int PARTIAL = 1;
+    public static final int INSIDE = 2;
+
+    // keep the grid a reasonable size even with a tiny cell size
+    private static final int MAX_CELLS = 1 << 20;
+
+    private final int cellCount;
+    private final int[] cellStart;      // instances of cell c are [cellStart[c], cellStart[c + 1])
+    private final float[] cellBounds;   // min x, y, z, max x, y, z of the instance positions of every cell
+    private final float epsilon;        // safety margin for the float rounding of the bounds tests
+
+    public InstanceGrid(InstanceStore store, float cellSize) {
+        int count = store.getCount();
+        float[] positions = store.positions;
+
+        // bounds of the whole field
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = 0; i < count * 3; i += 3) {
+            minX = Math.min(minX, positions[i]);
+            minY = Math.min(minY, positions[i + 1]);
+            minZ = Math.min(minZ, positions[i + 2]);
+            maxX = Math.max(maxX, positions[i]);
+            maxY = Math.max(maxY, positions[i + 1]);
+            maxZ = Math.max(maxZ, positions[i + 2]);
+        }
+        if (count == 0) minX = minY = minZ = maxX = maxY = maxZ = 0;
+
+        int sizeX, sizeY, sizeZ;
+        while (true) {
+            sizeX = (int)((maxX - minX) / cellSize) + 1;
+            sizeY = (int)((maxY - minY) / cellSize) + 1;
+            sizeZ = (int)((maxZ - minZ) / cellSize) + 1;
+            if ((long)sizeX * sizeY * sizeZ <= MAX_CELLS) break;
+            cellSize *= 2;
+        }
+        cellCount = sizeX * sizeY * sizeZ;
+
+        // counting sort of the instances by cell, keeps the original order inside a cell
+        int[] cellOf = new int[count];
+        cellStart = new int[cellCount + 1];
+        for (int i = 0; i < count; i++) {
+            int p = i * 3;
+            int cx = Math.min(sizeX - 1, (int)((positions[p] - minX) / cellSize));
+            int cy = Math.min(sizeY - 1, (int)((positions[p + 1] - minY) / cellSize));
+            int cz = Math.min(sizeZ - 1, (int)((positions[p + 2] - minZ) / cellSize));
+            int cell = (cx * sizeY + cy) * sizeZ + cz;
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        int[] next = new int[cellCount];
+        System.arraycopy(cellStart, 0, next, 0, cellCount);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++)
+            order[next[cellOf[i]]++] = i;
+        store.permute(order);
+
+        // tight bounds of every cell
+        cellBounds = new float[cellCount * 6];
+        for (int c = 0; c < cellCount; c++) {
+            int b = c * 6;
+            cellBounds[b] = cellBounds[b + 1] = cellBounds[b + 2] = Float.MAX_VALUE;
+            cellBounds[b + 3] = cellBounds[b + 4] = cellBounds[b + 5] = -Float.MAX_VALUE;
+            for (int i = cellStart[c]; i < cellStart[c + 1]; i++)
+                include(cellBounds, b, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+        }
+
+        float extent = Math.max(Math.max(Math.abs(minX), Math.abs(maxX)), Math.max(Math.max(Math.abs(minY), Math.abs(maxY)), Math.max(Math.abs(minZ), Math.abs(maxZ))));
+        epsilon = 1e-5f * (extent + 1f);
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /** @return heap bytes of the cell ranges and bounds, 28 bytes per cell */
+    public long getMemoryBytes() {
+        return (cellStart.length + cellBounds.length) * 4L;
+    }
+
+    /** @return first instance of the cell */
+    public int getCellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    /** @return one past the last instance of the cell */
+    public int getCellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    /** @return the bounds of all cells, 6 floats per cell: min x, y, z, max x, y, z. Empty cells have min > max. */
+    public float[] getCellBounds() {
+        return cellBounds;
+    }
+
+    /** Grows the bounds at offset to include the given bounds. */
+    public static void include(float[] bounds, int offset, float[] other, int otherOffset) {
+        for (int i = 0; i < 3; i++) {
+            bounds[offset + i] = Math.min(bounds[offset + i], other[otherOffset + i]);
+            bounds[offset + 3 + i] = Math.max(bounds[offset + 3 + i], other[otherOffset + 3 + i]);
+        }
+    }
+
+    private static void include(float[] bounds, int offset, float x, float y, float z) {
+        bounds[offset] = Math.min(bounds[offset], x);
+        bounds[offset + 1] = Math.min(bounds[offset + 1], y);
+        bounds[offset + 2] = Math.min(bounds[offset + 2], z);
+        bounds[offset + 3] = Math.max(bounds[offset + 3], x);
+        bounds[offset + 4] = Math.max(bounds[offset + 4], y);
+        bounds[offset + 5] = Math.max(bounds[offset + 5], z);
+    }
+
+    /** Tests all the instance positions inside the bounds at once.
+     * @param radius bounding sphere radius of an instance, as given to {@link Frustum#sphereInFrustum(Vector3, float)}
+     * @param cullingFactor instances further away from the camera position are culled
+     * @return {@link #INSIDE} if every position in the bounds passes both tests, {@link #OUTSIDE} if none does,
+     *         {@link #PARTIAL} otherwise */
+    public int classify(float[] bounds, int offset, Frustum frustum, float radius, Vector3 cameraPosition, float cullingFactor) {
+        float minX = bounds[offset], minY = bounds[offset + 1], minZ = bounds[offset + 2];
+        float maxX = bounds[offset + 3], maxY = bounds[offset + 4], maxZ = bounds[offset + 5];
+        if (minX > maxX) return OUTSIDE; // empty
+
+        int result = INSIDE;
+
+        // sphereInFrustum() fails when normal.dot(center) < -radius - d for any plane
+        for (Plane plane : frustum.planes) {
+            Vector3 n = plane.normal;
+            float highest = n.x * (n.x >= 0 ? maxX : minX) + n.y * (n.y >= 0 ? maxY : minY) + n.z * (n.z >= 0 ? maxZ : minZ);
+            float lowest = n.x * (n.x >= 0 ? minX : maxX) + n.y * (n.y >= 0 ? minY : maxY) + n.z * (n.z >= 0 ? minZ : maxZ);
+            float limit = -radius - plane.d;
+            if (highest < limit - epsilon) return OUTSIDE;
+            if (lowest < limit + epsilon) result = PARTIAL;
+        }
+
+        // closest and furthest point of the bounds from the camera
+        if (getClosestDistance(bounds, offset, cameraPosition) > cullingFactor + epsilon) return OUTSIDE;
+
+        float cx = cameraPosition.x, cy = cameraPosition.y, cz = cameraPosition.z;
+        float dx = Math.max(Math.abs(minX - cx), Math.abs(maxX - cx));
+        float dy = Math.max(Math.abs(minY - cy), Math.abs(maxY - cy));
+        float dz = Math.max(Math.abs(minZ - cz), Math.abs(maxZ - cz));
+        float furthest = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (furthest > cullingFactor - epsilon) result = PARTIAL;
+
+        return result;
+    }
+
+    /** @return distance from the point to the closest point of the bounds, 0 inside them */
+    public static float getClosestDistance(float[] bounds, int offset, Vector3 point) {
+        float dx = Math.max(Math.max(bounds[offset] - point.x, point.x - bounds[offset + 3]), 0);
+        float dy = Math.max(Math.max(bounds[offset + 1] - point.y, point.y - bounds[offset + 4]), 0);
+        float dz = Math.max(Math.max(bounds[offset + 2] - point.z, point.z - bounds[offset + 5]), 0);
+        return (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,88 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.math.Matrix4;
+
+/** How the transform of an instance is sent to the shaders.
+ *
+ * {@link #MATRIX} is the full {@code mat4 i_worldTrans}, 16 floats (64 bytes) per instance.
+ * {@link #COMPACT} is {@code vec4 i_posScale} (translation + uniform scale) and {@code vec4 i_rotation} (quaternion),
+ * 8 floats (32 bytes) per instance, the vertex shader rebuilds the transform. It halves the instance memory and
+ * everything that is sent to the GPU when instances change.
+ * {@link #ANIMATED} adds {@code vec4 i_spin} (rotation axis + radians per second, 12 floats per instance): the vertex
+ * shaders spin the instances from the {@code u_time} uniform, see {@link InstanceClock}, so the instance data does
+ * not change at all while they rotate. */
+public enum InstanceLayout {
+
+    /** mat4 i_worldTrans, column major as in {@link Matrix4}, the shaders do {@code i_worldTrans * pos} */
+    MATRIX(16, ""),
+    /** vec4 i_posScale + vec4 i_rotation */
+    COMPACT(8, "#define instancedCompact\n"),
+    /** vec4 i_posScale + vec4 i_rotation + vec4 i_spin */
+    ANIMATED(12, "#define instancedCompact\n#define instancedAnimated\n");
+
+    public final int floatsPerInstance;
+    private final String shaderDefines;
+
+    InstanceLayout(int floatsPerInstance, String shaderDefines) {
+        this.floatsPerInstance = floatsPerInstance;
+        this.shaderDefines = shaderDefines;
+    }
+
+    /** @return the instanced attributes to give to {@link Mesh#enableInstancedRendering(boolean, int, VertexAttribute...)} */
+    public VertexAttribute[] createAttributes() {
+        if (this == COMPACT) {
+            return new VertexAttribute[] {
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_posScale"),
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_rotation")};
+        }
+        if (this == ANIMATED) {
+            return new VertexAttribute[] {
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_posScale"),
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_rotation"),
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_spin")};
+        }
+        // Thanks JamesTKhan for saving me hours: how to pass a Matrix4 to the shader (using 4 x Vec4 = 16 floats)
+        return new VertexAttribute[] {
+            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 0),
+            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 1),
+            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 2),
+            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 3)};
+    }
+
+    /** @return lines to add to the shader prefix, selecting the matching code in the vertex shaders */
+    public String getShaderDefines() {
+        return shaderDefines;
+    }
+
+    /** Writes the {@link #floatsPerInstance} floats of the instance. */
+    public void pack(InstanceStore store, int index, float[] out, int offset) {
+        if (this == COMPACT)
+            store.getCompact(index, out, offset);
+        else if (this == ANIMATED)
+            store.getAnimated(index, out, offset);
+        else
+            store.getMatrix(index, out, offset);
+    }
+
+    /** @return the layout of the instanced attributes of the mesh, {@link #MATRIX} if the mesh is not instanced */
+    public static InstanceLayout of(Mesh mesh) {
+        return of(mesh.getInstancedAttributes());
+    }
+
+    /** @param attributes instanced attributes, may be null
+     * @return the layout of the attributes, {@link #MATRIX} if null */
+    public static InstanceLayout of(VertexAttributes attributes) {
+        InstanceLayout layout = MATRIX;
+        if (attributes != null) {
+            for (int i = 0; i < attributes.size(); i++) {
+                String alias = attributes.get(i).alias;
+                if (alias.equals("i_spin")) return ANIMATED;
+                if (alias.equals("i_rotation")) layout = COMPACT;
+            }
+        }
+        return layout;
+    }
+}
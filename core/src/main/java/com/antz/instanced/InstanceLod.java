@@ -0,0 +1,182 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/** Distance based levels of detail: the visible instances are split by distance from the camera between several
+ * meshes of decreasing detail (the last one can be an impostor, like a quad facing the camera), each drawn with one
+ * instanced call.
+ *
+ * Levels are chosen per {@link InstanceGrid} cell, from the distance between the camera and the closest point of the
+ * cell, and the instances of a cell are already next to each other in the store, so nothing is ever sorted. A cell
+ * only changes level once it is past the boundary by {@link #setHysteresis(float) a margin}, and a level is packed and
+ * sent again only in the frames where one of its cells came, left or the instance data changed: flying slowly through
+ * the field touches a few levels a frame, standing still touches none.
+ *
+ * A level holds at most the instances its mesh was enabled for, the cells that do not fit go to the next level. The
+ * last level must fit all the instances. Like {@link InstanceCompactor}, no {@link InstanceBuffer} of the same meshes
+ * may be flushed while this is used, and {@link #invalidate()} has to be called after one was. */
+public class InstanceLod {
+
+    private final InstanceStore store;
+    private final InstanceGrid grid;
+    private final InstanceLayout layout;
+
+    private final Array<Mesh> meshes = new Array<>();
+    private final FloatArray maxDistances = new FloatArray();
+    private final IntArray capacities = new IntArray();
+    private final Array<float[]> data = new Array<>();  // grown as needed, the visible instances of each level
+    private int[] counts = new int[0];
+    private boolean[] dirty = new boolean[0];
+
+    private final byte[] wantedLevels;      // level of each cell by distance, -1 when not visible
+    private final byte[] cellLevels;        // level each cell is drawn at, after capacity, -1 when not visible
+    private float hysteresis = 0.1f;
+    private int cellsChanged;
+
+    public InstanceLod(InstanceStore store, InstanceGrid grid, InstanceLayout layout) {
+        this.store = store;
+        this.grid = grid;
+        this.layout = layout;
+        wantedLevels = new byte[grid.getCellCount()];
+        cellLevels = new byte[grid.getCellCount()];
+        Arrays.fill(wantedLevels, (byte)-1);
+        Arrays.fill(cellLevels, (byte)-1);
+    }
+
+    /** Adds the next, less detailed, level.
+     * @param mesh with instanced rendering enabled for capacity instances of the layout's attributes
+     * @param maxDistance instances up to this distance from the camera use this level, the last level takes all the
+     *                    instances beyond the previous one whatever its distance */
+    public InstanceLod addLevel(Mesh mesh, float maxDistance, int capacity) {
+        if (meshes.size >= Byte.MAX_VALUE) throw new GdxRuntimeException("too many levels");
+        meshes.add(mesh);
+        maxDistances.add(maxDistance);
+        capacities.add(capacity);
+        data.add(null);
+        counts = new int[meshes.size];
+        dirty = new boolean[meshes.size];
+        invalidate();
+        return this;
+    }
+
+    /** @param hysteresis fraction of the boundary distance a cell must be past before it changes level */
+    public void setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    /** Packs and sends every level again on the next update, for when the meshes were given other instance data. */
+    public void invalidate() {
+        Arrays.fill(dirty, true);
+    }
+
+    /** Assigns the visible cells to levels and sends the levels that changed to their meshes.
+     * @param radius bounding sphere radius of an instance
+     * @param dataChanged whether instances moved or rotated since the last update */
+    public void update(Camera camera, float radius, boolean dataChanged) {
+        if (dataChanged) invalidate();
+        cellsChanged = 0;
+
+        // level of every cell by distance, then the level it fits in, in cell order so the result is stable
+        Arrays.fill(counts, 0);
+        float[] cellBounds = grid.getCellBounds();
+        int last = meshes.size - 1;
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            int level = -1;
+            if (grid.classify(cellBounds, cell * 6, camera.frustum, radius, camera.position, Float.POSITIVE_INFINITY) != InstanceGrid.OUTSIDE)
+                level = getLevel(InstanceGrid.getClosestDistance(cellBounds, cell * 6, camera.position), wantedLevels[cell]);
+            wantedLevels[cell] = (byte)level;
+
+            if (level >= 0) {
+                int size = grid.getCellEnd(cell) - grid.getCellStart(cell);
+                while (level < last && counts[level] + size > capacities.get(level))
+                    level++;
+                counts[level] += size;
+            }
+            if (level != cellLevels[cell]) {
+                if (cellLevels[cell] >= 0) dirty[cellLevels[cell]] = true;
+                if (level >= 0) dirty[level] = true;
+                cellLevels[cell] = (byte)level;
+                cellsChanged++;
+            }
+        }
+
+        for (int level = 0; level <= last; level++) {
+            if (!dirty[level]) continue;
+            dirty[level] = false;
+            pack(level);
+            // an empty instance buffer would make the mesh draw a single non instanced copy, the caller skips it
+            if (counts[level] > 0) meshes.get(level).setInstanceData(data.get(level), 0, counts[level] * layout.floatsPerInstance);
+        }
+    }
+
+    private int getLevel(float distance, int previous) {
+        int level = 0;
+        while (level < meshes.size - 1 && distance > maxDistances.get(level))
+            level++;
+        if (previous < 0 || level == previous) return level;
+
+        // stay at the previous level until past its boundary by the hysteresis
+        if (level > previous && distance <= maxDistances.get(previous) * (1 + hysteresis)) return previous;
+        if (level < previous && distance > maxDistances.get(previous - 1) * (1 - hysteresis)) return previous;
+        return level;
+    }
+
+    private void pack(int level) {
+        int floats = layout.floatsPerInstance;
+        float[] levelData = data.get(level);
+        if (counts[level] > 0 && (levelData == null || levelData.length < counts[level] * floats)) {
+            // grow by half again, up to the capacity of the mesh
+            int size = Math.min(capacities.get(level), Math.max(counts[level], counts[level] * 3 / 2));
+            levelData = new float[size * floats];
+            data.set(level, levelData);
+        }
+
+        int offset = 0;
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            if (cellLevels[cell] != level) continue;
+            for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++, offset += floats)
+                layout.pack(store, i, levelData, offset);
+        }
+    }
+
+    public int getLevelCount() {
+        return meshes.size;
+    }
+
+    public Mesh getMesh(int level) {
+        return meshes.get(level);
+    }
+
+    /** @return instances drawn at the level since the last update, skip drawing it when 0 */
+    public int getCount(int level) {
+        return counts[level];
+    }
+
+    /** @return instances drawn at all the levels */
+    public int getVisibleCount() {
+        int total = 0;
+        for (int count : counts)
+            total += count;
+        return total;
+    }
+
+    /** @return cells that changed level (or visibility) in the last update */
+    public int getCellsChanged() {
+        return cellsChanged;
+    }
+
+    /** @return heap bytes of the packed levels and the per cell levels */
+    public long getMemoryBytes() {
+        long bytes = wantedLevels.length * 2L;
+        for (float[] levelData : data)
+            if (levelData != null) bytes += levelData.length * 4L;
+        return bytes;
+    }
+}
@@ -0,0 +1,101 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+
+/** Bytes used by the instance data, computed from the sizes of the arrays and buffers, logged at startup.
+ *
+ * The memory budget of N instances with L bytes per instance in the {@link InstanceLayout} (32 compact, 48 animated,
+ * 64 matrix) is:
+ * <ul>
+ * <li>{@link InstanceStore}: the single source of truth, 32 bytes (48 with spins)</li>
+ * <li>{@link InstanceBuffer}: L bytes for the CPU copy, up to 4 bytes for the dirty list, and L bytes of direct memory
+ * in libGDX's instance buffer</li>
+ * <li>{@link InstanceCompactor}: L bytes, only once the visible only mode was used</li>
+ * <li>{@link InstanceUpdater}: 4 bytes for the updated lists of the chunks, scratch variables are per chunk</li>
+ * <li>{@link InstanceGrid}: 28 bytes per cell, a few hundred instances per cell</li>
+ * </ul>
+ * so at most 3 L + 64 bytes per instance, see {@link #getBudgetBytes(int, InstanceLayout)}. There is no per instance
+ * {@code Matrix4} or scratch array anywhere. */
+public class InstanceMemoryReport {
+
+    // besides the per instance bytes: chunk and cell bookkeeping of small fields
+    private static final long FIXED_BUDGET_BYTES = 64 * 1024;
+
+    private final Array<String> names = new Array<>();
+    private final LongArray heapBytes = new LongArray();
+    private final LongArray directBytes = new LongArray();
+    private final int instanceCount;
+
+    public InstanceMemoryReport(int instanceCount) {
+        this.instanceCount = instanceCount;
+    }
+
+    /** Report of the usual instance pipeline, any of the parts can be null. */
+    public static InstanceMemoryReport of(InstanceStore store, InstanceBuffer instances, InstanceUpdater updater, InstanceCompactor compactor) {
+        InstanceMemoryReport report = new InstanceMemoryReport(store.getCount());
+        report.add("InstanceStore", store.getMemoryBytes(), 0);
+        if (instances != null) report.add("InstanceBuffer", instances.getMemoryBytes(), instances.getDirectMemoryBytes());
+        if (updater != null) {
+            report.add("InstanceUpdater", updater.getMemoryBytes(), 0);
+            if (updater.getGrid() != null) report.add("InstanceGrid", updater.getGrid().getMemoryBytes(), 0);
+        }
+        if (compactor != null) report.add("InstanceCompactor", compactor.getMemoryBytes(), 0);
+        return report;
+    }
+
+    public InstanceMemoryReport add(String name, long heap, long direct) {
+        names.add(name);
+        heapBytes.add(heap);
+        directBytes.add(direct);
+        return this;
+    }
+
+    public long getHeapBytes() {
+        long total = 0;
+        for (int i = 0; i < heapBytes.size; i++)
+            total += heapBytes.get(i);
+        return total;
+    }
+
+    public long getDirectBytes() {
+        long total = 0;
+        for (int i = 0; i < directBytes.size; i++)
+            total += directBytes.get(i);
+        return total;
+    }
+
+    public long getTotalBytes() {
+        return getHeapBytes() + getDirectBytes();
+    }
+
+    /** @return the most heap and direct bytes the instance pipeline may use, see the class documentation */
+    public static long getBudgetBytes(int instanceCount, InstanceLayout layout) {
+        long layoutBytes = layout.floatsPerInstance * 4L;
+        return instanceCount * (3 * layoutBytes + 64) + FIXED_BUDGET_BYTES;
+    }
+
+    public boolean isWithinBudget(InstanceLayout layout) {
+        return getTotalBytes() <= getBudgetBytes(instanceCount, layout);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(instanceCount).append(" instances");
+        for (int i = 0; i < names.size; i++) {
+            builder.append("\n  ").append(names.get(i)).append(": ").append(toMegaBytes(heapBytes.get(i))).append(" heap");
+            if (directBytes.get(i) > 0) builder.append(", ").append(toMegaBytes(directBytes.get(i))).append(" direct");
+        }
+        builder.append("\n  total: ").append(toMegaBytes(getHeapBytes())).append(" heap, ")
+            .append(toMegaBytes(getDirectBytes())).append(" direct, ")
+            .append(getTotalBytes() / Math.max(1, instanceCount)).append(" bytes per instance");
+        return builder.toString();
+    }
+
+    // no String.format() on the web
+    private static String toMegaBytes(long bytes) {
+        long tenths = (bytes * 10 + 512 * 1024) / (1024 * 1024);
+        return (tenths / 10) + "." + (tenths % 10) + " MB";
+    }
+}
@@ -0,0 +1,102 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+/** Stable handles for instances that come and go, kept in a dense range of slots [0, count).
+ *
+ * Removing an instance moves the last one into its slot (swap with last), so the instances to draw always are the
+ * first count slots, and handles of removed instances are reused from a free list. Every operation is O(1), the arrays
+ * double when full. The slots are what {@link InstancedBatch} uploads, the handles are what the game keeps. Nothing
+ * here needs a GL context. */
+public class InstanceSlots {
+
+    private int[] slotOfHandle;     // -1 for a free handle
+    private int[] handleOfSlot;
+    private final IntArray freeHandles = new IntArray();
+    private int handleCount;        // handles ever given out
+    private int count;
+
+    public InstanceSlots(int initialCapacity) {
+        slotOfHandle = new int[Math.max(1, initialCapacity)];
+        handleOfSlot = new int[Math.max(1, initialCapacity)];
+    }
+
+    /** Adds an instance in slot {@link #getCount()} - 1.
+     * @return its handle */
+    public int add() {
+        int handle;
+        if (freeHandles.size > 0) {
+            handle = freeHandles.pop();
+        } else {
+            handle = handleCount++;
+            if (handle == slotOfHandle.length) slotOfHandle = grow(slotOfHandle);
+        }
+        if (count == handleOfSlot.length) handleOfSlot = grow(handleOfSlot);
+
+        int slot = count++;
+        slotOfHandle[handle] = slot;
+        handleOfSlot[slot] = handle;
+        return handle;
+    }
+
+    /** Removes the instance, the last instance moves into its slot, see {@link #getSlot(int)}.
+     * @return the slot the last instance was moved from, to copy its data into the removed slot, or -1 if the removed
+     * instance was the last one */
+    public int remove(int handle) {
+        int slot = getSlot(handle);
+        int last = --count;
+        slotOfHandle[handle] = -1;
+        freeHandles.add(handle);
+        if (slot == last) return -1;
+
+        int moved = handleOfSlot[last];
+        handleOfSlot[slot] = moved;
+        slotOfHandle[moved] = slot;
+        return last;
+    }
+
+    /** @return the slot of the instance, it changes when another instance is removed */
+    public int getSlot(int handle) {
+        if (!contains(handle)) throw new GdxRuntimeException("no instance with handle " + handle);
+        return slotOfHandle[handle];
+    }
+
+    /** @return the handle of the instance in the slot */
+    public int getHandle(int slot) {
+        if (slot < 0 || slot >= count) throw new GdxRuntimeException("slot " + slot + " out of [0, " + count + ")");
+        return handleOfSlot[slot];
+    }
+
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < handleCount && slotOfHandle[handle] >= 0;
+    }
+
+    /** @return instances, in slots [0, count) */
+    public int getCount() {
+        return count;
+    }
+
+    /** @return slots available before the arrays grow */
+    public int getCapacity() {
+        return handleOfSlot.length;
+    }
+
+    /** Removes all instances, handles are given out from 0 again. */
+    public void clear() {
+        count = 0;
+        handleCount = 0;
+        freeHandles.clear();
+    }
+
+    /** @return heap bytes of the handle and slot arrays and of the free list */
+    public long getMemoryBytes() {
+        return (slotOfHandle.length + handleOfSlot.length + freeHandles.items.length) * 4L;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,222 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+/** Position, rotation and scale of every instance, kept in plain float arrays (structure of arrays).
+ *
+ * This is the source of truth for the instance transforms. The matrices the shaders need are only composed
+ * when the data is sent to the mesh, see {@link InstanceBuffer#setSource(InstanceStore, InstanceLayout)}.
+ * Reading a position in the update loop is 3 array reads instead of building a {@link Matrix4}. */
+public class InstanceStore {
+
+    private final int count;
+
+    /** x, y, z of every instance */
+    public final float[] positions;
+    /** quaternion x, y, z, w of every instance */
+    public final float[] rotations;
+    /** uniform scale of every instance */
+    public final float[] scales;
+
+    // rotation axis x, y, z + radians per second of every instance, allocated by the first setSpin()
+    private float[] spins;
+
+    public InstanceStore(int count) {
+        this.count = count;
+        positions = new float[count * 3];
+        rotations = new float[count * 4];
+        scales = new float[count];
+        for (int i = 0; i < count; i++) {
+            rotations[i * 4 + 3] = 1f; // identity rotation
+            scales[i] = 1f;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** @return heap bytes of the arrays: 32 bytes per instance, 48 once spins are set */
+    public long getMemoryBytes() {
+        return (positions.length + rotations.length + scales.length + (spins == null ? 0 : spins.length)) * 4L;
+    }
+
+    public void set(int index, Vector3 position, Quaternion rotation) {
+        set(index, position.x, position.y, position.z, rotation, 1f);
+    }
+
+    public void set(int index, float x, float y, float z, Quaternion rotation, float scale) {
+        int p = index * 3;
+        positions[p] = x;
+        positions[p + 1] = y;
+        positions[p + 2] = z;
+
+        int r = index * 4;
+        rotations[r] = rotation.x;
+        rotations[r + 1] = rotation.y;
+        rotations[r + 2] = rotation.z;
+        rotations[r + 3] = rotation.w;
+
+        scales[index] = scale;
+    }
+
+    public Vector3 getPosition(int index, Vector3 out) {
+        int p = index * 3;
+        return out.set(positions[p], positions[p + 1], positions[p + 2]);
+    }
+
+    public Quaternion getRotation(int index, Quaternion out) {
+        int r = index * 4;
+        return out.set(rotations[r], rotations[r + 1], rotations[r + 2], rotations[r + 3]);
+    }
+
+    /** Makes the instance spin around one of its own axes, for the {@link InstanceLayout#ANIMATED} layout.
+     * @param axis unit rotation axis */
+    public void setSpin(int index, Vector3 axis, float degreesPerSecond) {
+        if (spins == null) spins = new float[count * 4];
+        int s = index * 4;
+        spins[s] = axis.x;
+        spins[s + 1] = axis.y;
+        spins[s + 2] = axis.z;
+        spins[s + 3] = degreesPerSecond * MathUtils.degreesToRadians;
+    }
+
+    /** @return axis x, y, z + radians per second of every instance, or null if no spin was set */
+    public float[] getSpins() {
+        return spins;
+    }
+
+    /** Rotation of a spinning instance after the given time, what the vertex shaders compute for the
+     * {@link InstanceLayout#ANIMATED} layout: the instance rotation followed by the spin around its own axis. */
+    public Quaternion getRotation(int index, float time, Quaternion out) {
+        getRotation(index, out);
+        if (spins == null) return out;
+        int s = index * 4;
+        float halfAngle = spins[s + 3] * time * 0.5f;
+        float sin = (float)Math.sin(halfAngle);
+        return out.mul(spins[s] * sin, spins[s + 1] * sin, spins[s + 2] * sin, (float)Math.cos(halfAngle));
+    }
+
+    /** Applies the spin of the given time to the rotations, for example when going back from the
+     * {@link InstanceLayout#ANIMATED} layout to rotating the instances on the CPU. */
+    public void applySpins(float time, Quaternion tmp) {
+        if (spins == null) return;
+        for (int i = 0; i < count; i++) {
+            getRotation(i, time, tmp);
+            int r = i * 4;
+            rotations[r] = tmp.x;
+            rotations[r + 1] = tmp.y;
+            rotations[r + 2] = tmp.z;
+            rotations[r + 3] = tmp.w;
+        }
+    }
+
+    /** Reorders the instances, used to keep instances close in space close in memory.
+     * @param order order[i] is the current index of the instance that moves to index i */
+    public void permute(int[] order) {
+        float[] oldPositions = positions.clone();
+        float[] oldRotations = rotations.clone();
+        float[] oldScales = scales.clone();
+        float[] oldSpins = spins == null ? null : spins.clone();
+        for (int i = 0; i < count; i++) {
+            int from = order[i];
+            System.arraycopy(oldPositions, from * 3, positions, i * 3, 3);
+            System.arraycopy(oldRotations, from * 4, rotations, i * 4, 4);
+            scales[i] = oldScales[from];
+            if (oldSpins != null) System.arraycopy(oldSpins, from * 4, spins, i * 4, 4);
+        }
+    }
+
+    /** Rotates the instance around its own axes, same as {@link Matrix4#rotate(Quaternion)} on its transform.
+     * @param q the rotation to apply, for example {@code new Quaternion(Vector3.X, 45 * delta)} */
+    public void rotate(int index, Quaternion q) {
+        int r = index * 4;
+        float x = rotations[r], y = rotations[r + 1], z = rotations[r + 2], w = rotations[r + 3];
+
+        // this * q, see Quaternion.mul()
+        float nx = w * q.x + x * q.w + y * q.z - z * q.y;
+        float ny = w * q.y + y * q.w + z * q.x - x * q.z;
+        float nz = w * q.z + z * q.w + x * q.y - y * q.x;
+        float nw = w * q.w - x * q.x - y * q.y - z * q.z;
+
+        // keep it a unit quaternion, rotations are accumulated every frame
+        float len2 = nx * nx + ny * ny + nz * nz + nw * nw;
+        if (len2 != 1f && len2 != 0f) {
+            float inv = 1f / (float)Math.sqrt(len2);
+            nx *= inv;
+            ny *= inv;
+            nz *= inv;
+            nw *= inv;
+        }
+
+        rotations[r] = nx;
+        rotations[r + 1] = ny;
+        rotations[r + 2] = nz;
+        rotations[r + 3] = nw;
+    }
+
+    /** Writes the 8 floats of the {@link InstanceLayout#COMPACT} layout: x, y, z, scale, then the quaternion x, y, z, w. */
+    public void getCompact(int index, float[] out, int offset) {
+        int p = index * 3;
+        int r = index * 4;
+        out[offset] = positions[p];
+        out[offset + 1] = positions[p + 1];
+        out[offset + 2] = positions[p + 2];
+        out[offset + 3] = scales[index];
+        out[offset + 4] = rotations[r];
+        out[offset + 5] = rotations[r + 1];
+        out[offset + 6] = rotations[r + 2];
+        out[offset + 7] = rotations[r + 3];
+    }
+
+    /** Writes the 12 floats of the {@link InstanceLayout#ANIMATED} layout: the {@link #getCompact(int, float[], int)} ones,
+     * then the spin axis x, y, z and radians per second. */
+    public void getAnimated(int index, float[] out, int offset) {
+        getCompact(index, out, offset);
+        int s = index * 4;
+        if (spins == null) {
+            out[offset + 8] = 1f;
+            out[offset + 9] = out[offset + 10] = out[offset + 11] = 0f;
+        } else {
+            out[offset + 8] = spins[s];
+            out[offset + 9] = spins[s + 1];
+            out[offset + 10] = spins[s + 2];
+            out[offset + 11] = spins[s + 3];
+        }
+    }
+
+    /** Writes the 16 floats of the instance transform, same layout and values as
+     * {@link Matrix4#set(float, float, float, float, float, float, float, float, float, float)}. */
+    public void getMatrix(int index, float[] out, int offset) {
+        int p = index * 3;
+        int r = index * 4;
+        float qx = rotations[r], qy = rotations[r + 1], qz = rotations[r + 2], qw = rotations[r + 3];
+        float s = scales[index];
+
+        float xs = qx * 2f, ys = qy * 2f, zs = qz * 2f;
+        float wx = qw * xs, wy = qw * ys, wz = qw * zs;
+        float xx = qx * xs, xy = qx * ys, xz = qx * zs;
+        float yy = qy * ys, yz = qy * zs, zz = qz * zs;
+
+        // Matrix4 is column major: the translation is in 12, 13, 14
+        out[offset] = s * (1f - (yy + zz));
+        out[offset + 1] = s * (xy + wz);
+        out[offset + 2] = s * (xz - wy);
+        out[offset + 3] = 0f;
+        out[offset + 4] = s * (xy - wz);
+        out[offset + 5] = s * (1f - (xx + zz));
+        out[offset + 6] = s * (yz + wx);
+        out[offset + 7] = 0f;
+        out[offset + 8] = s * (xz + wy);
+        out[offset + 9] = s * (yz - wx);
+        out[offset + 10] = s * (1f - (xx + yy));
+        out[offset + 11] = 0f;
+        out[offset + 12] = positions[p];
+        out[offset + 13] = positions[p + 1];
+        out[offset + 14] = positions[p + 2];
+        out[offset + 15] = 1f;
+    }
+}
@@ -0,0 +1,202 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/** The per frame update of the instances: spin every instance that is in view and close enough to be seen rotating.
+ *
+ * The instances are split in chunks of {@link #CHUNK_SIZE} that are updated by a {@link TaskRunner}, possibly in
+ * parallel. Every chunk has its own scratch variables and its own list of updated instances, which are then handed to
+ * the {@link InstanceBuffer} on the calling (GL) thread, in instance order.
+ *
+ * With an {@link InstanceGrid} (see {@link #setGrid(InstanceGrid)}) the chunks are groups of grid cells instead, and
+ * whole chunks and cells are culled against their bounds. Only the instances of partially visible cells are tested one
+ * by one, the result is the same as testing every instance. */
+public class InstanceUpdater {
+
+    /** instances per chunk, small enough for the chunk's part of the store to stay in cache */
+    public static final int CHUNK_SIZE = 16384;
+
+    // rough size of a chunk besides its dirty list: the object, bounds, scratch Vector3 and IntArray
+    private static final int CHUNK_OVERHEAD_BYTES = 160;
+
+    private final InstanceStore store;
+    private final TaskRunner runner;
+    private Chunk[] chunks;
+    private InstanceGrid grid;
+    private final Vector3 axisEven, axisOdd;
+    private final Quaternion rotationEven = new Quaternion(), rotationOdd = new Quaternion();
+    private final TaskRunner.Task updateTask = this::updateChunk;
+
+    private Camera camera;
+    private float radius, cullingFactor;
+    private int instancesTested;
+
+    /** @param axisEven rotation axis of the instances with an even index
+     *  @param axisOdd rotation axis of the instances with an odd index */
+    public InstanceUpdater(InstanceStore store, TaskRunner runner, Vector3 axisEven, Vector3 axisOdd) {
+        this.store = store;
+        this.runner = runner;
+        this.axisEven = axisEven;
+        this.axisOdd = axisOdd;
+
+        setGrid(null);
+    }
+
+    /** @param grid grid built over the store of this updater, or null to test every instance */
+    public void setGrid(InstanceGrid grid) {
+        this.grid = grid;
+        if (grid == null) {
+            int count = store.getCount();
+            chunks = new Chunk[(count + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int i = 0; i < chunks.length; i++)
+                chunks[i] = new Chunk(i * CHUNK_SIZE, Math.min(count, (i + 1) * CHUNK_SIZE), 0, 0);
+            return;
+        }
+
+        // group consecutive cells until a chunk holds about CHUNK_SIZE instances
+        Array<Chunk> list = new Array<>(Chunk.class);
+        int cellCount = grid.getCellCount();
+        int firstCell = 0;
+        for (int c = 0; c < cellCount; c++) {
+            if (c == cellCount - 1 || grid.getCellEnd(c + 1) - grid.getCellStart(firstCell) > CHUNK_SIZE) {
+                Chunk chunk = new Chunk(grid.getCellStart(firstCell), grid.getCellEnd(c), firstCell, c + 1);
+                for (int cell = firstCell; cell <= c; cell++)
+                    InstanceGrid.include(chunk.bounds, 0, grid.getCellBounds(), cell * 6);
+                list.add(chunk);
+                firstCell = c + 1;
+            }
+        }
+        chunks = list.toArray();
+    }
+
+    public InstanceGrid getGrid() {
+        return grid;
+    }
+
+    /** @return heap bytes of the chunks: their bounds and scratch variables, and their list of updated instances
+     *          which can hold every instance of the chunk, so 4 bytes per instance */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks)
+            bytes += chunk.dirty.items.length * 4L + CHUNK_OVERHEAD_BYTES;
+        return bytes;
+    }
+
+    /** @param radius instances whose bounding sphere is outside the camera frustum are not updated
+     *  @param cullingFactor instances further away from the camera are not updated */
+    public void setCulling(float radius, float cullingFactor) {
+        this.radius = radius;
+        this.cullingFactor = cullingFactor;
+    }
+
+    /** Rotates the visible instances and marks them dirty in the instance buffer.
+     * @param degrees how much to rotate this frame
+     * @return the number of instances updated */
+    public int update(Camera camera, float degrees, InstanceBuffer instances) {
+        this.camera = camera;
+        rotationEven.set(axisEven, degrees);
+        rotationOdd.set(axisOdd, degrees);
+
+        runner.run(chunks.length, updateTask);
+
+        int updated = 0;
+        instancesTested = 0;
+        for (Chunk chunk : chunks) {
+            updated += chunk.dirty.size;
+            instancesTested += chunk.tested;
+            instances.markDirty(chunk.dirty);
+        }
+        return updated;
+    }
+
+    /** @return number of instances tested one by one in the last {@link #update(Camera, float, InstanceBuffer)} */
+    public int getInstancesTested() {
+        return instancesTested;
+    }
+
+    public TaskRunner getRunner() {
+        return runner;
+    }
+
+    private void updateChunk(int index) {
+        Chunk chunk = chunks[index];
+        chunk.dirty.clear();
+        chunk.tested = 0;
+
+        if (grid == null) {
+            testRange(chunk, chunk.from, chunk.to);
+            return;
+        }
+
+        switch (grid.classify(chunk.bounds, 0, camera.frustum, radius, camera.position, cullingFactor)) {
+            case InstanceGrid.OUTSIDE:
+                return;
+            case InstanceGrid.INSIDE:
+                rotateRange(chunk, chunk.from, chunk.to);
+                return;
+        }
+
+        float[] cellBounds = grid.getCellBounds();
+        for (int cell = chunk.cellFrom; cell < chunk.cellTo; cell++) {
+            switch (grid.classify(cellBounds, cell * 6, camera.frustum, radius, camera.position, cullingFactor)) {
+                case InstanceGrid.INSIDE:
+                    rotateRange(chunk, grid.getCellStart(cell), grid.getCellEnd(cell));
+                    break;
+                case InstanceGrid.PARTIAL:
+                    testRange(chunk, grid.getCellStart(cell), grid.getCellEnd(cell));
+                    break;
+            }
+        }
+    }
+
+    // Everything you do in this loop will impact performance at high instance counts
+    private void testRange(Chunk chunk, int from, int to) {
+        Vector3 position = chunk.position;
+        IntArray dirty = chunk.dirty;
+        float[] positions = store.positions;
+        chunk.tested += to - from;
+
+        for (int x = from; x < to; x++) {
+            int p = x * 3; // each instance uses 3 floats for its position
+            position.set(positions[p], positions[p + 1], positions[p + 2]);
+
+            // Attempt culling if not within camera's frustum, or too far away to be noticed rotating
+            if (!(camera.frustum.sphereInFrustum(position, radius)) || position.dst(camera.position) > cullingFactor) continue;
+
+            // spin every other instance differently
+            store.rotate(x, (x & 1) == 0 ? rotationEven : rotationOdd);
+            dirty.add(x);
+        }
+    }
+
+    // all instances in the range are known to be visible
+    private void rotateRange(Chunk chunk, int from, int to) {
+        IntArray dirty = chunk.dirty;
+        for (int x = from; x < to; x++) {
+            store.rotate(x, (x & 1) == 0 ? rotationEven : rotationOdd);
+            dirty.add(x);
+        }
+    }
+
+    // a range of instances with its own scratch variables, so chunks can be updated at the same time
+    private static class Chunk {
+        final int from, to;
+        final int cellFrom, cellTo;     // grid cells of the chunk, if there is a grid
+        final float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        final Vector3 position = new Vector3();
+        final IntArray dirty;
+        int tested;
+
+        Chunk(int from, int to, int cellFrom, int cellTo) {
+            this.from = from;
+            this.to = to;
+            this.cellFrom = cellFrom;
+            this.cellTo = cellTo;
+            dirty = new IntArray(Math.max(1, to - from));
+        }
+    }
+}
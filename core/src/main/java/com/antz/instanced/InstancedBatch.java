@@ -0,0 +1,197 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+import java.util.Arrays;
+
+/** Instances of one mesh that are added and removed one at a time, for entities spawning and despawning while the
+ * game runs, where the screens build their fields once.
+ *
+ * {@link #add(Matrix4)} returns a handle to {@link #update(int, Matrix4)} or {@link #remove(int)} the instance later,
+ * all O(1): the instances stay packed at the start of the instance buffer, see {@link InstanceSlots}, and only the
+ * slots that changed are sent by {@link #flush()}, see {@link InstanceBuffer}. When the buffer is full the mesh gets
+ * one twice as large.
+ *
+ * A libGDX mesh only changes how many instances it draws when all its instance data is set, so the mesh draws some
+ * hidden instances past the last one (all their floats are 0, the shaders collapse them to a point): spawning fills
+ * them and despawning empties them without a full upload, which only happens once they run out or too many pile up.
+ * The floats come from {@link InstanceLayout#pack(InstanceStore, int, float[], int)}, instances of the
+ * {@link InstanceLayout#ANIMATED} layout do not spin. */
+public class InstancedBatch {
+
+    private static final int MIN_HIDDEN = 64;
+
+    private final Mesh mesh;
+    private final InstanceLayout layout;
+    private final int floats;
+    private final InstanceSlots slots;
+    private InstanceBuffer buffer;
+    private int capacity;
+    private int drawn;          // instances the mesh draws, the ones from getCount() on are hidden
+    private int grows;
+
+    private final InstanceStore scratch = new InstanceStore(1); // packs one instance with the layout
+    private final Vector3 position = new Vector3();
+    private final Quaternion rotation = new Quaternion();
+
+    /** @param mesh without instanced rendering enabled, the batch enables it for the layout */
+    public InstancedBatch(Mesh mesh, InstanceLayout layout, int initialCapacity) {
+        this.mesh = mesh;
+        this.layout = layout;
+        this.floats = layout.floatsPerInstance;
+        this.capacity = Math.max(1, initialCapacity);
+        slots = new InstanceSlots(capacity);
+        mesh.enableInstancedRendering(true, capacity, layout.createAttributes());
+        buffer = new InstanceBuffer(mesh, capacity, floats);
+        setDrawn(getHidden(0));
+        buffer.uploadAll(); // the mesh draws no instance until its data is set once
+    }
+
+    /** @return the handle of the new instance */
+    public int add(Vector3 position, Quaternion rotation, float scale) {
+        int handle = addSlot();
+        write(slots.getSlot(handle), position, rotation, scale);
+        return handle;
+    }
+
+    /** @param transform rotation, uniform scale and translation, the {@link InstanceLayout#MATRIX} layout keeps any
+     *                   transform
+     * @return the handle of the new instance */
+    public int add(Matrix4 transform) {
+        int handle = addSlot();
+        write(slots.getSlot(handle), transform);
+        return handle;
+    }
+
+    private int addSlot() {
+        int handle = slots.add();
+        int count = slots.getCount();
+        if (count > capacity) grow();
+        if (count > drawn) setDrawn(count + getHidden(count));
+        return handle;
+    }
+
+    public void update(int handle, Vector3 position, Quaternion rotation, float scale) {
+        write(slots.getSlot(handle), position, rotation, scale);
+    }
+
+    public void update(int handle, Matrix4 transform) {
+        write(slots.getSlot(handle), transform);
+    }
+
+    /** Removes the instance, the handle may be given to a later instance. */
+    public void remove(int handle) {
+        int slot = slots.getSlot(handle);
+        int moved = slots.remove(handle);
+        float[] data = buffer.getData();
+        if (moved >= 0) {
+            System.arraycopy(data, moved * floats, data, slot * floats, floats);
+            buffer.markDirty(slot);
+        }
+
+        // the last slot is now hidden
+        int last = slots.getCount();
+        Arrays.fill(data, last * floats, (last + 1) * floats, 0f);
+        buffer.markDirty(last);
+
+        int count = slots.getCount();
+        if (drawn - count > 2 * getHidden(count)) setDrawn(count + getHidden(count));
+    }
+
+    public boolean contains(int handle) {
+        return slots.contains(handle);
+    }
+
+    /** Removes all the instances. */
+    public void clear() {
+        Arrays.fill(buffer.getData(), 0, slots.getCount() * floats, 0f);
+        slots.clear();
+        buffer.clearDirty();
+        setDrawn(getHidden(0));
+        buffer.uploadAll();
+    }
+
+    /** Sends the instances that changed since the last flush to the mesh, call it before drawing.
+     * @return the number of ranges that were sent */
+    public int flush() {
+        return buffer.flush();
+    }
+
+    private void write(int slot, Matrix4 transform) {
+        if (layout == InstanceLayout.MATRIX) {
+            System.arraycopy(transform.val, 0, buffer.getData(), slot * floats, 16);
+            buffer.markDirty(slot);
+        } else {
+            write(slot, transform.getTranslation(position), transform.getRotation(rotation, true), transform.getScaleX());
+        }
+    }
+
+    private void write(int slot, Vector3 position, Quaternion rotation, float scale) {
+        scratch.set(0, position.x, position.y, position.z, rotation, scale);
+        layout.pack(scratch, 0, buffer.getData(), slot * floats);
+        buffer.markDirty(slot);
+    }
+
+    // a mesh with twice the instances, the data is sent on the next flush
+    private void grow() {
+        int newCapacity = capacity * 2;
+        mesh.disableInstancedRendering();
+        mesh.enableInstancedRendering(true, newCapacity, layout.createAttributes());
+        InstanceBuffer grown = new InstanceBuffer(mesh, newCapacity, floats);
+        System.arraycopy(buffer.getData(), 0, grown.getData(), 0, capacity * floats);
+        grown.setMergeGap(buffer.getMergeGap());
+        grown.setFullUploadFraction(buffer.getFullUploadFraction());
+        buffer = grown;
+        capacity = newCapacity;
+        grows++;
+        buffer.setDrawCount(drawn);
+    }
+
+    private void setDrawn(int count) {
+        drawn = Math.min(capacity, count);
+        buffer.setDrawCount(drawn);
+    }
+
+    // hidden instances drawn past the last one: a quarter more, so the instance count seldom changes
+    private static int getHidden(int count) {
+        return Math.max(MIN_HIDDEN, count / 4);
+    }
+
+    /** @return the mesh to draw, the same one after the batch grows */
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    /** @return instances, skip drawing the mesh when 0 */
+    public int getCount() {
+        return slots.getCount();
+    }
+
+    /** @return instances the mesh has room for before it grows */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** @return instances the mesh draws, the hidden ones included */
+    public int getDrawnCount() {
+        return drawn;
+    }
+
+    /** @return times the mesh was replaced by a larger one */
+    public int getGrowCount() {
+        return grows;
+    }
+
+    /** @return the instance buffer, for its upload counters */
+    public InstanceBuffer getBuffer() {
+        return buffer;
+    }
+
+    /** @return heap bytes of the instance data and of the handles */
+    public long getMemoryBytes() {
+        return buffer.getMemoryBytes() + slots.getMemoryBytes();
+    }
+}
@@ -0,0 +1,240 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Pool;
+
+/** Several instanced models drawn together, for scenes with more than one kind of object: every model has its own
+ * {@link InstanceStore} and {@link InstanceBuffer}, and costs one draw call per node part and pass whatever its
+ * instance count.
+ *
+ * Every mesh of a model is instanced, with the same instances: the node transform of each part is its
+ * {@code u_worldTrans}, which the shaders apply before the instance transform, so models of several nodes and meshes,
+ * like most glTF assets, draw whole. The instance data is packed once per model, see {@link InstanceBuffer#addMesh(Mesh)}.
+ *
+ * It is a {@link RenderableProvider}, added to the renderable providers of the {@code SceneManager} it goes through
+ * the shadow and color passes like a scene, and {@code MyPBRShaderProvider} picks the instanced shader code from the
+ * mesh of every model. Create the {@code SceneManager} with an {@link InstancedRenderableSorter} so the draws come
+ * grouped by shader and material, the GLProfiler draw calls should then be {@link #getRenderableCount()} per pass.
+ *
+ * The shadow passes draw every instance unless {@link InstancedModel#enableShadowCulling(InstanceGrid, float)}: then
+ * {@link #beginShadowPass(Camera)} packs the instances in the frustum of the light camera into copies of the meshes,
+ * and the shadow pass draws those, so it costs what the shadow map covers instead of the whole field. */
+public class InstancedModelRenderer implements RenderableProvider, Disposable {
+
+    /** One model and its instances. */
+    public static class InstancedModel {
+        public final ModelInstance modelInstance;
+        public final InstanceLayout layout;
+        public final InstanceStore store;
+        public final InstanceBuffer buffer;
+        private int drawCount;
+        private long drawCountVersion;
+
+        // shadow culling, see enableShadowCulling()
+        private Array<Mesh> shadowMeshes;
+        private InstanceCompactor shadowCasters;
+        private float casterRadius;
+        private int casterCount;
+
+        InstancedModel(Model model, InstanceLayout layout, int count) {
+            this.layout = layout;
+            for (Mesh mesh : model.meshes)
+                mesh.enableInstancedRendering(true, count, layout.createAttributes());
+            modelInstance = new ModelInstance(model);
+            store = new InstanceStore(count);
+            buffer = new InstanceBuffer(model.meshes.first(), count, layout.floatsPerInstance);
+            for (int i = 1; i < model.meshes.size; i++)
+                buffer.addMesh(model.meshes.get(i));
+            buffer.setSource(store, layout);
+            drawCount = count;
+        }
+
+        /** @return the meshes of the model, all drawing the instances of the buffer */
+        public Array<Mesh> getMeshes() {
+            return buffer.getMeshes();
+        }
+
+        /** Packs the whole store and sends it, once the store is filled. */
+        public void uploadAll() {
+            buffer.packAll();
+            buffer.uploadAll();
+        }
+
+        /** @param count instances the mesh holds, when something else like {@link InstanceCompactor} sends them. With
+         *              0 the model is not drawn at all, a mesh with no instance data would be drawn once without
+         *              instancing */
+        public void setDrawCount(int count) {
+            if (count != drawCount) drawCountVersion++;
+            drawCount = count;
+        }
+
+        public int getDrawCount() {
+            return drawCount;
+        }
+
+        /** Makes the shadow passes draw the instances in the frustum of the light camera only. The light box of a
+         * shadow map reaches towards the light past the view, see {@link ShadowCascades#setCasterDistance(float)}, so
+         * the casters out of view are kept. The instances are packed into instanced copies of the meshes, the
+         * instance data of the color pass is not touched.
+         * @param grid built over the store, to accept and reject whole cells, may be null
+         * @param radius bounding radius of an instance */
+        public void enableShadowCulling(InstanceGrid grid, float radius) {
+            if (shadowMeshes != null) return;
+            shadowMeshes = new Array<>(false, buffer.getMeshes().size, Mesh.class);
+            for (Mesh mesh : buffer.getMeshes()) {
+                Mesh copy = mesh.copy(true);
+                copy.enableInstancedRendering(false, store.getCount(), layout.createAttributes());
+                shadowMeshes.add(copy);
+            }
+            shadowCasters = new InstanceCompactor(shadowMeshes.first(), store, layout);
+            for (int i = 1; i < shadowMeshes.size; i++)
+                shadowCasters.addMesh(shadowMeshes.get(i));
+            shadowCasters.setGrid(grid);
+            casterRadius = radius;
+        }
+
+        /** @return the instances drawn by the last shadow pass, all of them without shadow culling */
+        public int getCasterCount() {
+            return shadowCasters == null ? drawCount : casterCount;
+        }
+
+        // draws the renderables from the first one with the copies of the meshes
+        private void useShadowMeshes(Array<Renderable> renderables, int first) {
+            Array<Mesh> meshes = buffer.getMeshes();
+            for (int i = first; i < renderables.size; i++) {
+                Renderable renderable = renderables.get(i);
+                int index = meshes.indexOf(renderable.meshPart.mesh, true);
+                if (index >= 0) renderable.meshPart.mesh = shadowMeshes.get(index);
+            }
+        }
+
+        private void dispose() {
+            if (shadowMeshes == null) return;
+            for (Mesh mesh : shadowMeshes)
+                mesh.dispose();
+            shadowMeshes = null;
+            shadowCasters = null;
+        }
+    }
+
+    private final Array<InstancedModel> models = new Array<>();
+    private long version;   // models added and removed, and the versions of the removed ones
+    private int renderableCount, modelsDrawn;
+    private boolean shadowPass;
+    private int shadowCasterCount;
+
+    /** Enables instanced rendering on the meshes of the model, fill {@link InstancedModel#store} and call
+     * {@link InstancedModel#uploadAll()} before drawing.
+     * @param model whose meshes are not instanced yet, by another model sharing them for example */
+    public InstancedModel add(Model model, InstanceLayout layout, int count) {
+        if (model.meshes.size == 0) throw new GdxRuntimeException("the model has no mesh");
+        for (Mesh mesh : model.meshes)
+            if (mesh.isInstanced()) throw new GdxRuntimeException("a mesh of the model is already instanced");
+        InstancedModel instanced = new InstancedModel(model, layout, count);
+        models.add(instanced);
+        version++;
+        return instanced;
+    }
+
+    /** Disables instanced rendering on the meshes of the model, the model is drawn no more. */
+    public void remove(InstancedModel model) {
+        if (!models.removeValue(model, true)) return;
+        version += model.buffer.getVersion() + model.drawCountVersion + 1; // keeps getVersion() increasing
+        for (Mesh mesh : model.getMeshes())
+            mesh.disableInstancedRendering();
+        model.dispose();
+    }
+
+    public Array<InstancedModel> getModels() {
+        return models;
+    }
+
+    /** Flushes the instance buffer of every model, see {@link InstanceBuffer#flush()}. */
+    public void flush() {
+        for (InstancedModel model : models)
+            model.buffer.flush();
+    }
+
+    /** @return a number that changes whenever the instances of a model change, see {@link InstanceBuffer#getVersion()},
+     * a draw count changes or a model is added or removed, for {@link ShadowCache}. Instance data sent by something
+     * else, like {@link InstanceCompactor}, is not counted. */
+    public long getVersion() {
+        long sum = version;
+        for (InstancedModel model : models)
+            sum += model.buffer.getVersion() + model.drawCountVersion;
+        return sum;
+    }
+
+    /** Packs the shadow casters of the models with shadow culling, until {@link #endShadowPass()} the renderables are
+     * those of the shadow pass. Call it before every shadow pass, each light camera sees other instances.
+     * @param lightCamera the camera the shadow map is rendered with, updated */
+    public void beginShadowPass(Camera lightCamera) {
+        shadowPass = true;
+        for (InstancedModel model : models) {
+            // even with no instance in the camera view, casters out of it can throw shadows into it
+            if (model.shadowCasters != null)
+                model.casterCount = model.shadowCasters.compact(lightCamera.frustum, model.casterRadius);
+            shadowCasterCount += model.getCasterCount();
+        }
+    }
+
+    public void endShadowPass() {
+        shadowPass = false;
+    }
+
+    /** @return instances drawn by the shadow passes since the last call, for all the shadow maps of a frame */
+    public int takeShadowCasterCount() {
+        int count = shadowCasterCount;
+        shadowCasterCount = 0;
+        return count;
+    }
+
+    @Override
+    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool) {
+        int start = renderables.size;
+        modelsDrawn = 0;
+        for (InstancedModel model : models) {
+            boolean culled = shadowPass && model.shadowCasters != null;
+            // no instance to draw: an empty instance buffer would draw the mesh once without instancing
+            if (culled ? model.casterCount == 0 : model.drawCount == 0) continue;
+            int first = renderables.size;
+            model.modelInstance.getRenderables(renderables, pool);
+            if (culled) model.useShadowMeshes(renderables, first);
+            modelsDrawn++;
+        }
+        renderableCount = renderables.size - start;
+    }
+
+    /** @return renderables of the last pass, the draw calls it took */
+    public int getRenderableCount() {
+        return renderableCount;
+    }
+
+    /** @return models with instances in the last pass */
+    public int getModelsDrawn() {
+        return modelsDrawn;
+    }
+
+    /** Disposes the copies of the meshes made for shadow culling, the models belong to the caller. */
+    @Override
+    public void dispose() {
+        for (InstancedModel model : models)
+            model.dispose();
+    }
+
+    /** @return instances drawn of all the models, see {@link InstancedModel#setDrawCount(int)} */
+    public int getInstanceCount() {
+        int count = 0;
+        for (InstancedModel model : models)
+            count += model.drawCount;
+        return count;
+    }
+}
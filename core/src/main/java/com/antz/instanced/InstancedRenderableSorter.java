@@ -0,0 +1,70 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Comparator;
+
+/** Orders the draws of a batch to change as little GL state as possible between them: opaque renderables by shader,
+ * then material (its textures and the other attributes, see {@link com.badlogic.gdx.graphics.g3d.Attributes#compareTo}),
+ * then mesh, so every shader is bound once and the renderables of a material follow each other.
+ *
+ * The default sorters order opaque renderables front to back by their world transform, which means nothing for an
+ * instanced mesh whose instances are spread all over the field, and mix shaders and materials doing so. Blended
+ * renderables still come last, back to front. Give it to the {@code SceneManager} constructor, see
+ * {@link InstancedModelRenderer}. */
+public class InstancedRenderableSorter implements RenderableSorter, Comparator<Renderable> {
+
+    private Camera camera;
+    private final Vector3 tmp1 = new Vector3();
+    private final Vector3 tmp2 = new Vector3();
+
+    @Override
+    public void sort(Camera camera, Array<Renderable> renderables) {
+        this.camera = camera;
+        renderables.sort(this);
+    }
+
+    @Override
+    public int compare(Renderable o1, Renderable o2) {
+        boolean b1 = isBlended(o1), b2 = isBlended(o2);
+        if (b1 != b2) return b1 ? 1 : -1;
+        if (b1) {
+            // back to front, as the default sorter
+            float d1 = camera.position.dst2(o1.worldTransform.getTranslation(tmp1).add(o1.meshPart.center));
+            float d2 = camera.position.dst2(o2.worldTransform.getTranslation(tmp2).add(o2.meshPart.center));
+            return Float.compare(d2, d1);
+        }
+
+        // identity hash codes only group equal objects, their order does not matter
+        int shader = Integer.compare(System.identityHashCode(o1.shader), System.identityHashCode(o2.shader));
+        if (shader != 0) return shader;
+        if (o1.material != o2.material) {
+            int material = o1.material.compareTo(o2.material);
+            if (material != 0) return material;
+        }
+        return Integer.compare(System.identityHashCode(o1.meshPart.mesh), System.identityHashCode(o2.meshPart.mesh));
+    }
+
+    private static boolean isBlended(Renderable renderable) {
+        BlendingAttribute blending = (BlendingAttribute)renderable.material.get(BlendingAttribute.Type);
+        return blending != null && blending.blended;
+    }
+
+    /** @return how many times the shader, the material or the mesh changes from one renderable to the next, what the
+     * sort minimizes */
+    public static int countStateChanges(Array<Renderable> renderables) {
+        int changes = 0;
+        for (int i = 1; i < renderables.size; i++) {
+            Renderable previous = renderables.get(i - 1), renderable = renderables.get(i);
+            if (previous.shader != renderable.shader) changes++;
+            if (previous.material != renderable.material && previous.material.compareTo(renderable.material) != 0) changes++;
+            if (previous.meshPart.mesh != renderable.meshPart.mesh) changes++;
+        }
+        return changes;
+    }
+}
@@ -4,9 +4,38 @@ import com.badlogic.gdx.Game;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class ModelInstancedRendering extends Game {
+
+    private final TaskRunner taskRunner;
+    private final RenderingConfig config;
+
+    public ModelInstancedRendering() {
+        this(new SerialTaskRunner()); // GWT and TeaVM have no threads
+    }
+
+    /** @param taskRunner runs the instance update, see {@link ForkJoinTaskRunner} for platforms with threads */
+    public ModelInstancedRendering(TaskRunner taskRunner) {
+        this(taskRunner, new RenderingConfig());
+    }
+
+    /** @param taskRunner runs the instance update, see {@link ForkJoinTaskRunner} for platforms with threads
+     * @param config screen, field, instance count and the rest of the settings that need no recompiling */
+    public ModelInstancedRendering(TaskRunner taskRunner, RenderingConfig config) {
+        this.taskRunner = taskRunner;
+        this.config = config;
+    }
+
     @Override
     public void create() {
-        //setScreen(new ModelInstancedRenderingBasicScreen()); // Original
-        setScreen(new ModelInstancedRenderingPBRScreen()); // gdx-gltf + PBR Shaders
+        if (config.screen == RenderingConfig.ScreenType.BASIC)
+            setScreen(new ModelInstancedRenderingBasicScreen(taskRunner, config)); // Original
+        else
+            setScreen(new ModelInstancedRenderingPBRScreen(taskRunner, config)); // gdx-gltf + PBR Shaders
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose(); // only hides the screen
+        if (screen != null) screen.dispose();
+        taskRunner.dispose();
     }
 }
@@ -26,6 +26,7 @@
  ******************************************************************************/
 package com.antz.instanced;
 
+import com.antz.instanced.FrameMetrics.Metric;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
@@ -38,11 +39,11 @@ import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.VertexAttribute;
-import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.VertexAttributes.Usage;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.Material;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.Shader;
@@ -52,18 +53,12 @@ import com.badlogic.gdx.graphics.g3d.utils.FirstPersonCameraController;
 import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.graphics.profiling.GLProfiler;
-import com.badlogic.gdx.math.Frustum;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
-import com.badlogic.gdx.utils.BufferUtils;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.ScreenUtils;
-import com.badlogic.gdx.utils.TimeUtils;
-
-import java.nio.Buffer;
-import java.nio.FloatBuffer;
+import com.badlogic.gdx.utils.StringBuilder;
 
 public class ModelInstancedRenderingBasicScreen implements Screen {
 
@@ -74,24 +69,65 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
     private GLProfiler profiler;
     private SpriteBatch batch2D;
     private BitmapFont font;
+    private StatsHud hud;
     private PerspectiveCamera camera;
     private FirstPersonCameraController controller;
-    private Frustum camFrustum;
     private Renderable renderable;
-    private FloatBuffer offsets;
-    private Quaternion q;
-    private Matrix4 mat4;
-    private Vector3 vec3Temp;
-    private float[] floatTemp;
-
-    private int targetIndex, instanceUpdated;
-    private long startTime, updateTime, renderTime;
+    private InstanceStore store;
+    private InstanceBuffer instances;
+    private InstanceUpdater updater;
+    private InstanceCompactor compactor;
+    private InstanceLod lod;                // created the first time L is pressed
+    private Mesh billboardMesh;
+    private Renderable billboardRenderable;
+    private VoxelWorld world;               // blocks of the voxel field, the instances are derived from it
+    private VoxelRenderer voxels;           // created the first time G is pressed
+    private BaseShader voxelShader;
+    private float voxelSpacing;
+    private InstancedBatch spawned;         // created the first time B is pressed
+    private Renderable spawnRenderable;
+    private int[] spawnHandles;             // ring of the live spawned cubes, the oldest despawns first
+    private int spawnCursor;
+    private final InstanceClock clock = new InstanceClock();
+    private final TaskRunner taskRunner;
+    private final RenderingConfig config;
+    private CameraReplay replay;
+    private final FrameMetrics metrics = new FrameMetrics(300); // 5 seconds at 60 fps
+
+    private int instanceUpdated;
     private float size;
-    private boolean rotateOn = false, showStats = true;
+    private int instancesDrawn;
+    private boolean rotateOn = false, showStats = true, visibleOnly = false, lodOn = false, chunksOn = false;
+    private boolean voxelsDug;              // blocks dug while drawn as chunks, the cubes are instanced again after
+    private boolean spawnOn = false;
+    private final Quaternion spawnRotation = new Quaternion();
+    private final Vector3 spawnPosition = new Vector3();
+
+    private static final int SPAWN_COUNT = 2000, SPAWN_PER_FRAME = 40; // each cube lives 50 frames
+
+    private int INSTANCE_COUNT_SIDE;
+    private int INSTANCE_COUNT;
+    private float CULLING_FACTOR;  // distance from camera
+    // MATRIX by default, see RenderingConfig: MATRIX or COMPACT rotate the visible cubes on the CPU, ANIMATED spins
+    // them in the vertex shader
+    private final InstanceLayout INSTANCE_LAYOUT;
+
+    public ModelInstancedRenderingBasicScreen() {
+        this(new SerialTaskRunner());
+    }
+
+    /** @param taskRunner runs the chunks of the instance update, in parallel where the platform allows it */
+    public ModelInstancedRenderingBasicScreen(TaskRunner taskRunner) {
+        this(taskRunner, new RenderingConfig());
+    }
 
-    private static int INSTANCE_COUNT_SIDE;
-    private static int INSTANCE_COUNT;
-    private static float CULLING_FACTOR;  // distance from camera
+    /** @param taskRunner runs the chunks of the instance update, in parallel where the platform allows it
+     * @param config field, instance count, culling, layout and benchmark camera path */
+    public ModelInstancedRenderingBasicScreen(TaskRunner taskRunner, RenderingConfig config) {
+        this.taskRunner = taskRunner;
+        this.config = config;
+        INSTANCE_LAYOUT = config.layout;
+    }
 
     @Override
     public void show() {
@@ -100,6 +136,7 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
             throw new GdxRuntimeException("GLES 3.0 profile required for this test");
         }
 
+        replay = config.createReplay(); // null unless benchmarking
         init();
         setupInstancedMesh();
     }
@@ -107,42 +144,128 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
     @Override
     public void render(float delta) {
         profiler.reset();
-        controller.update();
+        metrics.beginFrame();
+
+        metrics.begin(Metric.INPUT);
+        if (replay != null) {
+            delta = replay.step(camera, Vector3.Zero, 1f); // the box field fills -1 to 1
+        } else {
+            controller.update();
+            checkUserInput();
+        }
+        metrics.end(Metric.INPUT);
         ScreenUtils.clear(Color.BLACK, true);
-        checkUserInput();
 
         // rotate all instances that are close and in view
-        startTime = TimeUtils.nanoTime();
+        metrics.begin(Metric.UPDATE);
         update(delta);
-        updateTime = TimeUtils.timeSinceNanos(startTime);
+        if (spawnOn) spawn();
+        metrics.end(Metric.UPDATE);
+
+        // send the instances to draw to the mesh
+        if (chunksOn) {
+            instances.clearDirty(); // the voxel field is drawn as chunk meshes instead
+            metrics.begin(Metric.CULL);
+            voxels.update(camera);
+            metrics.end(Metric.CULL);
+            instancesDrawn = 0;
+        } else if (lodOn) {
+            instances.clearDirty(); // the levels of detail send the visible instances instead
+            metrics.begin(Metric.CULL);
+            lod.update(camera, size*2, instanceUpdated > 0);
+            metrics.end(Metric.CULL);
+            instancesDrawn = lod.getVisibleCount();
+        } else if (visibleOnly) {
+            instances.clearDirty(); // the compactor sends the visible instances instead
+            metrics.begin(Metric.CULL);
+            instancesDrawn = compactor.compact(camera.frustum, size*2);
+            metrics.end(Metric.CULL);
+        } else {
+            metrics.begin(Metric.UPLOAD);
+            instances.flush(); // send the instances changed by update() to the mesh
+            metrics.end(Metric.UPLOAD);
+            instancesDrawn = INSTANCE_COUNT;
+        }
+        if (spawnOn) {
+            metrics.begin(Metric.UPLOAD);
+            spawned.flush(); // only the slots spawned and despawned this frame
+            metrics.end(Metric.UPLOAD);
+        }
 
         // draw all instances
-        startTime = TimeUtils.nanoTime();
-        texture.bind();
-        batch.begin(camera);
-        batch.render(renderable);
-        batch.end();
-        renderTime = TimeUtils.timeSinceNanos(startTime);
+        metrics.begin(Metric.RENDER);
+        if (chunksOn) {
+            texture.bind();
+            batch.begin(camera);
+            batch.render(voxels);
+            batch.end();
+        } else if (instancesDrawn > 0) {
+            texture.bind();
+            batch.begin(camera);
+            if (!lodOn || lod.getCount(0) > 0) batch.render(renderable);
+            if (lodOn && lod.getCount(1) > 0) batch.render(billboardRenderable);
+            batch.end();
+        }
+        if (spawnOn && spawned.getCount() > 0) {
+            texture.bind();
+            batch.begin(camera);
+            batch.render(spawnRenderable);
+            batch.end();
+        }
+        metrics.end(Metric.RENDER);
 
         // 2D stuff for stats text
+        metrics.begin(Metric.HUD);
         if (showStats) {
             batch2D.begin();
             drawStats();
             batch2D.end();
         }
+        metrics.end(Metric.HUD);
+
+        metrics.endFrame(delta, profiler);
+
+        // the frame metrics are logged and written when disposed
+        if (replay != null && replay.isFinished()) {
+            Gdx.app.log("CameraReplay", "finished after " + replay.getFrame() + " frames");
+            Gdx.app.exit();
+        }
     }
 
     private void drawStats() {
-        font.draw(batch2D,"WASD + mouse drag: camera, F1: Toggle stats, SPACE: Toggle rotation. rotation=" + rotateOn, 10, 40);
-        font.draw(batch2D,"3D Cubes: " + INSTANCE_COUNT + "  Matrix4 Updated: " + instanceUpdated + "   Matrix4 Skipped: " + (INSTANCE_COUNT - instanceUpdated), 10, 80);
-        font.draw(batch2D,"Update Time: " + TimeUtils.nanosToMillis(updateTime) + "ms   Render Time: " + TimeUtils.nanosToMillis(renderTime) + "ms", 10, 120);
-        font.draw(batch2D,"FPS: " + Gdx.graphics.getFramesPerSecond() +
-            "  Camera Position: " + camera.position,
-//                "  Draw Calls: " + profiler.getDrawCalls() +
-//                "  Vert Count: " + profiler.getVertexCount().latest +
-//                "  Shader Switches: " + profiler.getShaderSwitches() +
-//                "  Texture Bindings: " + profiler.getTextureBindings(),
-            10, 160);
+        StringBuilder line = hud.line(0).append("WASD + mouse drag: camera, F1: Toggle stats, SPACE: Toggle rotation. rotation=").append(rotateOn)
+            .append(", V: Toggle visible only. visibleOnly=").append(visibleOnly)
+            .append(", L: Toggle LOD. lod=").append(lodOn)
+            .append(", B: Toggle spawning. spawning=").append(spawnOn);
+        if (world != null)
+            line.append(", G: Toggle voxel chunks, X: Dig. chunks=").append(chunksOn);
+        line = hud.line(1).append("3D Cubes: ").append(INSTANCE_COUNT).append("  Matrix4 Updated: ").append(instanceUpdated)
+            .append("   Matrix4 Skipped: ").append(INSTANCE_COUNT - instanceUpdated)
+            .append("   Instances Tested: ").append(updater.getInstancesTested())
+            .append("   Drawn: ").append(instancesDrawn).append(" / ").append(INSTANCE_COUNT);
+        if (lodOn)
+            line.append("   Cubes: ").append(lod.getCount(0)).append("  Quads: ").append(lod.getCount(1))
+                .append("  Cells Changed: ").append(lod.getCellsChanged());
+        if (world != null)
+            line.append("   Voxels: ").append(world.getSolidCount());
+        if (spawnOn)
+            line.append("   Spawned: ").append(spawned.getCount()).append(" / ").append(spawned.getDrawnCount())
+                .append("  Grows: ").append(spawned.getGrowCount());
+        if (chunksOn)
+            line.append("   Chunks: ").append(voxels.getVisibleChunks()).append(" / ").append(world.getChunks().size)
+                .append("  Triangles: ").append(voxels.getVisibleTriangleCount()).append(" / ").append(voxels.getTriangleCount())
+                .append(" (cubes: ").append(INSTANCE_COUNT * 12L).append(")  Meshed: ").append(voxels.getChunksMeshed());
+        line = hud.line(2).append("Update Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.UPDATE), 2).append("ms   Render Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.RENDER), 2).append("ms")
+            .append("   Ranges Flushed: ").append(instances.getRangesFlushed())
+            .append("   Bytes Uploaded: ").append(instances.getBytesUploaded());
+        line = hud.line(3).append("FPS: ").append(Gdx.graphics.getFramesPerSecond())
+            .append("  Update Threads: ").append(taskRunner.getParallelism()).append("  Camera Position: ");
+        StatsHud.appendFixed(line, camera.position, 2).append("  ");
+        metrics.appendGLCounters(line);
+        metrics.appendSummary(hud.line(4).append("Frame Time min/avg/p95/p99: "), Metric.FRAME).append("ms");
+        hud.draw(batch2D);
     }
 
     private void update(float delta) {
@@ -150,50 +273,14 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
 
         if (!rotateOn) return; // no need to update matrix transform, so return
 
-        // Everything you do in this loop will impact performance at high INSTANCE_COUNT
-        for (int x = 0; x < INSTANCE_COUNT; x++) {
-            targetIndex = x * 16; // each instance uses 16 floats for matrix4
-
-            // get position of instance (x, y, z)
-            vec3Temp.set(offsets.get(targetIndex + 12), offsets.get(targetIndex + 13), offsets.get(targetIndex + 14));
-
-            // Attempt culling if not within camera's frustum, or too far away to be noticed rotating
-            if (!(camFrustum.sphereInFrustum(vec3Temp, size*2)) || vec3Temp.dst(camera.position) > CULLING_FACTOR) continue;
-
-            instanceUpdated++;
-
-            // TODO: maybe we can use the other get() methods?
-            // Get the maxtrix4
-            floatTemp[0] = offsets.get(targetIndex);
-            floatTemp[1] = offsets.get(targetIndex + 1);
-            floatTemp[2] = offsets.get(targetIndex + 2);
-            floatTemp[3] = offsets.get(targetIndex + 3);
-            floatTemp[4] = offsets.get(targetIndex + 4);
-            floatTemp[5] = offsets.get(targetIndex + 5);
-            floatTemp[6] = offsets.get(targetIndex + 6);
-            floatTemp[7] = offsets.get(targetIndex + 7);
-            floatTemp[8] = offsets.get(targetIndex + 8);
-            floatTemp[9] = offsets.get(targetIndex + 9);
-            floatTemp[10] = offsets.get(targetIndex + 10);
-            floatTemp[11] = offsets.get(targetIndex + 11);
-            floatTemp[12] = vec3Temp.x; // saves time
-            floatTemp[13] = vec3Temp.y; // saves time
-            floatTemp[14] = vec3Temp.z; // saves time
-            floatTemp[15] = offsets.get(targetIndex + 15);
-
-            mat4.set(floatTemp);
-
-            // spin every other cube differently - use just one for slight speed up
-            if (x % 2 == 0)
-                mat4.rotate(Vector3.X, 45 * delta);
-            else
-                mat4.rotate(Vector3.Y, 45 * delta);
-
-            // update float buffer and update the mesh instance data
-            offsets.position(targetIndex);
-            offsets.put(mat4.getValues());
-            renderable.meshPart.mesh.updateInstanceData(targetIndex, mat4.getValues());
+        // the vertex shader spins the cubes from the clock, nothing to update here
+        if (INSTANCE_LAYOUT == InstanceLayout.ANIMATED) {
+            clock.update(delta);
+            return;
         }
+
+        // rotate the instances in view, every other cube differently
+        instanceUpdated = updater.update(camera, 45 * delta, instances);
     }
 
     private void checkUserInput() {
@@ -204,11 +291,88 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         // toggle show stats if F1 key pressed
         if (Gdx.input.isKeyJustPressed(Input.Keys.F1))
             showStats = !showStats;
+
+        // toggle drawing only the instances in view if V key pressed
+        if (Gdx.input.isKeyJustPressed(Input.Keys.V)) {
+            visibleOnly = !visibleOnly;
+            lodOn = chunksOn = false;
+            drawModeChanged();
+        }
+
+        // toggle the levels of detail if L key pressed: close cubes, far ones as quads facing the camera
+        if (Gdx.input.isKeyJustPressed(Input.Keys.L)) {
+            lodOn = !lodOn;
+            visibleOnly = chunksOn = false;
+            if (lod == null) setupLod();
+            drawModeChanged();
+        }
+
+        // toggle the greedy meshed chunks of the voxel field if G key pressed
+        if (world != null && Gdx.input.isKeyJustPressed(Input.Keys.G)) {
+            chunksOn = !chunksOn;
+            visibleOnly = lodOn = false;
+            if (voxels == null) setupChunks();
+            drawModeChanged();
+        }
+
+        // toggle spawning and despawning cubes in front of the camera if B key pressed, on top of any draw mode
+        if (Gdx.input.isKeyJustPressed(Input.Keys.B)) {
+            spawnOn = !spawnOn;
+            if (spawned == null) setupSpawning();
+            if (!spawnOn) {
+                spawned.clear();
+                spawnCursor = 0;
+            }
+        }
+
+        // dig a hole a few blocks in front of the camera if X key pressed, only the chunks it touches are meshed again
+        if (chunksOn && Gdx.input.isKeyJustPressed(Input.Keys.X)) {
+            int x = Math.round(camera.position.x / voxelSpacing + camera.direction.x * 4);
+            int y = Math.round(camera.position.y / voxelSpacing + camera.direction.y * 4);
+            int z = Math.round(camera.position.z / voxelSpacing + camera.direction.z * 4);
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++)
+                    for (int dz = -1; dz <= 1; dz++)
+                        world.set(x + dx, y + dy, z + dz, (byte)0);
+            voxelsDug = true;
+        }
+    }
+
+    private void drawModeChanged() {
+        // the cubes still show the dug blocks, and the blocks around the holes that now show have none
+        if (!chunksOn && voxelsDug) {
+            instanceVoxelWorld();
+            return;
+        }
+
+        // the mesh may hold the compacted or closest instances, send all of them again
+        instances.packAll();
+        instances.uploadAll();
+        if (lod != null) lod.invalidate();
     }
 
     private void setupInstancedMesh() {
+        if (replay != null) replay.seedRandom(); // same field every run
+
+        // the voxel field instances the blocks of the world that show, so the world comes first
+        if (config.field == RenderingConfig.FieldType.VOXEL)
+            createVoxelWorld();
+
+        mesh = createCubeMesh();
+        createInstances();
+
+        renderable = new Renderable();
+        renderable.meshPart.set("Cube", mesh, 0, 36, GL20.GL_TRIANGLES); // 36 indices
+        renderable.material = new Material(); // the batch sorts by blending once the LOD adds a second renderable
+        renderable.environment = environment;
+        renderable.worldTransform.idt();
+        renderable.shader = createShader(renderable, false); // see method for more details
+        renderable.shader.init();
+    }
+
+    private Mesh createCubeMesh() {
         // Create a 3D cube mesh
-        mesh = new Mesh(true, 24, 36,
+        Mesh cube = new Mesh(true, 24, 36,
             new VertexAttribute(Usage.Position, 3, "a_position"),
             new VertexAttribute(Usage.TextureCoordinates, 2, "a_texCoords0")
         );
@@ -246,65 +410,168 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
             {0, 1, 2, 2, 3, 0, 4, 5, 6, 6, 7, 4, 8, 9, 10, 10, 11, 8, 12, 13,
                 14, 14, 15, 12, 16, 17, 18, 18, 19, 16, 20, 21, 22, 22, 23, 20 };
 
-        mesh.setVertices(vertices);
-        mesh.setIndices(indices);
+        cube.setVertices(vertices);
+        cube.setIndices(indices);
+        return cube;
+    }
 
-        // Thanks JamesTKhan for saving me hours: how to pass a Matrix4 to the shader (using 4 x Vec4 = 16 floats)
-        mesh.enableInstancedRendering(true, INSTANCE_COUNT,
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 0),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 1),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 2),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 3));
+    // the instances of the field, made again from the world when blocks were dug, see instanceVoxelWorld()
+    private void createInstances() {
+        // per instance attributes: a mat4 (4 x Vec4 = 16 floats), or position/scale + quaternion (2 x Vec4 = 8 floats)
+        mesh.enableInstancedRendering(true, INSTANCE_COUNT, INSTANCE_LAYOUT.createAttributes());
+
+        // Create the store holding position + rotation of each instance, and the instance buffer
+        // that will hold the data composed from it for each instance to pass to shader
+        store = new InstanceStore(INSTANCE_COUNT);
+        instances = new InstanceBuffer(mesh, INSTANCE_COUNT, INSTANCE_LAYOUT.floatsPerInstance);
+        instances.setSource(store, INSTANCE_LAYOUT);
+        updater = new InstanceUpdater(store, taskRunner, Vector3.X, Vector3.Y);
+        updater.setCulling(size*2, CULLING_FACTOR);
+
+        if (config.field == RenderingConfig.FieldType.VOXEL)
+            createVoxelTerrain(); // simple minecraft terrain
+        else
+            createBoxField(); // regular box field
+
+        // same spin as the CPU update: every other cube around X or Y, 45 degrees per second
+        if (INSTANCE_LAYOUT == InstanceLayout.ANIMATED)
+            InstanceFields.alternateSpins(store, Vector3.X, Vector3.Y, 45);
+
+        instances.packAll();
+        instances.uploadAll();
+
+        compactor = new InstanceCompactor(mesh, store, INSTANCE_LAYOUT);
+        compactor.setGrid(updater.getGrid());
+
+        // how much memory the instance data takes, see InstanceMemoryReport for the budget
+        InstanceMemoryReport memory = InstanceMemoryReport.of(store, instances, updater, compactor);
+        Gdx.app.log("Instances", memory.toString());
+        if (!memory.isWithinBudget(INSTANCE_LAYOUT))
+            Gdx.app.error("Instances", "over budget of " + InstanceMemoryReport.getBudgetBytes(INSTANCE_COUNT, INSTANCE_LAYOUT) + " bytes");
+    }
 
-        // Create offset FloatBuffer that will hold matrix4 for each instance to pass to shader
-        offsets = BufferUtils.newFloatBuffer(INSTANCE_COUNT * 16); // 16 floats for mat4
+    // instances the blocks showing now, in a store and instance buffers of their new count
+    private void instanceVoxelWorld() {
+        voxelsDug = false;
+        INSTANCE_COUNT = world.countExposed();
+        mesh.disableInstancedRendering();
+        createInstances();
+        if (lod != null) {
+            billboardMesh.disableInstancedRendering();
+            createLod();
+        }
+    }
 
-        createBoxField(); // regular box field
-        //createVoxelTerrain(); // simple minecraft terrain
+    private void setupLod() {
+        // impostor of the far cubes: one quad the size of a cube face, turned to the camera by the vertex shader
+        billboardMesh = new Mesh(true, 4, 6,
+            new VertexAttribute(Usage.Position, 3, "a_position"),
+            new VertexAttribute(Usage.TextureCoordinates, 2, "a_texCoords0")
+        );
+        billboardMesh.setVertices(new float[] {
+            -size, -size, 0, 0.0f, 0.0f,
+            size, -size, 0, 1.0f, 0.0f,
+            size, size, 0, 1.0f, 1.0f,
+            -size, size, 0, 0.0f, 1.0f
+        });
+        billboardMesh.setIndices(new short[] {0, 1, 2, 2, 3, 0});
+        createLod();
+
+        billboardRenderable = new Renderable();
+        billboardRenderable.meshPart.set("Billboard", billboardMesh, 0, 6, GL20.GL_TRIANGLES);
+        billboardRenderable.material = new Material();
+        billboardRenderable.environment = environment;
+        billboardRenderable.worldTransform.idt();
+        billboardRenderable.shader = createShader(billboardRenderable, true);
+        billboardRenderable.shader.init();
+    }
 
-        ((Buffer)offsets).position(0);
-        mesh.setInstanceData(offsets);
+    private void createLod() {
+        billboardMesh.enableInstancedRendering(true, INSTANCE_COUNT, INSTANCE_LAYOUT.createAttributes());
 
-        renderable = new Renderable();
-        renderable.meshPart.set("Cube", mesh, 0, 36, GL20.GL_TRIANGLES); // 36 indices
-        renderable.environment = environment;
-        renderable.worldTransform.idt();
-        renderable.shader = createShader(); // see method for more details
-        renderable.shader.init();
+        // cubes up to a quarter of the far plane, where they are a few pixels wide, quads beyond
+        lod = new InstanceLod(store, updater.getGrid(), INSTANCE_LAYOUT)
+            .addLevel(mesh, camera.far * 0.25f, INSTANCE_COUNT)
+            .addLevel(billboardMesh, Float.POSITIVE_INFINITY, INSTANCE_COUNT);
+        Gdx.app.log("InstanceLod", lod.getMemoryBytes() + " bytes before the first update");
+    }
+
+    private void setupSpawning() {
+        // a mesh of its own: the batch enables instancing on it and grows it, starting small
+        spawned = new InstancedBatch(createCubeMesh(), INSTANCE_LAYOUT, 256);
+        spawnHandles = new int[SPAWN_COUNT];
+
+        spawnRenderable = new Renderable();
+        spawnRenderable.meshPart.set("Spawned", spawned.getMesh(), 0, 36, GL20.GL_TRIANGLES);
+        spawnRenderable.material = new Material();
+        spawnRenderable.environment = environment;
+        spawnRenderable.worldTransform.idt();
+        spawnRenderable.shader = createShader(spawnRenderable, false);
+        spawnRenderable.shader.init();
+    }
+
+    // fills up to SPAWN_COUNT cubes, then despawns the oldest ones for the new ones
+    private void spawn() {
+        for (int i = 0; i < SPAWN_PER_FRAME; i++) {
+            if (spawned.getCount() == SPAWN_COUNT) spawned.remove(spawnHandles[spawnCursor]);
+            spawnPosition.set(camera.direction).scl(size * 40).add(camera.position)
+                .add(MathUtils.random(-1f, 1f) * size * 20, MathUtils.random(-1f, 1f) * size * 20, MathUtils.random(-1f, 1f) * size * 20);
+            spawnRotation.setEulerAngles(MathUtils.random(360f), MathUtils.random(360f), MathUtils.random(360f));
+            spawnHandles[spawnCursor] = spawned.add(spawnPosition, spawnRotation, 1f);
+            spawnCursor = (spawnCursor + 1) % SPAWN_COUNT;
+        }
+    }
+
+    private void setupChunks() {
+        voxelShader = createVoxelShader();
+        voxelShader.init();
+        voxels = new VoxelRenderer(world, voxelSpacing, taskRunner);
+        voxels.setShader(voxelShader);
     }
 
     /** See assets/shaders/instanced.vert + assets/shaders/instanced.frag files to see how:
 
      a_position
      a_texCoords0
-     i_worldTrans
+     i_worldTrans (or i_posScale + i_rotation with the compact layout)
 
      vertex attributes are used to update each instance.
 
      u_projViewTrans uniform needs to be set with camera.combined
      so shader can calculate the updated position and rotation
+
+     billboard defines instancedBillboard, the quad is then turned to the camera with u_cameraRight and u_cameraUp
      */
-    private BaseShader createShader() {
+    private BaseShader createShader(final Renderable target, final boolean billboard) {
         return new BaseShader() {
+            private int u_time;
+            private final Vector3 right = new Vector3();
 
             @Override
             public void begin(Camera camera, RenderContext context) {
                 program.bind();
                 program.setUniformMatrix("u_projViewTrans", camera.combined);
                 program.setUniformi("u_texture", 0);
+                if (u_time >= 0) program.setUniformf(u_time, clock.getTime());
+                if (billboard) {
+                    program.setUniformf("u_cameraRight", right.set(camera.direction).crs(camera.up).nor());
+                    program.setUniformf("u_cameraUp", camera.up);
+                }
                 context.setDepthTest(GL30.GL_LEQUAL);
             }
 
             @Override
             public void init () {
-                ShaderProgram.prependVertexCode = "#version 300 es\n";
+                ShaderProgram.prependVertexCode = "#version 300 es\n" + INSTANCE_LAYOUT.getShaderDefines()
+                    + (billboard ? "#define instancedBillboard\n" : "");
                 ShaderProgram.prependFragmentCode = "#version 300 es\n";
                 program = new ShaderProgram(Gdx.files.internal("shaders/instanced.vert"),
                     Gdx.files.internal("shaders/instanced.frag"));
                 if (!program.isCompiled()) {
                     throw new GdxRuntimeException("Shader compile error: " + program.getLog());
                 }
-                init(program, renderable);
+                u_time = program.fetchUniformLocation("u_time", false); // only in the animated layout
+                init(program, target);
             }
 
             @Override
@@ -319,73 +586,80 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         };
     }
 
-    private void createBoxField(){
-        texture = new Texture(Gdx.files.internal("graphics/zebra.png")); // our mascot!
+    /** See assets/shaders/voxel.vert + assets/shaders/voxel.frag, the chunk meshes of {@link VoxelRenderer}:
+     a_position and a_texCoords0 in voxels, a_shade darkens the sides and bottom, u_worldTrans places the chunk
+     */
+    private BaseShader createVoxelShader() {
+        return new BaseShader() {
+            @Override
+            public void begin(Camera camera, RenderContext context) {
+                program.bind();
+                program.setUniformMatrix("u_projViewTrans", camera.combined);
+                program.setUniformi("u_texture", 0);
+                context.setDepthTest(GL30.GL_LEQUAL);
+                context.setCullFace(GL30.GL_BACK); // only the faces looking at the camera
+            }
 
-        for (int x = 1; x <= INSTANCE_COUNT_SIDE; x++) {
-            for (int y = 1; y <= INSTANCE_COUNT_SIDE; y++) {
-                for (int z = 1; z <= INSTANCE_COUNT_SIDE; z++) {
-                    // set instance position
-                    vec3Temp.set(
-                        x / (INSTANCE_COUNT_SIDE * 0.5f) - 1f,
-                        y / (INSTANCE_COUNT_SIDE * 0.5f) - 1f,
-                        z / (INSTANCE_COUNT_SIDE * 0.5f) - 1f);
+            @Override
+            public void render(Renderable renderable) {
+                program.setUniformMatrix("u_worldTrans", renderable.worldTransform);
+                super.render(renderable);
+            }
 
-                    // set random rotation
-                    q.setEulerAngles(MathUtils.random(-90, 90), MathUtils.random(-90, 90), MathUtils.random(-90, 90));
+            @Override
+            public void init () {
+                ShaderProgram.prependVertexCode = "#version 300 es\n";
+                ShaderProgram.prependFragmentCode = "#version 300 es\n";
+                program = new ShaderProgram(Gdx.files.internal("shaders/voxel.vert"),
+                    Gdx.files.internal("shaders/voxel.frag"));
+                if (!program.isCompiled()) {
+                    throw new GdxRuntimeException("Shader compile error: " + program.getLog());
+                }
+                init(program, null);
+            }
 
-                    // create matrix transform
-                    mat4.set(vec3Temp, q);
+            @Override
+            public int compareTo (Shader other) {
+                return 0;
+            }
 
-                    // put the 16 floats for mat4 in the float buffer
-                    offsets.put(mat4.getValues());
-                }
+            @Override
+            public boolean canRender (Renderable instance) {
+                return true;
             }
-        }
+        };
+    }
+
+    private void createBoxField(){
+        texture = new Texture(Gdx.files.internal("graphics/zebra.png")); // our mascot!
+
+        float spacing = InstanceFields.boxField(store, INSTANCE_COUNT_SIDE);
+
+        // group the instances in cells of about 8x8x8 boxes, so culling can skip whole cells
+        updater.setGrid(new InstanceGrid(store, 8f * spacing));
     }
 
     private void createVoxelTerrain() {
-        texture = new Texture(Gdx.files.internal("graphics/tile.png"));
-        rotateOn = false;
-
-        // very simple random terrain
-        float y, total = 0;
-        for (int x = 1; x <= Math.sqrt(INSTANCE_COUNT); x++) {
-            for (int z = 1; z <= Math.sqrt(INSTANCE_COUNT); z++) {
-
-                if (MathUtils.random(3) == 3)
-                    y = size * 2;
-                else
-                    y = 0;
-
-                vec3Temp.set(
-                    x * size * 2,
-                    y - size * 4, // so terrain below initial camera y position
-                    z * size * 2);
-
-                // create matrix transform
-                mat4.set(vec3Temp, q);
-                rotateOn = false;
-
-                // put the 16 floats for mat4 in the float buffer
-                offsets.put(mat4.getValues());
-                total++;
-            }
-        }
+        // the blocks stay still until SPACE is pressed, rotateOn is left as init() set it: a replay rotates them from
+        // the start as it does the boxes, so both fields time the same update
+        world.getExposed(store, voxelSpacing);
 
-        // build a tower in middle
-        for (int i = 0; i < (INSTANCE_COUNT - total); i++ ) {
-            vec3Temp.set(
-                (float)Math.sqrt(INSTANCE_COUNT)/2f * size * 2,
-                i * size * 2 - size * 4,
-                (float)Math.sqrt(INSTANCE_COUNT)/2f * size * 2);
+        // group the instances in cells of about 8x8 blocks, so culling can skip whole cells
+        updater.setGrid(new InstanceGrid(store, 8f * voxelSpacing));
+    }
 
-            // create matrix transform
-            mat4.set(vec3Temp, q);
+    private void createVoxelWorld() {
+        texture = new Texture(Gdx.files.internal("graphics/tile.png"));
+        texture.setWrap(Texture.TextureWrap.Repeat, Texture.TextureWrap.Repeat); // the chunk meshes tile it
 
-            // put the 16 floats for mat4 in the float buffer
-            offsets.put(mat4.getValues());
-        }
+        voxelSpacing = size * 2;
+        world = new VoxelWorld();
+        InstanceFields.voxelTerrain(world, INSTANCE_COUNT, config.getVoxelDepth(), (byte)1);
+
+        // one instance per block with a face showing, the ground under the surface is never drawn
+        INSTANCE_COUNT = world.countExposed();
+        Gdx.app.log("VoxelWorld", world.getSolidCount() + " voxels in " + world.getChunks().size + " chunks, "
+            + world.getMemoryBytes() + " bytes, " + INSTANCE_COUNT + " showing");
     }
 
     private void init() {
@@ -393,12 +667,6 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         Gdx.input.setCatchKey(Input.Keys.SPACE, true);
         Gdx.input.setCatchKey(Input.Keys.F1, true);
 
-        // reusable variables
-        mat4 = new Matrix4();
-        q = new Quaternion();
-        vec3Temp = new Vector3();
-        floatTemp = new float[16];
-
         environment = new Environment();
         environment.set(new ColorAttribute(ColorAttribute.AmbientLight, 0.9f, 0.9f, 0.9f, 1f));
         //environment.add(new DirectionalLight().set(0.8f, 0.8f, 0.8f, -1f, -0.8f, -0.2f));
@@ -411,7 +679,6 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         camera.direction.set(Vector3.Z);
         camera.up.set(Vector3.Y);
         camera.update();
-        camFrustum = camera.frustum;
 
         // batches
         batch = new ModelBatch();
@@ -421,16 +688,12 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         font = new BitmapFont(Gdx.files.internal("fonts/lsans-15.fnt"));
         font.setColor(Color.GREEN);
         font.getData().setScale(2);
+        hud = new StatsHud(font, 5, 10, 40, 40);
 
-        // set low instance limits for all other platforms not desktop
+        // low instance limits and no culling by distance on platforms other than desktop, unless configured
         // >>> always use an odd number so camera is not inside a cube
-        if (Gdx.app.getType().equals(Application.ApplicationType.Desktop)) {
-            INSTANCE_COUNT_SIDE = 101;
-            CULLING_FACTOR = camera.far * 0.25f; // cull very small cubes that we cant detect rotating
-        } else {
-            INSTANCE_COUNT_SIDE = 29;
-            CULLING_FACTOR = camera.far; // no culling as all objects can be seen rotating
-        }
+        INSTANCE_COUNT_SIDE = config.getInstanceCountSide();
+        CULLING_FACTOR = camera.far * config.getCullingFactor(); // cull very small cubes that we cant detect rotating
 
         // 101 * 101 * 101 = 1.03 million for desktop
         INSTANCE_COUNT = INSTANCE_COUNT_SIDE * INSTANCE_COUNT_SIDE * INSTANCE_COUNT_SIDE;
@@ -443,6 +706,9 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         controller.setDegreesPerPixel(0.2f);
         Gdx.input.setInputProcessor(controller);
 
+        // the replay rotates the instances from the start
+        if (replay != null) rotateOn = true;
+
         // create & enable the profiler
         profiler = new GLProfiler(Gdx.graphics);
         profiler.enable();
@@ -470,6 +736,11 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
 
     @Override
     public void dispose () {
+        // frame timings of the last seconds, to compare runs
+        Gdx.app.log("FrameMetrics", metrics.toString());
+        if (Gdx.files.isLocalStorageAvailable())
+            metrics.writeCsv(Gdx.files.local("frame-metrics-basic.csv"));
+
         texture.dispose();
         mesh.dispose();
         batch.dispose();
@@ -477,5 +748,17 @@ public class ModelInstancedRenderingBasicScreen implements Screen {
         font.dispose();
         renderable.shader.dispose();
         renderable.meshPart.mesh.dispose();
+        if (voxels != null) {
+            voxels.dispose();
+            voxelShader.dispose();
+        }
+        if (billboardRenderable != null) {
+            billboardRenderable.shader.dispose();
+            billboardMesh.dispose();
+        }
+        if (spawnRenderable != null) {
+            spawnRenderable.shader.dispose();
+            spawned.getMesh().dispose();
+        }
     }
 }
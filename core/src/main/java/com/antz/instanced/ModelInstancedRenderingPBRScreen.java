@@ -26,51 +26,63 @@
  ******************************************************************************/
 package com.antz.instanced;
 
+import com.antz.instanced.FrameMetrics.Metric;
 import com.antz.instanced.shader.MyPBRDepthShaderProvider;
 import com.antz.instanced.shader.MyPBRShaderProvider;
+import com.antz.instanced.shader.ShaderCache;
+import com.antz.instanced.shader.ShaderWarmup;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Cubemap;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.VertexAttribute;
 import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
 import com.badlogic.gdx.graphics.g3d.utils.FirstPersonCameraController;
-import com.badlogic.gdx.math.Frustum;
-import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
-import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.ScreenUtils;
-import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.StringBuilder;
 
+import net.mgsx.gltf.loaders.glb.GLBLoader;
 import net.mgsx.gltf.loaders.gltf.GLTFLoader;
 import net.mgsx.gltf.scene3d.attributes.PBRCubemapAttribute;
 import net.mgsx.gltf.scene3d.attributes.PBRFloatAttribute;
 import net.mgsx.gltf.scene3d.attributes.PBRTextureAttribute;
 import net.mgsx.gltf.scene3d.lights.DirectionalShadowLight;
-import net.mgsx.gltf.scene3d.scene.Scene;
+import net.mgsx.gltf.scene3d.scene.CascadeShadowMap;
 import net.mgsx.gltf.scene3d.scene.SceneAsset;
 import net.mgsx.gltf.scene3d.scene.SceneManager;
 import net.mgsx.gltf.scene3d.scene.SceneSkybox;
 import net.mgsx.gltf.scene3d.utils.IBLBuilder;
 
-import java.nio.Buffer;
-import java.nio.FloatBuffer;
-
 public class ModelInstancedRenderingPBRScreen implements Screen {
 
     // gdx-gltf stuff
     private SceneManager sceneManager;
     private SceneAsset sceneAsset;
-    private Scene scene;
-    private DirectionalShadowLight light;
+    private InstancedModelRenderer models;
+    private InstancedModelRenderer.InstancedModel zebras, floor;
+    private Model floorModel;
+    private Texture floorTexture;
+    private CachedShadowLight light;
+    private ShadowCascades cascades;
+    private ShadowCache shadowCache;
+    private CascadeShadowMap cascadeShadowMap;
+    private float shadowDistance;
     private Cubemap diffuseCubemap;
     private Cubemap environmentCubemap;
     private Cubemap specularCubemap;
@@ -81,25 +93,50 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
     private int INSTANCE_COUNT_SIDE;
     private int INSTANCE_COUNT;
     private final float INSTANCE_SEPARATION_FACTOR = 9.0f;
-    private static float CULLING_FACTOR;
+    private float CULLING_FACTOR;
+    // MATRIX by default, see RenderingConfig: MATRIX or COMPACT rotate the visible zebras on the CPU, ANIMATED spins
+    // them in the vertex shaders
+    private final InstanceLayout INSTANCE_LAYOUT;
 
     private SpriteBatch batch2D;
     private BitmapFont font;
+    private StatsHud hud;
     private PerspectiveCamera camera;
     private FirstPersonCameraController controller;
-    private Matrix4 mat4;
-    private Vector3 vec3Temp;
-    private FloatBuffer offsets;
-    private float[] floatTemp;
-    private Frustum camFrustum;
-
-    private int instanceUpdated;
-    private long updateTime;
-    private long renderTime;
+    private InstanceStore store;
+    private InstanceBuffer instances;
+    private InstanceUpdater updater;
+    private InstanceCompactor compactor;
+    private final InstanceClock clock = new InstanceClock();
+    private final TaskRunner taskRunner;
+    private final RenderingConfig config;
+    private CameraReplay replay;
+    private final Vector3 fieldCenter = new Vector3();
+    private float fieldHalfSize;
+    private GLProfiler profiler;
+    private final FrameMetrics metrics = new FrameMetrics(300); // 5 seconds at 60 fps
+
+    private int instanceUpdated, instancesDrawn, shadowCasters;
 
-    private final StringBuffer stringBuffer = new StringBuffer();
     private float size;
-    private boolean rotateOn = false, showStats = true;
+    private boolean rotateOn = false, showStats = true, visibleOnly = false;
+
+    public ModelInstancedRenderingPBRScreen() {
+        this(new SerialTaskRunner());
+    }
+
+    /** @param taskRunner runs the chunks of the instance update, in parallel where the platform allows it */
+    public ModelInstancedRenderingPBRScreen(TaskRunner taskRunner) {
+        this(taskRunner, new RenderingConfig());
+    }
+
+    /** @param taskRunner runs the chunks of the instance update, in parallel where the platform allows it
+     * @param config instance count, culling, layout and benchmark camera path, the field is always the zebra field */
+    public ModelInstancedRenderingPBRScreen(TaskRunner taskRunner, RenderingConfig config) {
+        this.taskRunner = taskRunner;
+        this.config = config;
+        INSTANCE_LAYOUT = config.layout;
+    }
 
     @Override
     public void show() {
@@ -107,105 +144,145 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         if (Gdx.gl30 == null) {
             throw new GdxRuntimeException("GLES 3.0 profile required for this test");
         }
+        replay = config.createReplay(); // null unless benchmarking
         initGLTF();
         initInstances();
+        warmUpShaders();
     }
 
     @Override
     public void render(float delta) {
+        profiler.reset();
+        metrics.beginFrame();
         ScreenUtils.clear(Color.BLACK, true);
-        controller.update();
-        checkUserInput();
+
+        metrics.begin(Metric.INPUT);
+        if (replay != null) {
+            delta = replay.step(camera, fieldCenter, fieldHalfSize);
+        } else {
+            controller.update();
+            checkUserInput();
+        }
+        metrics.end(Metric.INPUT);
 
         // rotate all instances that are close and in view
-        long startTime = TimeUtils.nanoTime();
+        metrics.begin(Metric.UPDATE);
         update(delta);
-        updateTime = TimeUtils.timeSinceNanos(startTime);
+        metrics.end(Metric.UPDATE);
+
+        // send the instances to draw to the mesh
+        if (visibleOnly) {
+            instances.clearDirty(); // the compactor sends the visible instances instead
+            metrics.begin(Metric.CULL);
+            instancesDrawn = compactor.compact(camera.frustum, size*2);
+            metrics.end(Metric.CULL);
+        } else {
+            metrics.begin(Metric.UPLOAD);
+            instances.flush(); // send the instances changed by update() to the mesh
+            metrics.end(Metric.UPLOAD);
+            instancesDrawn = INSTANCE_COUNT;
+        }
+        // with no instance left the zebras are not drawn, the mesh would be drawn once without instancing
+        zebras.setDrawCount(instancesDrawn);
 
-        // draw all instances
-        //light.setCenter(camera.position);
+        // the shadow cascades follow the camera, their maps are drawn again when they moved or the instances changed
+        updateShadows();
         sceneManager.update(delta);
+
+        // includes the shadow pass, also timed on its own, see initGLTF()
+        metrics.begin(Metric.RENDER);
         sceneManager.render();
-        renderTime = (long) (1f / Gdx.graphics.getFramesPerSecond()* 1000);
+        metrics.end(Metric.RENDER);
 
         // 2D stuff for stats text
+        metrics.begin(Metric.HUD);
         if (showStats) {
             batch2D.begin();
             drawStats();
             batch2D.end();
         }
+        metrics.end(Metric.HUD);
+
+        metrics.endFrame(delta, profiler);
+
+        // the frame metrics are logged and written when disposed
+        if (replay != null && replay.isFinished()) {
+            Gdx.app.log("CameraReplay", "finished after " + replay.getFrame() + " frames");
+            Gdx.app.exit();
+        }
     }
 
     private void update(float delta) {
         instanceUpdated = 0;
         if (!rotateOn) return; // no need to update matrix transform, so return
 
-        offsets.position(0);
-
-        // Everything you do in this loop will impact performance at high INSTANCE_COUNT
-        for (int x = 0; x < INSTANCE_COUNT; x++) {
-            int targetIndex = x * 16; // each instance uses 16 floats for matrix4
-
-            /*
-
-             Matrix4               TRANSPOSED
-             0  1  2  3            0  4  8  x
-             4  5  6  7            1  5  9  y
-             8  9  10 11           2  6  10 z
-             x  y  z  15           3  7  11 15
-
-             */
-
-            // get position of instance (x, y, z)
-            // from the transposed Matrix4 - see above
-            vec3Temp.set(offsets.get(targetIndex + 3), offsets.get(targetIndex + 7), offsets.get(targetIndex + 11));
-
-            // Attempt culling if not within camera's frustum, or too far away to be noticed rotating
-            if (!(camFrustum.sphereInFrustum(vec3Temp, size*2)) || vec3Temp.dst(camera.position) > CULLING_FACTOR) continue;
-
-            // Get the transpose maxtrix4
-            floatTemp[0] = offsets.get(targetIndex);
-            floatTemp[1] = offsets.get(targetIndex + 1);
-            floatTemp[2] = offsets.get(targetIndex + 2);
-            floatTemp[3] = offsets.get(targetIndex + 3);
-            floatTemp[4] = offsets.get(targetIndex + 4);
-            floatTemp[5] = offsets.get(targetIndex + 5);
-            floatTemp[6] = offsets.get(targetIndex + 6);
-            floatTemp[7] = offsets.get(targetIndex + 7);
-            floatTemp[8] = offsets.get(targetIndex + 8);
-            floatTemp[9] = offsets.get(targetIndex + 9);
-            floatTemp[10] = offsets.get(targetIndex + 10);
-            floatTemp[11] = offsets.get(targetIndex + 11);
-            floatTemp[12] = offsets.get(targetIndex + 12);
-            floatTemp[13] = offsets.get(targetIndex + 13);
-            floatTemp[14] = offsets.get(targetIndex + 14);
-            floatTemp[15] = offsets.get(targetIndex + 15);
-
-            instanceUpdated++;
-            mat4.set(floatTemp);
-            mat4 = mat4.tra(); // convert back to regular Matrix4
-
-            // spin every other cube differently
-            if (x % 2 == 0)
-                mat4.rotate(Vector3.X, 45 * delta);
-            else
-                mat4.rotate(Vector3.Z, 45 * delta);
-
-            // update float buffer and update the mesh instance data
-            offsets.position(targetIndex);
-            offsets.put(mat4.tra().getValues()); // **** >>>> transpose again
-            scene.modelInstance.model.nodes.first().parts.first().meshPart.mesh.updateInstanceData(targetIndex, mat4.getValues());
+        // the vertex shaders spin the zebras from the clock, nothing to update here
+        if (INSTANCE_LAYOUT == InstanceLayout.ANIMATED) {
+            clock.update(delta);
+            return;
         }
+
+        // rotate the instances in view, every other zebra differently
+        instanceUpdated = updater.update(camera, 45 * delta, instances);
     }
 
-    private void drawStats() {
-        stringBuffer.setLength(0);
-        stringBuffer.append("x:").append((int)camera.position.x).append(", y:").append((int)camera.position.y).append(", z:").append((int)camera.position.z);
+    private void updateShadows() {
+        cascades.update(camera, shadowDistance, light.direction);
+        // the vertex shaders spin the zebras without changing their data
+        if (rotateOn && INSTANCE_LAYOUT == InstanceLayout.ANIMATED) shadowCache.invalidate();
+        shadowCache.update(cascades, light.direction, models.getVersion());
+        for (int i = 0; i < cascades.getCount(); i++) {
+            CachedShadowLight shadowLight = getShadowLight(i);
+            shadowLight.setCached(!shadowCache.isDrawn(i));
+            if (shadowCache.isDrawn(i)) fitShadowLight(shadowLight, i);
+        }
+    }
+
+    // the shader tries the lights of the cascade shadow map in order and falls back to the light itself: the light is
+    // the farthest cascade, the cascade shadow map has the others from the closest one
+    private CachedShadowLight getShadowLight(int cascade) {
+        return cascade == cascades.getCount() - 1 ? light : (CachedShadowLight)cascadeShadowMap.lights.get(cascade);
+    }
+
+    private boolean isCachedShadow(Camera lightCamera) {
+        for (int i = 0; i < cascades.getCount(); i++)
+            if (getShadowLight(i).getCamera() == lightCamera) return getShadowLight(i).isCached();
+        return false;
+    }
+
+    private void fitShadowLight(DirectionalShadowLight shadowLight, int cascade) {
+        shadowLight.setViewport(cascades.getSize(cascade), cascades.getSize(cascade), 0, cascades.getDepth(cascade));
+        shadowLight.setCenter(cascades.getCenter(cascade));
+    }
 
-        font.draw(batch2D,"WASD + mouse drag: camera, F1: Toggle stats, SPACE: Toggle rotation. rotation=" + rotateOn, 10, 40);
-        font.draw(batch2D,"3D Cubes: " + INSTANCE_COUNT + "  Matrix4 Updated: " + instanceUpdated + "   Matrix4 Skipped: " + (INSTANCE_COUNT - instanceUpdated), 10, 80);
-        font.draw(batch2D,"Update Time: " + TimeUtils.nanosToMillis(updateTime) + "ms   Total Render Time: " + renderTime + "ms", 10, 120);
-        font.draw(batch2D,"FPS: " + Gdx.graphics.getFramesPerSecond() + "  Camera Position: " + stringBuffer,10, 160);
+    private void drawStats() {
+        hud.line(0).append("WASD + mouse drag: camera, F1: Toggle stats, SPACE: Toggle rotation. rotation=").append(rotateOn)
+            .append(", V: Toggle visible only. visibleOnly=").append(visibleOnly);
+        hud.line(1).append("3D Cubes: ").append(INSTANCE_COUNT).append("  Matrix4 Updated: ").append(instanceUpdated)
+            .append("   Matrix4 Skipped: ").append(INSTANCE_COUNT - instanceUpdated)
+            .append("   Instances Tested: ").append(updater.getInstancesTested())
+            .append("   Drawn: ").append(instancesDrawn).append(" / ").append(INSTANCE_COUNT)
+            .append("   Models: ").append(models.getModelsDrawn()).append(" / ").append(models.getModels().size)
+            .append("   Draws per Pass: ").append(models.getRenderableCount());
+        StringBuilder line = hud.line(2).append("Update Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.UPDATE), 2).append("ms   Render Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.RENDER), 2).append("ms   Shadow Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.SHADOW), 2).append("ms")
+            .append("   Shadow Cascades: ").append(cascades.getCount())
+            .append("   Shadow Maps Drawn: ").append(shadowCache.getDrawnCount())
+            .append("   Shadow Casters: ").append(shadowCasters)
+            .append("   Ranges Flushed: ").append(instances.getRangesFlushed())
+            .append("   Bytes Uploaded: ").append(instances.getBytesUploaded());
+        line = hud.line(3).append("FPS: ").append(Gdx.graphics.getFramesPerSecond())
+            .append("  Update Threads: ").append(taskRunner.getParallelism())
+            .append("  Shaders Compiled: ").append(ShaderCache.DEFAULT.getMisses())
+            .append(" Reused: ").append(ShaderCache.DEFAULT.getHits())
+            .append("  Camera Position: x:").append((int)camera.position.x)
+            .append(", y:").append((int)camera.position.y)
+            .append(", z:").append((int)camera.position.z).append("  ");
+        metrics.appendGLCounters(line);
+        metrics.appendSummary(hud.line(4).append("Frame Time min/avg/p95/p99: "), Metric.FRAME).append("ms");
+        hud.draw(batch2D);
     }
 
     private void checkUserInput() {
@@ -216,50 +293,99 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         // toggle show stats if F1 key pressed
         if (Gdx.input.isKeyJustPressed(Input.Keys.F1))
             showStats = !showStats;
-    }
 
-    private void initInstances() {
-        // 4 x 4 = 16 floats = Matrix4
-        scene.modelInstance.model.meshes.first().enableInstancedRendering(true, INSTANCE_COUNT,
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 0),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 1),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 2),
-            new VertexAttribute(VertexAttributes.Usage.Generic, 4, "i_worldTrans", 3)
-        );
-
-        // Create offset FloatBuffer that will contain instance data to pass to shader
-        offsets = BufferUtils.newFloatBuffer(INSTANCE_COUNT * 16);
-
-        // fill instance data buffer
-        for (int x = 1; x <= INSTANCE_COUNT_SIDE; x++) {
-            for (int y = 1; y <= INSTANCE_COUNT_SIDE; y++) {
-                for (int z = 1; z <= INSTANCE_COUNT_SIDE; z++) {
-
-                    // sets the position of each instance
-                    vec3Temp.set(x*size*INSTANCE_SEPARATION_FACTOR,
-                        y*size*INSTANCE_SEPARATION_FACTOR,
-                        z*size*INSTANCE_SEPARATION_FACTOR);
-
-                    mat4.set(scene.modelInstance.transform);
-
-                    // This randomly sets a random rotation to a random axis
-                    int rand = MathUtils.random(2);
-                    if (rand == 0)
-                        mat4.setToRotationRad(Vector3.X, MathUtils.random(0.0f, (float)Math.PI*2.0f));
-                    else if (rand == 1)
-                        mat4.setToRotationRad(Vector3.Y, MathUtils.random(0.0f, (float)Math.PI*2.0f));
-                    else
-                        mat4.setToRotationRad(Vector3.Z, MathUtils.random(0.0f, (float)Math.PI*2.0f));
-
-                    mat4.setTranslation(vec3Temp);
-                    offsets.put(mat4.tra().getValues()); // notice transpose here
-                }
+        // toggle drawing only the instances in view if V key pressed, the shadow casters still come from the whole
+        // store, culled against the frustum of each shadow light
+        if (Gdx.input.isKeyJustPressed(Input.Keys.V)) {
+            visibleOnly = !visibleOnly;
+            if (!visibleOnly) {
+                // the mesh holds the compacted instances, send all of them again
+                instances.packAll();
+                instances.uploadAll();
             }
         }
+    }
+
+    private void initInstances() {
+        // 4 x 4 = 16 floats = Matrix4, or 2 x 4 = 8 floats = position/scale + quaternion
+        // the shader providers pick the matching shader code from these attributes
+        // The renderer creates the store holding position + rotation of each instance, and the instance buffer
+        // that will contain the data composed from it to pass to shader
+        zebras = models.add(sceneAsset.scene.model, INSTANCE_LAYOUT, INSTANCE_COUNT);
+        store = zebras.store;
+        instances = zebras.buffer;
+        updater = new InstanceUpdater(store, taskRunner, Vector3.X, Vector3.Z);
+        updater.setCulling(size*2, CULLING_FACTOR);
+
+        // fill the store, spacing the models apart
+        if (replay != null) replay.seedRandom(); // same field every run
+        float spacing = InstanceFields.modelField(store, INSTANCE_COUNT_SIDE, size*INSTANCE_SEPARATION_FACTOR);
+
+        // the models go from spacing to INSTANCE_COUNT_SIDE * spacing on every axis, the camera path is relative to that
+        fieldHalfSize = (INSTANCE_COUNT_SIDE - 1) * spacing / 2f;
+        fieldCenter.set(1, 1, 1).scl(spacing + fieldHalfSize);
+
+        // group the instances in cells of about 8x8x8 models, so culling can skip whole cells
+        updater.setGrid(new InstanceGrid(store, 8f * spacing));
+
+        // the shadow maps only draw the zebras in the frustum of their light
+        zebras.enableShadowCulling(updater.getGrid(), size*2);
+
+        // same spin as the CPU update: every other zebra around X or Z, 45 degrees per second
+        if (INSTANCE_LAYOUT == InstanceLayout.ANIMATED)
+            InstanceFields.alternateSpins(store, Vector3.X, Vector3.Z, 45);
+
+        zebras.uploadAll();
+        if (config.floor) initFloor(spacing);
+
+        // every mesh of the model draws the visible instances
+        compactor = new InstanceCompactor(zebras.getMeshes().first(), store, INSTANCE_LAYOUT);
+        for (int i = 1; i < zebras.getMeshes().size; i++)
+            compactor.addMesh(zebras.getMeshes().get(i));
+        compactor.setGrid(updater.getGrid());
+
+        // how much memory the instance data takes, see InstanceMemoryReport for the budget
+        InstanceMemoryReport memory = InstanceMemoryReport.of(store, instances, updater, compactor);
+        Gdx.app.log("Instances", memory.toString());
+        if (!memory.isWithinBudget(INSTANCE_LAYOUT))
+            Gdx.app.error("Instances", "over budget of " + InstanceMemoryReport.getBudgetBytes(INSTANCE_COUNT, INSTANCE_LAYOUT) + " bytes");
+    }
 
-        ((Buffer) offsets).position(0);
-        scene.modelInstance.model.meshes.first().setInstanceData(offsets);
-        floatTemp = new float[INSTANCE_COUNT*16];
+    // compiles the shaders of every model in the shadow and color passes now, rather than on the first frames each
+    // model shows up in: one frame drawing a renderable of each permutation, with the lights and skybox of the scene
+    private void warmUpShaders() {
+        ShaderWarmup warmup = new ShaderWarmup();
+        for (InstancedModelRenderer.InstancedModel model : models.getModels())
+            warmup.add(model.modelInstance);
+        int compiled = ShaderCache.DEFAULT.getMisses();
+
+        Array<RenderableProvider> providers = sceneManager.getRenderableProviders();
+        int index = providers.indexOf(models, true);
+        providers.set(index, warmup);
+        updateShadows();
+        sceneManager.update(0);
+        sceneManager.render();
+        providers.set(index, models);
+        shadowCache.invalidate(); // the shadow maps hold the warm up frame
+
+        Gdx.app.log("ShaderWarmup", warmup.getPermutationCount() + " permutations, "
+            + (ShaderCache.DEFAULT.getMisses() - compiled) + " shaders compiled");
+    }
+
+    // one tile under every column of zebras, a second instanced model drawn with its own instance buffer
+    private void initFloor(float spacing) {
+        floorTexture = new Texture(Gdx.files.internal("graphics/tile.png"));
+        floorModel = new ModelBuilder().createBox(spacing * 0.95f, size / 4f, spacing * 0.95f,
+            new Material(PBRTextureAttribute.createBaseColorTexture(floorTexture)),
+            VertexAttributes.Usage.Position | VertexAttributes.Usage.Normal | VertexAttributes.Usage.TextureCoordinates);
+
+        floor = models.add(floorModel, INSTANCE_LAYOUT, INSTANCE_COUNT_SIDE * INSTANCE_COUNT_SIDE);
+        Quaternion identity = new Quaternion();
+        for (int x = 0; x < INSTANCE_COUNT_SIDE; x++)
+            for (int z = 0; z < INSTANCE_COUNT_SIDE; z++)
+                floor.store.set(x * INSTANCE_COUNT_SIDE + z, (x + 1) * spacing, spacing / 2f, (z + 1) * spacing, identity, 1f);
+        floor.enableShadowCulling(new InstanceGrid(floor.store, 8f * spacing), spacing * 0.75f); // sorts the store
+        floor.uploadAll();
     }
 
     private void initGLTF() {
@@ -267,38 +393,55 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         Gdx.input.setCatchKey(Input.Keys.SPACE, true);
         Gdx.input.setCatchKey(Input.Keys.F1, true);
 
-        // reusable variables
-        mat4 = new Matrix4();
-        vec3Temp = new Vector3();
+        // Same shaders as Duck Field Demo, the draws sorted by shader and material instead of distance
+        sceneManager = new SceneManager(new MyPBRShaderProvider(clock), new MyPBRDepthShaderProvider(clock), new InstancedRenderableSorter()) {
+            @Override
+            public void renderShadows() {
+                metrics.begin(Metric.SHADOW);
+                super.renderShadows();
+                metrics.end(Metric.SHADOW);
+                shadowCasters = models.takeShadowCasterCount();
+            }
 
-        // Same shaders as Duck Field Demo
-        sceneManager = new SceneManager(new MyPBRShaderProvider(), new MyPBRDepthShaderProvider());
+            // once per shadow map, with the camera of its light: only the zebras in its frustum are drawn, and
+            // nothing when the map is kept from the last frames
+            @Override
+            public void renderDepth(Camera camera) {
+                if (isCachedShadow(camera)) return;
+                models.beginShadowPass(camera);
+                super.renderDepth(camera);
+                models.endShadowPass();
+            }
+        };
 
         // gdx-gltf set up
         sceneManager.environment.set(new PBRFloatAttribute(PBRFloatAttribute.ShadowBias, 1f/512f));
 
         // setup light
-        // set the light parameters so that your area of interest is in the shadow light frustum
-        // but keep it reasonably tight to keep sharper shadows
-        Vector3 lightPosition = new Vector3(0,35,0);    // even though this is a directional light and is "infinitely far away", use this to set the near plane
-        float farPlane = 100;
-        float nearPlane = 0;
-        float VP_SIZE = 70f;
-
-        int SHADOW_MAP_SIZE = 8192;
-        light = new DirectionalShadowLight(SHADOW_MAP_SIZE, SHADOW_MAP_SIZE).setViewport(VP_SIZE, VP_SIZE, nearPlane, farPlane);
+        // instead of one 8192 shadow map over a fixed 70m square, a few small maps over the view of the camera, the
+        // closest ones sharpest, see ShadowCascades. The viewport and centre of every shadow light are set every frame
+        int SHADOW_MAP_SIZE = 2048;
+        light = new CachedShadowLight(SHADOW_MAP_SIZE, SHADOW_MAP_SIZE);
         light.direction.set(1, -1, 1);
         light.direction.nor();
         light.color.set(Color.WHITE);
         light.intensity = 2.8f;
 
-        // for the directional shadow light we can set the light centre which is the center of the frustum of the orthogonal camera
-        // that is used to create the depth buffer.
-        // calculate the centre from the light position, near and far planes and light direction
-        float halfDepth = (nearPlane + farPlane)/2f;
-        Vector3 lightCentre = new Vector3();
-        lightCentre.set(light.direction).scl(halfDepth).add(lightPosition);
-        light.setCenter(lightCentre);           // set the centre of the frustum box
+        cascades = new ShadowCascades(config.getShadowCascades(), SHADOW_MAP_SIZE);
+        cascades.setSplitLambda(config.cascadeSplit);
+        cascades.setCasterDistance(100); // the depth of the old light box, zebras further up the light cast no shadow
+        cascadeShadowMap = new CascadeShadowMap(cascades.getCount() - 1);
+        for (int i = 0; i < cascades.getCount() - 1; i++) {
+            CachedShadowLight cascade = new CachedShadowLight(SHADOW_MAP_SIZE, SHADOW_MAP_SIZE);
+            cascade.direction.set(light.direction);
+            cascadeShadowMap.lights.add(cascade);
+        }
+        if (cascades.getCount() > 1) sceneManager.setCascadeShadowMap(cascadeShadowMap);
+
+        // the shadow maps are only drawn again when what they show changed, a few per frame at most if configured
+        shadowCache = new ShadowCache(cascades.getCount());
+        shadowCache.setEnabled(config.shadowCache);
+        shadowCache.setMaxUpdates(config.shadowUpdates);
 
         sceneManager.environment.add(light);
 
@@ -328,17 +471,26 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         font = new BitmapFont(Gdx.files.internal("fonts/lsans-15.fnt"));
         font.setColor(Color.GREEN);
         font.getData().setScale(2);
+        hud = new StatsHud(font, 5, 10, 40, 40);
 
-        // set low instance limits for all other platforms not desktop
+        // low instance limits on platforms other than desktop, unless configured: 101 = 1M+ zebras, 29 = about 25k
         // >>> always use an odd number so camera is not inside a cube
-        if (Gdx.app.getType().equals(Application.ApplicationType.Desktop)) {
-            INSTANCE_COUNT_SIDE = 101; // 1M+ cubes
-        } else {
-            INSTANCE_COUNT_SIDE = 29; // about 25k cubes
-        }
+        INSTANCE_COUNT_SIDE = config.getInstanceCountSide();
+
+        // Try it with your model!  Zebra are over rated anyhow!  --model=<internal path> loads another .gltf or .glb,
+        // all its nodes and meshes are instanced
+        String modelPath = config.modelPath != null ? config.modelPath : "graphics/zebra.gltf";
+        if (modelPath.endsWith(".glb"))
+            sceneAsset = new GLBLoader().load(Gdx.files.internal(modelPath));
+        else
+            sceneAsset = new GLTFLoader().load(Gdx.files.internal(modelPath));
 
         // size of box
         size = 2f; // look in blender at the size of your model, mine is 2x2x2 meters
+        if (config.modelPath != null) {
+            Vector3 dimensions = sceneAsset.scene.model.calculateBoundingBox(new BoundingBox()).getDimensions(new Vector3());
+            size = Math.max(dimensions.x, Math.max(dimensions.y, dimensions.z));
+        }
 
         // setup camera
         camera = new PerspectiveCamera(45, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
@@ -346,12 +498,9 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         camera.far = INSTANCE_COUNT_SIDE * INSTANCE_SEPARATION_FACTOR * size * 2;
 
         // used for frustum
-        if (Gdx.app.getType().equals(Application.ApplicationType.Desktop)) {
-            CULLING_FACTOR = camera.far * 0.25f; // cull very small cubes that we cant detect rotating
-        } else {
-            CULLING_FACTOR = camera.far; // cull very small cubes that we cant detect rotating
+        CULLING_FACTOR = camera.far * config.getCullingFactor(); // cull very small cubes that we cant detect rotating
+        if (!Gdx.app.getType().equals(Application.ApplicationType.Desktop))
             Gdx.graphics.setFullscreenMode(Gdx.graphics.getDisplayMode());
-        }
 
         // Set camera to center of cube field
         camera.position.set(
@@ -362,14 +511,14 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         camera.direction.set(Vector3.Z);
         camera.up.set(Vector3.Y);
         camera.update();
-        camFrustum = camera.frustum;
+
+        // shadows up to 20 zebras away
+        shadowDistance = 20 * INSTANCE_SEPARATION_FACTOR * size;
 
         sceneManager.setCamera(camera);
 
-        // Try it with your model!  Zebra are over rated anyhow!
-        sceneAsset = new GLTFLoader().load(Gdx.files.internal("graphics/zebra.gltf"));
-        scene = new Scene(sceneAsset.scene);
-        sceneManager.addScene(scene);
+        models = new InstancedModelRenderer();
+        sceneManager.getRenderableProviders().add(models);
 
         // 101 * 101 * 101 = 1.03 million for desktop
         INSTANCE_COUNT = INSTANCE_COUNT_SIDE * INSTANCE_COUNT_SIDE * INSTANCE_COUNT_SIDE;
@@ -378,6 +527,13 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
         controller.setVelocity(size*16); // you can change the speed
         controller.setDegreesPerPixel(0.2f);
         Gdx.input.setInputProcessor(controller);
+
+        // the replay rotates the instances from the start
+        if (replay != null) rotateOn = true;
+
+        // create & enable the profiler
+        profiler = new GLProfiler(Gdx.graphics);
+        profiler.enable();
     }
 
     @Override
@@ -392,7 +548,8 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
 
     @Override
     public void resume() {
-
+        // the frame buffers of the shadow maps lost their content with the GL context
+        shadowCache.invalidate();
     }
 
     @Override
@@ -402,14 +559,26 @@ public class ModelInstancedRenderingPBRScreen implements Screen {
 
     @Override
     public void dispose () {
+        // frame timings of the last seconds, to compare runs
+        Gdx.app.log("FrameMetrics", metrics.toString());
+        if (Gdx.files.isLocalStorageAvailable())
+            metrics.writeCsv(Gdx.files.local("frame-metrics-pbr.csv"));
+
         batch2D.dispose();
         font.dispose();
         sceneAsset.dispose();
+        if (floorModel != null) {
+            floorModel.dispose();
+            floorTexture.dispose();
+        }
         sceneManager.dispose();
+        models.dispose();
         environmentCubemap.dispose();
         diffuseCubemap.dispose();
         specularCubemap.dispose();
         brdfLUT.dispose();
         skybox.dispose();
+        cascadeShadowMap.dispose();
+        light.dispose(); // the farthest cascade, not in the cascade shadow map
     }
 }
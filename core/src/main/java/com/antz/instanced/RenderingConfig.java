@@ -0,0 +1,143 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** Settings of the demo that can change without recompiling: which screen and field, how many instances, culling,
+ * instance layout, frame rate and the benchmark camera path. The launchers fill it, the desktop one from the command
+ * line and system properties through {@link #set(String, String)}. The defaults draw what the demo always did, the PBR
+ * screen over a box field of matrix instances, the new layouts and fields are opt-in. */
+public class RenderingConfig {
+
+    public enum ScreenType { BASIC, PBR }
+
+    public enum FieldType {
+        /** cubes filling a box, rotating */
+        BOX,
+        /** very simple minecraft terrain, Basic screen only */
+        VOXEL
+    }
+
+    /** Keys of {@link #set(String, String)}. */
+    public static final String[] KEYS = {"screen", "field", "side", "instances", "culling", "layout", "vsync", "fps", "benchmark", "depth", "floor", "model", "cascades", "split", "shadowcache", "shadowupdates"};
+    /** The keys and their values, for the usage text of the launchers. */
+    public static final String USAGE = "screen (basic, pbr), field (box, voxel), side, instances, culling, "
+        + "layout (matrix, compact, animated), vsync (true, false), fps, benchmark (camera path), "
+        + "depth (voxel ground), floor (true, false), model (.gltf or .glb), cascades, "
+        + "split (0 uniform to 1 logarithmic), shadowcache (true, false), shadowupdates (shadow maps per frame)";
+
+    public ScreenType screen = ScreenType.PBR;
+    public FieldType field = FieldType.BOX;
+    /** instances per side of the field cube, 0 for the platform default: 101 (1.03M) on desktop, 29 (25k) elsewhere.
+     * Keep it odd, so the camera is not inside an instance. */
+    public int instanceCountSide;
+    /** only instances closer than this fraction of the camera far plane are rotated on the CPU, 0 for the platform
+     * default: 0.25 on desktop, 1 (no culling by distance) elsewhere */
+    public float cullingFactor;
+    /** {@link InstanceLayout#MATRIX} as the demo always did, {@code compact} and {@code animated} halve the instance data
+     * or spin the instances on the GPU */
+    public InstanceLayout layout = InstanceLayout.MATRIX;
+    public boolean vsync = true;
+    /** 0 caps the frame rate at the refresh rate of the monitor, -1 removes the cap */
+    public int fpsCap;
+    /** internal file of the {@link CameraPath} to replay as a benchmark, null to let the user fly the camera */
+    public String cameraPath;
+    /** blocks of ground under every column of the voxel field, 0 for the default of 1. Only the blocks with a face
+     * showing are instanced, a deep world costs memory in the {@link VoxelWorld}, not instances. */
+    public int voxelDepth;
+    /** instanced floor tiles under the zebra field of the PBR screen, a second model drawn along with the zebras by
+     * {@link InstancedModelRenderer} */
+    public boolean floor;
+    /** internal file of the .gltf or .glb model of the PBR screen, null for the zebra. Every node and mesh of it is
+     * instanced. */
+    public String modelPath;
+    /** shadow cascades of the PBR screen following the camera, each with a 2048 shadow map, 0 for the default of 3 */
+    public int shadowCascades;
+    /** split scheme of the shadow cascades, from 0 for evenly spaced splits to 1 for logarithmic ones, see
+     * {@link ShadowCascades#setSplitLambda(float)} */
+    public float cascadeSplit = 0.75f;
+    /** draw the shadow maps of the PBR screen only when their box, the light or the instances changed, see
+     * {@link ShadowCache} */
+    public boolean shadowCache = true;
+    /** shadow maps drawn per frame at most, spreading the updates of the cascades over frames, 0 for no limit */
+    public int shadowUpdates;
+
+    public int getInstanceCountSide() {
+        if (instanceCountSide > 0) return instanceCountSide;
+        return isDesktop() ? 101 : 29;
+    }
+
+    public float getCullingFactor() {
+        if (cullingFactor > 0) return cullingFactor;
+        return isDesktop() ? 0.25f : 1f;
+    }
+
+    public int getShadowCascades() {
+        return shadowCascades > 0 ? shadowCascades : 3;
+    }
+
+    public int getVoxelDepth() {
+        return voxelDepth > 0 ? voxelDepth : 1;
+    }
+
+    /** @return the replay of {@link #cameraPath} at 60 fps with a fixed seed, or null if there is none */
+    public CameraReplay createReplay() {
+        if (cameraPath == null) return null;
+        return new CameraReplay(CameraPath.load(Gdx.files.internal(cameraPath)), 1 / 60f, 42);
+    }
+
+    /** Sets one of the {@link #KEYS} from text.
+     * {@code instances} sets the side to the odd number whose cube is closest to the count. */
+    public RenderingConfig set(String key, String value) {
+        try {
+            if (key.equals("screen")) screen = ScreenType.valueOf(value.toUpperCase());
+            else if (key.equals("field")) field = FieldType.valueOf(value.toUpperCase());
+            else if (key.equals("side")) instanceCountSide = positive(key, Integer.parseInt(value));
+            else if (key.equals("instances")) instanceCountSide = getOddSide(positive(key, Integer.parseInt(value)));
+            else if (key.equals("culling")) cullingFactor = positive(key, Float.parseFloat(value));
+            else if (key.equals("layout")) layout = InstanceLayout.valueOf(value.toUpperCase());
+            else if (key.equals("vsync")) vsync = Boolean.parseBoolean(value);
+            else if (key.equals("fps")) fpsCap = Integer.parseInt(value);
+            else if (key.equals("floor")) floor = Boolean.parseBoolean(value);
+            else if (key.equals("model")) modelPath = value;
+            else if (key.equals("cascades")) shadowCascades = positive(key, Integer.parseInt(value));
+            else if (key.equals("split")) cascadeSplit = fraction(key, Float.parseFloat(value));
+            else if (key.equals("shadowcache")) shadowCache = Boolean.parseBoolean(value);
+            else if (key.equals("shadowupdates")) shadowUpdates = positive(key, Integer.parseInt(value));
+            else if (key.equals("depth")) voxelDepth = positive(key, Integer.parseInt(value));
+            else if (key.equals("benchmark")) cameraPath = value.isEmpty() ? CameraReplay.DEFAULT_PATH : value;
+            else throw new GdxRuntimeException("unknown setting " + key + ", expected one of " + USAGE);
+        } catch (IllegalArgumentException e) { // also NumberFormatException
+            throw new GdxRuntimeException("bad value for " + key + ": " + value, e);
+        }
+        return this;
+    }
+
+    /** @return the odd number of instances per side whose cube is closest to the count */
+    public static int getOddSide(int instanceCount) {
+        int side = Math.max(1, (int)Math.round(Math.cbrt(instanceCount)));
+        if (side % 2 == 1) return side;
+        long below = (long)(side - 1) * (side - 1) * (side - 1), above = (long)(side + 1) * (side + 1) * (side + 1);
+        return instanceCount - below <= above - instanceCount ? side - 1 : side + 1;
+    }
+
+    private static int positive(String key, int value) {
+        if (value <= 0) throw new GdxRuntimeException(key + " must be positive: " + value);
+        return value;
+    }
+
+    private static float positive(String key, float value) {
+        if (value <= 0) throw new GdxRuntimeException(key + " must be positive: " + value);
+        return value;
+    }
+
+    private static float fraction(String key, float value) {
+        if (value < 0 || value > 1) throw new GdxRuntimeException(key + " must be between 0 and 1: " + value);
+        return value;
+    }
+
+    private static boolean isDesktop() {
+        return Gdx.app.getType() == Application.ApplicationType.Desktop;
+    }
+}
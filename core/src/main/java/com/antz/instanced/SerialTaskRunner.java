@@ -0,0 +1,20 @@
+package com.antz.instanced;
+
+/** {@link TaskRunner} running all the tasks on the calling thread, works on every platform. */
+public class SerialTaskRunner implements TaskRunner {
+
+    @Override
+    public void run(int count, Task task) {
+        for (int i = 0; i < count; i++)
+            task.run(i);
+    }
+
+    @Override
+    public int getParallelism() {
+        return 1;
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,123 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.Vector3;
+
+/** Decides which shadow maps to draw this frame: a shadow map only needs drawing again when its light box moved, the
+ * light turned or the instances changed. When nothing moves, as with the rotation off and the camera still, no shadow
+ * map is drawn at all and the shadow pass is free. Only bookkeeping, the screen skips the maps, see
+ * {@link CachedShadowLight}.
+ *
+ * The boxes of {@link ShadowCascades} keep their size and move by whole texels, so a still camera gives exactly the
+ * same boxes every frame. The instances are compared by version, see {@link InstancedModelRenderer#getVersion()};
+ * anything else changing what the shadows show, like the vertex shaders spinning the instances, has to call
+ * {@link #invalidate()}.
+ *
+ * The updates can also be spread over frames, see {@link #setMaxUpdates(int)}: a map that is not drawn keeps the box it
+ * was drawn with, its shadows are right but lag behind the camera by a few frames. */
+public class ShadowCache {
+
+    private final int count;
+    private final Vector3[] centers;    // the boxes the maps were last drawn with
+    private final float[] sizes;
+    private final float[] depths;
+    private final boolean[] stale;
+    private final boolean[] drawn;      // drawn this frame
+    private final int[] age;            // frames since drawn
+    private final Vector3 lightDirection = new Vector3();
+    private long version = -1;
+
+    private boolean enabled = true;
+    private int maxUpdates;
+    private int drawnCount;
+
+    public ShadowCache(int count) {
+        if (count < 1) throw new IllegalArgumentException("at least one shadow map: " + count);
+        this.count = count;
+        centers = new Vector3[count];
+        for (int i = 0; i < count; i++)
+            centers[i] = new Vector3();
+        sizes = new float[count];
+        depths = new float[count];
+        stale = new boolean[count];
+        drawn = new boolean[count];
+        age = new int[count];
+        invalidate();
+    }
+
+    /** @param enabled false to draw every shadow map every frame, as without the cache */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** @param maxUpdates shadow maps drawn per frame at most, the ones waiting the longest first, 0 for no limit */
+    public void setMaxUpdates(int maxUpdates) {
+        this.maxUpdates = Math.max(0, maxUpdates);
+    }
+
+    public int getMaxUpdates() {
+        return maxUpdates;
+    }
+
+    /** Draws every shadow map again, on the next frames if the updates are limited: after a GL context loss, or when
+     * the instances move without their data changing. */
+    public void invalidate() {
+        for (int i = 0; i < count; i++)
+            stale[i] = true;
+    }
+
+    /** Compares the boxes of the cascades and the instances with what the maps were drawn with, and picks the maps to
+     * draw this frame, see {@link #isDrawn(int)}. Call it once per frame, after {@link ShadowCascades#update}.
+     * @param version version of the instance data, see {@link InstancedModelRenderer#getVersion()} */
+    public void update(ShadowCascades cascades, Vector3 lightDirection, long version) {
+        if (cascades.getCount() != count)
+            throw new IllegalArgumentException(cascades.getCount() + " cascades for " + count + " shadow maps");
+        if (!enabled || version != this.version || !lightDirection.equals(this.lightDirection)) invalidate();
+        this.version = version;
+        this.lightDirection.set(lightDirection);
+        for (int i = 0; i < count; i++) {
+            if (!centers[i].equals(cascades.getCenter(i)) || sizes[i] != cascades.getSize(i) || depths[i] != cascades.getDepth(i))
+                stale[i] = true;
+            drawn[i] = false;
+            age[i]++;
+        }
+
+        // the stale maps waiting the longest, the closest cascade first among equals
+        drawnCount = 0;
+        while (maxUpdates == 0 || drawnCount < maxUpdates) {
+            int oldest = -1;
+            for (int i = 0; i < count; i++)
+                if (stale[i] && !drawn[i] && (oldest < 0 || age[i] > age[oldest])) oldest = i;
+            if (oldest < 0) break;
+            drawn[oldest] = true;
+            drawnCount++;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!drawn[i]) continue;
+            centers[i].set(cascades.getCenter(i));
+            sizes[i] = cascades.getSize(i);
+            depths[i] = cascades.getDepth(i);
+            stale[i] = false;
+            age[i] = 0;
+        }
+    }
+
+    /** @return whether the shadow map of the cascade is drawn this frame, with the box of the cascade. Otherwise its
+     * light keeps the box it was last drawn with. */
+    public boolean isDrawn(int cascade) {
+        return drawn[cascade];
+    }
+
+    /** @return shadow maps drawn this frame */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
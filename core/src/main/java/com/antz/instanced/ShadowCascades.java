@@ -0,0 +1,150 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+
+/** Splits the view of the camera in shadow cascades and fits an orthographic light box on each, so shadows close to
+ * the camera get most of the shadow map resolution and follow it around the field. Only math, nothing here needs a GL
+ * context: the screen copies the boxes to its shadow lights, see {@link #getCenter(int)}.
+ *
+ * The splits blend the uniform and the logarithmic schemes ("practical split scheme"), from the camera near plane to
+ * the shadow distance. Every cascade covers from the near plane to its split, not only its own slice, so whichever
+ * cascade the shader picks for a fragment shadows it correctly. Cascade 0 is the closest and sharpest: the shader has
+ * to try the cascades from it, gdx-gltf tries the lights of its cascade shadow map in order then falls back to the
+ * base shadow light, which must hold the last, farthest cascade.
+ *
+ * A box is fit around the bounding sphere of its part of the view, so its size does not change when the camera turns,
+ * and its center moves by whole texels of the shadow map: the shadow edges do not shimmer while the camera moves. The
+ * box is stretched towards the light by the caster distance, for the objects outside the view that cast shadows into
+ * it. */
+public class ShadowCascades {
+
+    private final int count;
+    private final int mapSize;
+    private final float[] splits;       // count + 1 distances from the camera, splits[0] is the near plane
+    private final Vector3[] centers;
+    private final float[] sizes;        // width and height of the boxes
+    private final float[] depths;       // depth of the boxes along the light direction
+
+    private float lambda = 0.75f;
+    private float casterDistance;
+
+    private final Vector3 right = new Vector3(), up = new Vector3(), light = new Vector3();
+    private final Vector3 sphereCenter = new Vector3(), side = new Vector3(), cameraUp = new Vector3();
+
+    /** @param mapSize width and height of the shadow map of every cascade, in texels */
+    public ShadowCascades(int count, int mapSize) {
+        if (count < 1) throw new IllegalArgumentException("at least one cascade: " + count);
+        this.count = count;
+        this.mapSize = mapSize;
+        splits = new float[count + 1];
+        centers = new Vector3[count];
+        for (int i = 0; i < count; i++)
+            centers[i] = new Vector3();
+        sizes = new float[count];
+        depths = new float[count];
+    }
+
+    /** @param lambda 0 for splits evenly spaced, 1 for splits growing geometrically, with the same ratio between
+     *               consecutive ones. In between, a blend of the two. */
+    public void setSplitLambda(float lambda) {
+        this.lambda = MathUtils.clamp(lambda, 0, 1);
+    }
+
+    /** @param distance how far towards the light the boxes reach past the view, for the objects casting shadows in it */
+    public void setCasterDistance(float distance) {
+        casterDistance = distance;
+    }
+
+    /** Splits [near, far] in count ranges, blending the uniform and the logarithmic schemes.
+     * @param out count + 1 distances, out[0] is near and out[count] is far */
+    public static void computeSplits(float near, float far, int count, float lambda, float[] out) {
+        for (int i = 0; i <= count; i++) {
+            float f = i / (float)count;
+            float logarithmic = near * (float)Math.pow(far / near, f);
+            float uniform = near + (far - near) * f;
+            out[i] = lambda * logarithmic + (1 - lambda) * uniform;
+        }
+        out[0] = near;
+        out[count] = far;
+    }
+
+    /** Splits the view of the camera up to the shadow distance and fits the boxes of the cascades.
+     * @param shadowDistance no shadows further than this from the camera, capped by its far plane
+     * @param lightDirection direction the light shines in */
+    public void update(PerspectiveCamera camera, float shadowDistance, Vector3 lightDirection) {
+        computeSplits(camera.near, Math.min(shadowDistance, camera.far), count, lambda, splits);
+
+        // the axes of the light camera: OrthographicCamera#normalizeUp() from Y, as DirectionalShadowLight does
+        light.set(lightDirection).nor();
+        up.set(Math.abs(light.y) > 0.99f ? Vector3.Z : Vector3.Y);
+        right.set(light).crs(up).nor();
+        up.set(right).crs(light).nor();
+
+        for (int i = 0; i < count; i++)
+            fit(camera, splits[0], splits[i + 1], i);
+    }
+
+    private void fit(PerspectiveCamera camera, float near, float far, int cascade) {
+        // bounding sphere of the corners of the frustum slice: its center is on the view axis, and its radius only
+        // depends on the slice, not on where the camera looks
+        float tan = (float)Math.tan(camera.fieldOfView * 0.5f * MathUtils.degreesToRadians);
+        float aspect = camera.viewportWidth / camera.viewportHeight;
+        float nearHalf2 = near * tan * near * tan * (1 + aspect * aspect);  // squared half diagonal of the slice ends
+        float farHalf2 = far * tan * far * tan * (1 + aspect * aspect);
+        // the distance along the axis equally far from the corners of both ends, kept within the slice
+        float d = MathUtils.clamp((far * far - near * near + farHalf2 - nearHalf2) / (2 * (far - near)), near, far);
+        float radius = (float)Math.sqrt(Math.max((d - near) * (d - near) + nearHalf2, (far - d) * (far - d) + farHalf2));
+        radius = (float)Math.ceil(radius * 16) / 16; // no jitter from float rounding
+        sphereCenter.set(camera.direction).nor().scl(d).add(camera.position);
+
+        // whole texels across the light direction, with a texel to spare on every side so the snapped sphere still fits
+        float texel = 2 * radius / (mapSize - 2);
+        float x = sphereCenter.dot(right), y = sphereCenter.dot(up);
+        float snappedX = (float)Math.floor(x / texel) * texel, snappedY = (float)Math.floor(y / texel) * texel;
+        Vector3 center = centers[cascade].set(sphereCenter).mulAdd(right, snappedX - x).mulAdd(up, snappedY - y);
+
+        // from the casters in front of the sphere to its back, centered on its middle
+        center.mulAdd(light, -casterDistance / 2);
+        sizes[cascade] = texel * mapSize;
+        depths[cascade] = 2 * radius + casterDistance;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** @return the distance from the camera where the cascade ends, after {@link #update} */
+    public float getSplit(int cascade) {
+        return splits[cascade + 1];
+    }
+
+    /** @return the center of the box of the cascade, for DirectionalShadowLight#setCenter */
+    public Vector3 getCenter(int cascade) {
+        return centers[cascade];
+    }
+
+    /** @return the width and height of the box, the viewport of the light camera */
+    public float getSize(int cascade) {
+        return sizes[cascade];
+    }
+
+    /** @return the depth of the box along the light, the near plane of the light camera is 0 and its far plane this */
+    public float getDepth(int cascade) {
+        return depths[cascade];
+    }
+
+    /** @return corner 0 to 7 of the slice of the view of the camera between the two distances, for checks */
+    public Vector3 getSliceCorner(PerspectiveCamera camera, float near, float far, int corner, Vector3 out) {
+        float distance = (corner & 4) == 0 ? near : far;
+        float halfHeight = distance * (float)Math.tan(camera.fieldOfView * 0.5f * MathUtils.degreesToRadians);
+        float halfWidth = halfHeight * camera.viewportWidth / camera.viewportHeight;
+        // the axes of the view matrix, camera.up is not always perpendicular to the direction
+        side.set(camera.direction).crs(camera.up).nor();
+        cameraUp.set(side).crs(camera.direction).nor();
+        return out.set(camera.position).mulAdd(camera.direction, distance)
+            .mulAdd(side, (corner & 1) == 0 ? -halfWidth : halfWidth)
+            .mulAdd(cameraUp, (corner & 2) == 0 ? -halfHeight : halfHeight);
+    }
+}
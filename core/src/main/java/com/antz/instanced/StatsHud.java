@@ -0,0 +1,75 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.GlyphLayout;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/** Lines of stats text drawn without creating garbage every frame.
+ *
+ * Each frame the screen writes the lines into the reusable builders of {@link #line(int)} (libGDX's
+ * {@link StringBuilder} appends ints without allocating, use {@link #appendFixed(StringBuilder, float, int)} for
+ * decimals), then {@link #draw(Batch)}. A line keeps its {@link GlyphLayout}, which is only laid out again when the
+ * text changed, so static text like the help line costs nothing after the first frame. */
+public class StatsHud {
+
+    private final BitmapFont font;
+    private final float x, y, lineSpacing;
+    private final StringBuilder[] text, shown;
+    private final GlyphLayout[] layouts;
+
+    /** @param x left of the lines
+     * @param y baseline of the first line, the next ones go up by lineSpacing */
+    public StatsHud(BitmapFont font, int lines, float x, float y, float lineSpacing) {
+        this.font = font;
+        this.x = x;
+        this.y = y;
+        this.lineSpacing = lineSpacing;
+        text = new StringBuilder[lines];
+        shown = new StringBuilder[lines];
+        layouts = new GlyphLayout[lines];
+        for (int i = 0; i < lines; i++) {
+            text[i] = new StringBuilder(256);
+            shown[i] = new StringBuilder(256);
+            layouts[i] = new GlyphLayout();
+        }
+    }
+
+    /** @return the emptied builder of the line, to append this frame's text to */
+    public StringBuilder line(int index) {
+        text[index].setLength(0);
+        return text[index];
+    }
+
+    public void draw(Batch batch) {
+        for (int i = 0; i < text.length; i++) {
+            if (!text[i].equals(shown[i])) {
+                shown[i].setLength(0);
+                shown[i].append(text[i]);
+                layouts[i].setText(font, shown[i]);
+            }
+            font.draw(batch, layouts[i], x, y + i * lineSpacing);
+        }
+    }
+
+    /** Appends the value with a fixed number of decimals, without allocating like {@code append(float)} does. */
+    public static StringBuilder appendFixed(StringBuilder builder, float value, int decimals) {
+        int scale = 1;
+        for (int i = 0; i < decimals; i++)
+            scale *= 10;
+        long scaled = Math.round(Math.abs((double)value) * scale);
+        if (value < 0 && scaled != 0) builder.append('-');
+        builder.append(scaled / scale);
+        if (decimals > 0) builder.append('.').append((int)(scaled % scale), decimals);
+        return builder;
+    }
+
+    /** Appends the vector as (x, y, z) with a fixed number of decimals. */
+    public static StringBuilder appendFixed(StringBuilder builder, Vector3 vector, int decimals) {
+        builder.append('(');
+        appendFixed(builder, vector.x, decimals).append(", ");
+        appendFixed(builder, vector.y, decimals).append(", ");
+        return appendFixed(builder, vector.z, decimals).append(')');
+    }
+}
@@ -0,0 +1,23 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.utils.Disposable;
+
+/** Runs a number of independent tasks and waits for all of them to finish.
+ *
+ * The default {@link SerialTaskRunner} runs them one after the other on the calling thread, which is all GWT and
+ * TeaVM can do. Desktop uses {@link ForkJoinTaskRunner} to spread them over the CPU cores, see Lwjgl3Launcher.
+ * {@link #dispose()} stops the threads, if any, once nothing runs tasks anymore. */
+public interface TaskRunner extends Disposable {
+
+    interface Task {
+        /** @param index the task to run, from 0 to count - 1 */
+        void run(int index);
+    }
+
+    /** Calls {@link Task#run(int)} for every index in [0, count) and returns when all calls are done.
+     * Calls may happen concurrently, so tasks must only write their own data. */
+    void run(int count, Task task);
+
+    /** @return number of threads running tasks at the same time */
+    int getParallelism();
+}
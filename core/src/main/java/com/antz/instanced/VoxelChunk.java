@@ -0,0 +1,156 @@
+package com.antz.instanced;
+
+/** {@link VoxelWorld#CHUNK_SIZE} cubed voxels of a {@link VoxelWorld}: 0 is air, any other value is the type of a
+ * solid block.
+ *
+ * The voxels are stored palette compressed: the chunk keeps the list of types it holds and every voxel is an index
+ * into it, packed with as few bits as the palette needs (0, 1, 2, 4 or 8). A chunk of ground and air takes 4 KB
+ * instead of 32 KB, a chunk of a single type takes no voxel data at all. Reading a voxel is a shift and a mask.
+ *
+ * The world marks a chunk dirty when one of its voxels, or a voxel touching it in a neighbouring chunk, changed, so
+ * {@link VoxelRenderer} only meshes those chunks again. */
+public class VoxelChunk {
+
+    private static final int VOLUME = VoxelWorld.CHUNK_SIZE * VoxelWorld.CHUNK_SIZE * VoxelWorld.CHUNK_SIZE;
+
+    /** chunk coordinates, the first voxel of the chunk is at x * {@link VoxelWorld#CHUNK_SIZE} */
+    public final int x, y, z;
+
+    private byte[] palette = new byte[1];   // starts as a single type: air
+    private int paletteSize = 1;
+    private int bits;                       // per voxel, the palette size rounded up to a power of two
+    private int[] data;                     // packed palette indices, null while bits is 0
+    private int solidCount;
+    private boolean dirty = true;
+
+    public VoxelChunk(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /** @param x y z voxel in the chunk, from 0 to {@link VoxelWorld#CHUNK_SIZE} - 1 */
+    public byte get(int x, int y, int z) {
+        if (bits == 0) return palette[0];
+        int bit = index(x, y, z) * bits;
+        return palette[(data[bit >>> 5] >>> (bit & 31)) & ((1 << bits) - 1)];
+    }
+
+    /** Sets a voxel in the chunk, only {@link VoxelWorld#set(int, int, int, byte)} marks the neighbours dirty.
+     * @return whether the voxel changed */
+    boolean set(int x, int y, int z, byte type) {
+        byte previous = get(x, y, z);
+        if (previous == type) return false;
+        if (previous == 0) solidCount++;
+        else if (type == 0) solidCount--;
+
+        int entry = indexOf(type);
+        if (entry < 0) {
+            if (paletteSize == 1 << bits) resize(bits == 0 ? 1 : bits * 2);
+            if (paletteSize == palette.length) {
+                byte[] grown = new byte[Math.min(256, palette.length * 2)];
+                System.arraycopy(palette, 0, grown, 0, paletteSize);
+                palette = grown;
+            }
+            entry = paletteSize;
+            palette[paletteSize++] = type;
+        }
+        write(index(x, y, z), entry);
+        dirty = true;
+        return true;
+    }
+
+    /** Drops the types no voxel uses anymore from the palette and packs the voxels with as few bits as possible,
+     * down to no voxel data for a chunk of a single type. */
+    public void compact() {
+        int[] used = new int[paletteSize];
+        for (int i = 0; i < VOLUME; i++)
+            used[read(i)]++;
+
+        // old palette index to new one
+        int[] remap = new int[paletteSize];
+        byte[] compacted = new byte[paletteSize];
+        int size = 0;
+        for (int entry = 0; entry < paletteSize; entry++) {
+            if (used[entry] == 0) continue;
+            remap[entry] = size;
+            compacted[size++] = palette[entry];
+        }
+        int newBits = size <= 1 ? 0 : size <= 2 ? 1 : size <= 4 ? 2 : size <= 16 ? 4 : 8;
+
+        int[] newData = newBits == 0 ? null : new int[VOLUME * newBits / 32];
+        if (newData != null) {
+            for (int i = 0; i < VOLUME; i++) {
+                int bit = i * newBits;
+                newData[bit >>> 5] |= remap[read(i)] << (bit & 31);
+            }
+        }
+        palette = compacted;
+        paletteSize = size;
+        bits = newBits;
+        data = newData;
+    }
+
+    // grows the packed indices to more bits per voxel
+    private void resize(int newBits) {
+        int[] newData = new int[VOLUME * newBits / 32];
+        if (bits > 0) {
+            for (int i = 0; i < VOLUME; i++) {
+                int bit = i * newBits;
+                newData[bit >>> 5] |= read(i) << (bit & 31);
+            }
+        }
+        bits = newBits;
+        data = newData;
+    }
+
+    private int read(int index) {
+        if (bits == 0) return 0;
+        int bit = index * bits;
+        return (data[bit >>> 5] >>> (bit & 31)) & ((1 << bits) - 1);
+    }
+
+    private void write(int index, int entry) {
+        int bit = index * bits, shift = bit & 31, mask = (1 << bits) - 1;
+        data[bit >>> 5] = (data[bit >>> 5] & ~(mask << shift)) | (entry << shift);
+    }
+
+    private int indexOf(byte type) {
+        for (int entry = 0; entry < paletteSize; entry++)
+            if (palette[entry] == type) return entry;
+        return -1;
+    }
+
+    /** @return voxels that are not air */
+    public int getSolidCount() {
+        return solidCount;
+    }
+
+    /** @return types in the palette, some may not be used anymore until {@link #compact()} */
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /** @return bits per voxel */
+    public int getBits() {
+        return bits;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    /** @return heap bytes of the palette and the packed voxels */
+    public long getMemoryBytes() {
+        return palette.length + (data == null ? 0 : data.length * 4L);
+    }
+
+    // x major, z minor
+    private static int index(int x, int y, int z) {
+        return (x << (2 * VoxelWorld.CHUNK_BITS)) | (y << VoxelWorld.CHUNK_BITS) | z;
+    }
+}
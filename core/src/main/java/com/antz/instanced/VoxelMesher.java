@@ -0,0 +1,170 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.utils.FloatArray;
+
+import java.util.Arrays;
+
+/** Builds the triangles of a {@link VoxelChunk}: only the faces between a block and air, with the neighbouring faces of
+ * the same type merged into larger quads (greedy meshing).
+ *
+ * Every slice of the chunk along every axis is turned into a mask of the visible faces, then the mask is covered with
+ * rectangles: grow right while the face is the same, then grow down while the whole row is. Flat ground of a single
+ * block type becomes a handful of quads instead of two triangles per block face, and the faces between two blocks are
+ * never emitted, where an instanced cube draws all 12 triangles of every block.
+ *
+ * A mesher keeps scratch arrays, use one per thread. It only reads the world, so chunks can be meshed in parallel
+ * while nothing changes voxels. */
+public class VoxelMesher {
+
+    /** position x, y, z in voxels from the chunk corner, texture coordinates in voxels, shade */
+    public static final int FLOATS_PER_VERTEX = 6;
+    public static final int VERTICES_PER_QUAD = 4;
+    public static final int INDICES_PER_QUAD = 6;
+
+    private static final int N = VoxelWorld.CHUNK_SIZE;
+    private static final int P = N + 2; // the chunk with one voxel of each neighbour around it
+    private static final int[] STRIDES = {P * P, P, 1};
+
+    private final byte[] padded = new byte[P * P * P];
+    private final int[] mask = new int[N * N];
+    private final int[] from = new int[3], to = new int[3];
+    private int faceCount;
+
+    /** Replaces the vertices in out with the quads of the chunk.
+     * @return the number of quads */
+    public int mesh(VoxelWorld world, VoxelChunk chunk, FloatArray out) {
+        out.clear();
+        faceCount = 0;
+        load(world, chunk);
+
+        int quads = 0;
+        for (int d = 0; d < 3; d++) {
+            int u = (d + 1) % 3, v = (d + 2) % 3;
+            // plane s is between voxel s - 1 and voxel s on axis d
+            for (int s = 0; s <= N; s++) {
+                buildMask(d, u, v, s);
+                quads += mergeMask(d, u, v, s, out);
+            }
+        }
+        return quads;
+    }
+
+    /** @return faces of single voxels the last mesh covers, before they were merged */
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    private void load(VoxelWorld world, VoxelChunk chunk) {
+        Arrays.fill(padded, (byte)0);
+        for (int x = 0; x < N; x++)
+            for (int y = 0; y < N; y++)
+                for (int z = 0; z < N; z++)
+                    padded[index(x, y, z)] = chunk.get(x, y, z);
+
+        // the layer of each neighbour touching the chunk, air where there is no neighbour
+        int cx = chunk.x, cy = chunk.y, cz = chunk.z;
+        loadLayer(world.getChunk(cx - 1, cy, cz), 0, N - 1, -1);
+        loadLayer(world.getChunk(cx + 1, cy, cz), 0, 0, N);
+        loadLayer(world.getChunk(cx, cy - 1, cz), 1, N - 1, -1);
+        loadLayer(world.getChunk(cx, cy + 1, cz), 1, 0, N);
+        loadLayer(world.getChunk(cx, cy, cz - 1), 2, N - 1, -1);
+        loadLayer(world.getChunk(cx, cy, cz + 1), 2, 0, N);
+    }
+
+    // copies layer fromLayer of the neighbour on the axis to layer toLayer of the padded chunk
+    private void loadLayer(VoxelChunk neighbour, int axis, int fromLayer, int toLayer) {
+        if (neighbour == null) return;
+        int u = (axis + 1) % 3, v = (axis + 2) % 3;
+        from[axis] = fromLayer;
+        to[axis] = toLayer;
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                from[u] = to[u] = i;
+                from[v] = to[v] = j;
+                padded[index(to[0], to[1], to[2])] = neighbour.get(from[0], from[1], from[2]);
+            }
+        }
+    }
+
+    // visible faces of plane s: the type facing +d, minus the type facing -d, 0 for none
+    private void buildMask(int d, int u, int v, int s) {
+        int strideD = STRIDES[d], strideU = STRIDES[u], strideV = STRIDES[v];
+        int start = s * strideD + strideU + strideV; // voxel s - 1 on d, 0 on u and v, in padded coordinates
+        for (int j = 0; j < N; j++) {
+            int a = start + j * strideV;
+            for (int i = 0; i < N; i++, a += strideU) {
+                byte before = padded[a], after = padded[a + strideD];
+                int face = 0;
+                // a face belongs to the chunk holding its block
+                if (before != 0 && after == 0 && s > 0) face = before & 0xFF;
+                else if (after != 0 && before == 0 && s < N) face = -(after & 0xFF);
+                mask[i + j * N] = face;
+                if (face != 0) faceCount++;
+            }
+        }
+    }
+
+    private int mergeMask(int d, int u, int v, int s, FloatArray out) {
+        int quads = 0;
+        for (int j = 0; j < N; j++) {
+            for (int i = 0; i < N; ) {
+                int face = mask[i + j * N];
+                if (face == 0) {
+                    i++;
+                    continue;
+                }
+
+                // grow right, then down while the whole row matches
+                int w = 1;
+                while (i + w < N && mask[i + w + j * N] == face)
+                    w++;
+                int h = 1;
+                grow:
+                while (j + h < N) {
+                    for (int k = 0; k < w; k++)
+                        if (mask[i + k + (j + h) * N] != face) break grow;
+                    h++;
+                }
+                for (int l = 0; l < h; l++)
+                    Arrays.fill(mask, i + (j + l) * N, i + w + (j + l) * N, 0);
+
+                addQuad(out, d, u, v, s, i, j, w, h, face > 0);
+                quads++;
+                i += w;
+            }
+        }
+        return quads;
+    }
+
+    private static void addQuad(FloatArray out, int d, int u, int v, int s, int i, int j, int w, int h, boolean positive) {
+        float shade = d == 1 ? (positive ? 1f : 0.5f) : d == 0 ? 0.8f : 0.65f; // top, bottom and sides
+        // counter clockwise seen from the side the face looks at, u x v is d
+        if (positive) {
+            addVertex(out, d, u, v, s, i, j, shade);
+            addVertex(out, d, u, v, s, i + w, j, shade);
+            addVertex(out, d, u, v, s, i + w, j + h, shade);
+            addVertex(out, d, u, v, s, i, j + h, shade);
+        } else {
+            addVertex(out, d, u, v, s, i, j, shade);
+            addVertex(out, d, u, v, s, i, j + h, shade);
+            addVertex(out, d, u, v, s, i + w, j + h, shade);
+            addVertex(out, d, u, v, s, i + w, j, shade);
+        }
+    }
+
+    private static void addVertex(FloatArray out, int d, int u, int v, int s, int i, int j, float shade) {
+        float[] items = out.ensureCapacity(FLOATS_PER_VERTEX);
+        int o = out.size;
+        items[o + d] = s;
+        items[o + u] = i;
+        items[o + v] = j;
+        items[o + 3] = i; // the texture repeats once per voxel
+        items[o + 4] = j;
+        items[o + 5] = shade;
+        out.size += FLOATS_PER_VERTEX;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x + 1) * STRIDES[0] + (y + 1) * STRIDES[1] + (z + 1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.Pool;
+
+/** Draws a {@link VoxelWorld} as one greedy mesh per chunk, see {@link VoxelMesher}, instead of one cube instance per
+ * voxel.
+ *
+ * {@link #update(Camera)} meshes the chunks that changed since the last update, spread over the {@link TaskRunner},
+ * sends them to their meshes and keeps the chunks in view. Drawing them is a {@link RenderableProvider}, with the
+ * shader of {@link #setShader(Shader)}: the vertices are in voxels from the chunk corner, the world transform of each
+ * renderable places and scales the chunk. */
+public class VoxelRenderer implements RenderableProvider, Disposable {
+
+    /** quads of one mesh, as many as 16 bit indices address, a chunk with more uses several meshes */
+    public static final int MAX_QUADS_PER_MESH = 65536 / VoxelMesher.VERTICES_PER_QUAD;
+    private static final short[] INDICES = new short[MAX_QUADS_PER_MESH * VoxelMesher.INDICES_PER_QUAD];
+    static {
+        for (int q = 0, i = 0; q < MAX_QUADS_PER_MESH; q++) {
+            short v = (short)(q * VoxelMesher.VERTICES_PER_QUAD);
+            INDICES[i++] = v;
+            INDICES[i++] = (short)(v + 1);
+            INDICES[i++] = (short)(v + 2);
+            INDICES[i++] = (short)(v + 2);
+            INDICES[i++] = (short)(v + 3);
+            INDICES[i++] = v;
+        }
+    }
+
+    private final VoxelWorld world;
+    private final float voxelSize;
+    private final TaskRunner runner;
+    private final VoxelMesher[] meshers;   // one per task, they keep scratch arrays
+    private final Material material = new Material();
+    private Shader shader;
+
+    private final ObjectMap<VoxelChunk, ChunkMesh> chunkMeshes = new ObjectMap<>();
+    private final Array<ChunkMesh> allMeshes = new Array<>();
+    private final Array<VoxelChunk> dirtyChunks = new Array<>();
+    private final Array<ChunkMesh> toMesh = new Array<>();
+    private final Array<ChunkMesh> visible = new Array<>();
+    private final TaskRunner.Task meshTask = this::meshChunks;
+    private int taskCount;
+
+    private int chunksMeshed, quadCount;
+
+    /** @param voxelSize world size of a voxel, voxel (x, y, z) is centered on (x, y, z) * voxelSize
+     * @param runner meshes the changed chunks, in parallel where the platform allows it */
+    public VoxelRenderer(VoxelWorld world, float voxelSize, TaskRunner runner) {
+        this.world = world;
+        this.voxelSize = voxelSize;
+        this.runner = runner;
+        meshers = new VoxelMesher[runner.getParallelism()];
+        for (int i = 0; i < meshers.length; i++)
+            meshers[i] = new VoxelMesher();
+    }
+
+    /** @param shader draws the chunk meshes: a_position, a_texCoords0, a_shade and the world transform */
+    public void setShader(Shader shader) {
+        this.shader = shader;
+    }
+
+    /** Meshes the chunks that changed since the last update and keeps the ones in the camera frustum. */
+    public void update(Camera camera) {
+        dirtyChunks.clear();
+        world.takeDirtyChunks(dirtyChunks);
+        chunksMeshed = dirtyChunks.size;
+        if (dirtyChunks.size > 0) {
+            toMesh.clear();
+            for (VoxelChunk chunk : dirtyChunks) {
+                ChunkMesh chunkMesh = chunkMeshes.get(chunk);
+                if (chunkMesh == null) {
+                    chunkMesh = new ChunkMesh(chunk, voxelSize);
+                    chunkMeshes.put(chunk, chunkMesh);
+                    allMeshes.add(chunkMesh);
+                }
+                toMesh.add(chunkMesh);
+            }
+
+            // building the vertices only reads the world, the meshes are sent from this thread afterwards
+            taskCount = Math.min(toMesh.size, meshers.length);
+            runner.run(taskCount, meshTask);
+            for (ChunkMesh chunkMesh : toMesh) {
+                quadCount -= chunkMesh.uploadedQuads;
+                chunkMesh.upload();
+                quadCount += chunkMesh.uploadedQuads;
+            }
+        }
+
+        visible.clear();
+        for (ChunkMesh chunkMesh : allMeshes)
+            if (chunkMesh.uploadedQuads > 0 && camera.frustum.boundsInFrustum(chunkMesh.bounds))
+                visible.add(chunkMesh);
+    }
+
+    private void meshChunks(int task) {
+        VoxelMesher mesher = meshers[task];
+        for (int i = task; i < toMesh.size; i += taskCount) {
+            ChunkMesh chunkMesh = toMesh.get(i);
+            chunkMesh.quads = mesher.mesh(world, chunkMesh.chunk, chunkMesh.vertices);
+        }
+    }
+
+    @Override
+    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool) {
+        for (ChunkMesh chunkMesh : visible) {
+            for (int part = 0; part < chunkMesh.meshes.size; part++) {
+                Renderable renderable = pool.obtain();
+                int quads = Math.min(MAX_QUADS_PER_MESH, chunkMesh.uploadedQuads - part * MAX_QUADS_PER_MESH);
+                renderable.meshPart.set("Chunk", chunkMesh.meshes.get(part), 0, quads * VoxelMesher.INDICES_PER_QUAD,
+                    GL20.GL_TRIANGLES);
+                renderable.worldTransform.set(chunkMesh.transform);
+                renderable.material = material;
+                renderable.environment = null;
+                renderable.userData = null;
+                renderable.shader = shader;
+                renderables.add(renderable);
+            }
+        }
+    }
+
+    /** @return chunks meshed again by the last update */
+    public int getChunksMeshed() {
+        return chunksMeshed;
+    }
+
+    /** @return chunks in view after the last update */
+    public int getVisibleChunks() {
+        return visible.size;
+    }
+
+    /** @return triangles of all the chunks */
+    public int getTriangleCount() {
+        return quadCount * 2;
+    }
+
+    /** @return triangles of the chunks in view */
+    public int getVisibleTriangleCount() {
+        int quads = 0;
+        for (ChunkMesh chunkMesh : visible)
+            quads += chunkMesh.uploadedQuads;
+        return quads * 2;
+    }
+
+    @Override
+    public void dispose() {
+        for (ChunkMesh chunkMesh : allMeshes)
+            for (Mesh mesh : chunkMesh.meshes)
+                mesh.dispose();
+        allMeshes.clear();
+        chunkMeshes.clear();
+        visible.clear();
+    }
+
+    private static class ChunkMesh {
+        final VoxelChunk chunk;
+        final FloatArray vertices = new FloatArray(false, 1024);
+        final Array<Mesh> meshes = new Array<>();
+        final Matrix4 transform = new Matrix4();
+        final BoundingBox bounds = new BoundingBox();
+        int quads, uploadedQuads;
+
+        ChunkMesh(VoxelChunk chunk, float voxelSize) {
+            this.chunk = chunk;
+            // voxel 0 of the chunk spans -0.5 to 0.5
+            float size = VoxelWorld.CHUNK_SIZE * voxelSize;
+            float x = (chunk.x * VoxelWorld.CHUNK_SIZE - 0.5f) * voxelSize;
+            float y = (chunk.y * VoxelWorld.CHUNK_SIZE - 0.5f) * voxelSize;
+            float z = (chunk.z * VoxelWorld.CHUNK_SIZE - 0.5f) * voxelSize;
+            transform.setToTranslation(x, y, z).scl(voxelSize);
+            bounds.set(bounds.min.set(x, y, z), bounds.max.set(x + size, y + size, z + size));
+        }
+
+        void upload() {
+            int parts = (quads + MAX_QUADS_PER_MESH - 1) / MAX_QUADS_PER_MESH;
+            while (meshes.size > parts)
+                meshes.pop().dispose();
+
+            int floatsPerQuad = VoxelMesher.VERTICES_PER_QUAD * VoxelMesher.FLOATS_PER_VERTEX;
+            for (int part = 0; part < parts; part++) {
+                int partQuads = Math.min(MAX_QUADS_PER_MESH, quads - part * MAX_QUADS_PER_MESH);
+                Mesh mesh = part < meshes.size ? meshes.get(part) : null;
+                if (mesh == null || mesh.getMaxVertices() < partQuads * VoxelMesher.VERTICES_PER_QUAD) {
+                    // room for the chunk to grow by half again before the mesh is created again
+                    int capacity = Math.min(MAX_QUADS_PER_MESH, partQuads * 3 / 2 + 1);
+                    if (mesh != null) mesh.dispose();
+                    mesh = new Mesh(false, capacity * VoxelMesher.VERTICES_PER_QUAD, capacity * VoxelMesher.INDICES_PER_QUAD,
+                        new VertexAttribute(Usage.Position, 3, "a_position"),
+                        new VertexAttribute(Usage.TextureCoordinates, 2, "a_texCoords0"),
+                        new VertexAttribute(Usage.Generic, 1, "a_shade"));
+                    mesh.setIndices(INDICES, 0, capacity * VoxelMesher.INDICES_PER_QUAD);
+                    if (part < meshes.size) meshes.set(part, mesh);
+                    else meshes.add(mesh);
+                }
+                mesh.setVertices(vertices.items, part * MAX_QUADS_PER_MESH * floatsPerQuad, partQuads * floatsPerQuad);
+            }
+            uploadedQuads = quads;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+
+/** Sparse grid of voxels split in {@link VoxelChunk chunks} of {@link #CHUNK_SIZE} cubed, only the chunks holding
+ * something are allocated. Voxel coordinates are integers, voxel (x, y, z) is the unit cube centered on that point.
+ *
+ * This is the source of truth of the voxel terrain: the chunks are palette compressed, so tens of millions of voxels
+ * fit in a few MB, and looking a voxel up is a map lookup and a shift. The instances to draw are derived from it, only
+ * the blocks with a face showing, see {@link #getExposed(InstanceStore, float)}, or the chunk meshes of
+ * {@link VoxelRenderer}.
+ *
+ * Changing a voxel marks its chunk dirty, and the neighbouring chunk too when the voxel is on the border, as the faces
+ * hidden between the two may now show. {@link VoxelRenderer} meshes the dirty chunks again. Like {@link InstanceStore},
+ * nothing here needs a GL context. */
+public class VoxelWorld {
+
+    public static final int CHUNK_BITS = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK_SIZE - 1;
+
+    private static final Quaternion IDENTITY = new Quaternion();
+
+    private final LongMap<VoxelChunk> chunks = new LongMap<>();
+    private final Array<VoxelChunk> chunkList = new Array<>(); // same chunks, in the order they were created
+
+    /** @return the voxel type, 0 for air */
+    public byte get(int x, int y, int z) {
+        VoxelChunk chunk = getChunk(x >> CHUNK_BITS, y >> CHUNK_BITS, z >> CHUNK_BITS);
+        return chunk == null ? 0 : chunk.get(x & MASK, y & MASK, z & MASK);
+    }
+
+    /** Sets a voxel, creating its chunk if needed.
+     * @param type 0 for air */
+    public void set(int x, int y, int z, byte type) {
+        int cx = x >> CHUNK_BITS, cy = y >> CHUNK_BITS, cz = z >> CHUNK_BITS;
+        VoxelChunk chunk = getChunk(cx, cy, cz);
+        if (chunk == null) {
+            if (type == 0) return;
+            chunk = new VoxelChunk(cx, cy, cz);
+            chunks.put(key(cx, cy, cz), chunk);
+            chunkList.add(chunk);
+        }
+        int lx = x & MASK, ly = y & MASK, lz = z & MASK;
+        if (!chunk.set(lx, ly, lz, type)) return;
+
+        // the faces between this voxel and the next chunk belong to both meshes
+        if (lx == 0) markDirty(cx - 1, cy, cz);
+        if (lx == MASK) markDirty(cx + 1, cy, cz);
+        if (ly == 0) markDirty(cx, cy - 1, cz);
+        if (ly == MASK) markDirty(cx, cy + 1, cz);
+        if (lz == 0) markDirty(cx, cy, cz - 1);
+        if (lz == MASK) markDirty(cx, cy, cz + 1);
+    }
+
+    private void markDirty(int cx, int cy, int cz) {
+        VoxelChunk chunk = getChunk(cx, cy, cz);
+        if (chunk != null) chunk.setDirty(true);
+    }
+
+    /** @param cx cy cz chunk coordinates, voxel coordinates shifted right by {@link #CHUNK_BITS}
+     * @return the chunk, or null if nothing was ever set in it */
+    public VoxelChunk getChunk(int cx, int cy, int cz) {
+        return chunks.get(key(cx, cy, cz));
+    }
+
+    /** @return the chunks in the order they were created, do not modify */
+    public Array<VoxelChunk> getChunks() {
+        return chunkList;
+    }
+
+    /** Adds the dirty chunks to the array and marks them clean. */
+    public void takeDirtyChunks(Array<VoxelChunk> out) {
+        for (VoxelChunk chunk : chunkList) {
+            if (!chunk.isDirty()) continue;
+            chunk.setDirty(false);
+            out.add(chunk);
+        }
+    }
+
+    /** Compacts the palette of every chunk, once the world is built, see {@link VoxelChunk#compact()}. */
+    public void compact() {
+        for (VoxelChunk chunk : chunkList)
+            chunk.compact();
+    }
+
+    /** @return whether the voxel is solid with at least one of its 6 neighbours air */
+    public boolean isExposed(int x, int y, int z) {
+        return get(x, y, z) != 0 && (get(x - 1, y, z) == 0 || get(x + 1, y, z) == 0 || get(x, y - 1, z) == 0
+            || get(x, y + 1, z) == 0 || get(x, y, z - 1) == 0 || get(x, y, z + 1) == 0);
+    }
+
+    /** @return solid voxels with at least one face showing, the instances {@link #getExposed(InstanceStore, float)}
+     * writes */
+    public int countExposed() {
+        return getExposed(null, 0);
+    }
+
+    /** Writes one unrotated cube instance per solid voxel with at least one face showing, the blocks buried under
+     * others are never drawn so they are not instanced.
+     * @param store null to only count them, else with room for {@link #countExposed()} instances
+     * @param spacing distance between neighbouring instances, the size of a voxel
+     * @return the number of instances */
+    public int getExposed(InstanceStore store, float spacing) {
+        int count = 0;
+        for (VoxelChunk chunk : chunkList) {
+            if (chunk.getSolidCount() == 0) continue;
+            int x0 = chunk.x << CHUNK_BITS, y0 = chunk.y << CHUNK_BITS, z0 = chunk.z << CHUNK_BITS;
+            for (int x = 0; x < CHUNK_SIZE; x++) {
+                for (int y = 0; y < CHUNK_SIZE; y++) {
+                    for (int z = 0; z < CHUNK_SIZE; z++) {
+                        if (!isExposed(chunk, x, y, z)) continue;
+                        if (store != null)
+                            store.set(count, (x0 + x) * spacing, (y0 + y) * spacing, (z0 + z) * spacing, IDENTITY, 1f);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // same as isExposed(int, int, int), without the map lookups inside the chunk
+    private boolean isExposed(VoxelChunk chunk, int x, int y, int z) {
+        if (chunk.get(x, y, z) == 0) return false;
+        if (x == 0 || y == 0 || z == 0 || x == MASK || y == MASK || z == MASK)
+            return isExposed((chunk.x << CHUNK_BITS) + x, (chunk.y << CHUNK_BITS) + y, (chunk.z << CHUNK_BITS) + z);
+        return chunk.get(x - 1, y, z) == 0 || chunk.get(x + 1, y, z) == 0 || chunk.get(x, y - 1, z) == 0
+            || chunk.get(x, y + 1, z) == 0 || chunk.get(x, y, z - 1) == 0 || chunk.get(x, y, z + 1) == 0;
+    }
+
+    /** @return voxels that are not air */
+    public long getSolidCount() {
+        long count = 0;
+        for (VoxelChunk chunk : chunkList)
+            count += chunk.getSolidCount();
+        return count;
+    }
+
+    /** @return heap bytes of the chunk palettes and voxels, without the map and chunk objects */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (VoxelChunk chunk : chunkList)
+            bytes += chunk.getMemoryBytes();
+        return bytes;
+    }
+
+    // 21 bits per coordinate, enough for a million chunks either way
+    private static long key(int cx, int cy, int cz) {
+        return ((long)(cx & 0x1FFFFF) << 42) | ((long)(cy & 0x1FFFFF) << 21) | (cz & 0x1FFFFF);
+    }
+}
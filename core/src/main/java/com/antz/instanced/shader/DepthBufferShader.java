@@ -1,6 +1,5 @@
 package com.antz.instanced.shader;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.Shader;
@@ -17,8 +16,9 @@ public class DepthBufferShader implements Shader {
 
         @Override
         public void init () {
-            String vert = Gdx.files.internal("shaders\\" + SHADER_NAME + ".vertex.glsl").readString();
-            String frag = Gdx.files.internal("shaders\\" + SHADER_NAME + ".fragment.glsl").readString();
+            // forward slashes, a backslash only finds the files on Windows
+            String vert = ShaderCache.getSource("shaders/" + SHADER_NAME + ".vertex.glsl");
+            String frag = ShaderCache.getSource("shaders/" + SHADER_NAME + ".fragment.glsl");
             program = new ShaderProgram(vert, frag);
             if (!program.isCompiled())
                 throw new GdxRuntimeException(program.getLog());
@@ -1,6 +1,7 @@
 package com.antz.instanced.shader;
 
-import com.badlogic.gdx.Gdx;
+import com.antz.instanced.InstanceClock;
+import com.antz.instanced.InstanceLayout;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.Shader;
 import com.badlogic.gdx.graphics.g3d.shaders.DepthShader;
@@ -11,10 +12,24 @@ import net.mgsx.gltf.scene3d.shaders.PBRShaderProvider;
 
 public class MyPBRDepthShaderProvider extends PBRDepthShaderProvider {
 
+    private final InstanceClock clock;
+    private final ShaderCache cache;
 
     public MyPBRDepthShaderProvider() {
+        this(null);
+    }
+
+    /** @param clock time of the animated instances, for the u_time uniform, may be null */
+    public MyPBRDepthShaderProvider(InstanceClock clock) {
+        this(clock, ShaderCache.DEFAULT);
+    }
 
+    /** @param clock time of the animated instances, for the u_time uniform, may be null
+     * @param cache shares the shaders with the other providers, null to compile every shader here */
+    public MyPBRDepthShaderProvider(InstanceClock clock, ShaderCache cache) {
         super(PBRShaderProvider.createDefaultDepthConfig());
+        this.clock = clock;
+        this.cache = cache;
     }
 
     @Override
@@ -25,9 +40,19 @@ public class MyPBRDepthShaderProvider extends PBRDepthShaderProvider {
         String prefix = DepthShader.createPrefix(renderable, config) + morphTargetsPrefix(renderable);
         if( renderable.meshPart.mesh.isInstanced()) {
             prefix += "#define instanced\n";
+            prefix += InstanceLayout.of(renderable.meshPart.mesh).getShaderDefines();
+        }
+        config.vertexShader = ShaderCache.getSource("shaders/depth.vs.glsl");
+        if (cache == null) return new MyPBRDepthShader(renderable, config, prefix, clock);
+
+        // a shader reads the time of the clock it was made with
+        String key = ShaderCache.key(prefix, config.vertexShader, config.fragmentShader) + "@" + System.identityHashCode(clock);
+        Shader shader = cache.obtain(key, renderable);
+        if (shader == null) {
+            shader = new MyPBRDepthShader(renderable, config, prefix, clock, cache);
+            cache.add(key, shader);
         }
-        config.vertexShader = Gdx.files.internal("shaders/depth.vs.glsl").readString();
-        return new MyPBRDepthShader(renderable, config, prefix );
+        return shader;
     }
 
 
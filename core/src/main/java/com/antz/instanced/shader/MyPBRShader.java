@@ -1,16 +1,58 @@
 package com.antz.instanced.shader;
 
+import com.antz.instanced.InstanceClock;
+import com.antz.instanced.InstanceLayout;
+import com.badlogic.gdx.graphics.g3d.Attributes;
 import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.shaders.BaseShader;
 
 import net.mgsx.gltf.scene3d.shaders.PBRShader;
 
 public class MyPBRShader extends PBRShader {
 
     private boolean isInstancedShader;
+    private InstanceLayout instanceLayout;
+    private final ShaderCache cache;
+    private boolean initialized;
 
     public MyPBRShader(Renderable renderable, Config config, String prefix) {
+        this(renderable, config, prefix, null);
+    }
+
+    /** @param clock time of the animated instances, for the u_time uniform, may be null */
+    public MyPBRShader(Renderable renderable, Config config, String prefix, final InstanceClock clock) {
+        this(renderable, config, prefix, clock, null);
+    }
+
+    /** @param clock time of the animated instances, for the u_time uniform, may be null
+     * @param cache the cache sharing this shader between providers, its program is disposed with the last of them,
+     *              may be null */
+    public MyPBRShader(Renderable renderable, Config config, String prefix, final InstanceClock clock, ShaderCache cache) {
         super(renderable, config, prefix);
+        this.cache = cache;
+        if (clock != null) {
+            register(new Uniform("u_time"), new GlobalSetter() {
+                @Override
+                public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+                    shader.set(inputID, clock.getTime());
+                }
+            });
+        }
         isInstancedShader = renderable.meshPart.mesh.isInstanced();
+        instanceLayout = InstanceLayout.of(renderable.meshPart.mesh);
+    }
+
+    // a shared shader is handed to every provider using it, and each of them inits it
+    @Override
+    public void init() {
+        if (initialized) return;
+        initialized = true;
+        super.init();
+    }
+
+    @Override
+    public void dispose() {
+        if (cache == null || cache.release(this)) super.dispose();
     }
 
     @Override
@@ -18,6 +60,9 @@ public class MyPBRShader extends PBRShader {
         if(renderable.meshPart.mesh.isInstanced() != isInstancedShader ) {
             return false;
         }
+        if(InstanceLayout.of(renderable.meshPart.mesh) != instanceLayout) {
+            return false;
+        }
         return super.canRender(renderable);
     }
 }
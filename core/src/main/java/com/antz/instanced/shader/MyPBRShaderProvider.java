@@ -1,5 +1,7 @@
 package com.antz.instanced.shader;
 
+import com.antz.instanced.InstanceClock;
+import com.antz.instanced.InstanceLayout;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g3d.Renderable;
@@ -9,8 +11,24 @@ import net.mgsx.gltf.scene3d.shaders.PBRShaderConfig;
 import net.mgsx.gltf.scene3d.shaders.PBRShaderProvider;
 
 public class MyPBRShaderProvider extends PBRShaderProvider {
+    private final InstanceClock clock;
+    private final ShaderCache cache;
+
     public MyPBRShaderProvider() {
+        this(null);
+    }
+
+    /** @param clock time of the animated instances, for the u_time uniform, may be null */
+    public MyPBRShaderProvider(InstanceClock clock) {
+        this(clock, ShaderCache.DEFAULT);
+    }
+
+    /** @param clock time of the animated instances, for the u_time uniform, may be null
+     * @param cache shares the shaders with the other providers, null to compile every shader here */
+    public MyPBRShaderProvider(InstanceClock clock, ShaderCache cache) {
         super(PBRShaderProvider.createDefaultConfig());
+        this.clock = clock;
+        this.cache = cache;
     }
 
     // override this to force #version 140, needed for the inverse() built-in
@@ -29,9 +47,19 @@ public class MyPBRShaderProvider extends PBRShaderProvider {
     protected PBRShader createShader(Renderable renderable, PBRShaderConfig config, String prefix){
         if( renderable.meshPart.mesh.isInstanced()) {
             prefix += "#define instanced\n";
+            prefix += InstanceLayout.of(renderable.meshPart.mesh).getShaderDefines();
+        }
+        config.vertexShader = ShaderCache.getSource("shaders/pbr/pbr.vs.glsl");
+        if (cache == null) return new MyPBRShader(renderable, config, prefix, clock);
+
+        // a shader reads the time of the clock it was made with
+        String key = ShaderCache.key(prefix, config.vertexShader, config.fragmentShader) + "@" + System.identityHashCode(clock);
+        PBRShader shader = (PBRShader)cache.obtain(key, renderable);
+        if (shader == null) {
+            shader = new MyPBRShader(renderable, config, prefix, clock, cache);
+            cache.add(key, shader);
         }
-        config.vertexShader = Gdx.files.internal("shaders/pbr/pbr.vs.glsl").readString();
-        return new MyPBRShader(renderable, config, prefix);
+        return shader;
     }
 
 }
@@ -0,0 +1,91 @@
+package com.antz.instanced.shader;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/** Shader sources read once, and shaders shared by the providers, so each permutation (instanced or not, instance
+ * layout, material and vertex attributes) is compiled once, whatever the number of renderables, providers or screens.
+ *
+ * A shader provider only reuses its own shaders, and the gdx-gltf shaders compile their program in their constructor,
+ * so it is the whole shader that is shared here: one shader is one compiled program. The key is the final prefix and
+ * the hashes of the sources, see {@link #key(String, String, String)}. Shaders are counted by the providers holding
+ * them, {@link #release(Shader)} tells when the last one disposed it and the program can go.
+ *
+ * The cache is not thread safe, shaders are only made and disposed on the GL thread. */
+public class ShaderCache {
+
+    /** Shared by the PBR shader providers of all the screens. */
+    public static final ShaderCache DEFAULT = new ShaderCache();
+
+    private static final ObjectMap<String, String> sources = new ObjectMap<>();
+
+    private final ObjectMap<String, Shader> shaders = new ObjectMap<>();
+    private final ObjectIntMap<Shader> references = new ObjectIntMap<>();
+    private int hits, misses;
+
+    /** @return the text of the internal file, read on the first call only */
+    public static String getSource(String path) {
+        String source = sources.get(path);
+        if (source == null) {
+            source = Gdx.files.internal(path).readString();
+            sources.put(path, source);
+        }
+        return source;
+    }
+
+    /** @return the key of a shader made from these, the sources may be null for the defaults */
+    public static String key(String prefix, String vertexShader, String fragmentShader) {
+        return prefix + "//" + (vertexShader == null ? 0 : vertexShader.hashCode())
+            + ":" + (fragmentShader == null ? 0 : fragmentShader.hashCode());
+    }
+
+    /** @return the shader of the key if it can render the renderable, held once more until {@link #release(Shader)},
+     * or null if it has to be made, see {@link #add(String, Shader)} */
+    public Shader obtain(String key, Renderable renderable) {
+        Shader shader = shaders.get(key);
+        if (shader == null || !shader.canRender(renderable)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        references.getAndIncrement(shader, 0, 1);
+        return shader;
+    }
+
+    /** Shares the shader made for the key, held once. If another shader of the key is cached, one that could not
+     * render the renderable, this one stays the caller's. */
+    public void add(String key, Shader shader) {
+        if (shaders.containsKey(key)) return;
+        shaders.put(key, shader);
+        references.put(shader, 1);
+    }
+
+    /** Called by the shaders when disposed.
+     * @return true if the shader is not held anymore, or was never cached: it can dispose its program */
+    public boolean release(Shader shader) {
+        if (!references.containsKey(shader)) return true;
+        int count = references.getAndIncrement(shader, 0, -1) - 1;
+        if (count > 0) return false;
+        references.remove(shader, 0);
+        shaders.remove(shaders.findKey(shader, true));
+        return true;
+    }
+
+    /** @return shaders found in the cache */
+    public int getHits() {
+        return hits;
+    }
+
+    /** @return shaders not found, the programs compiled */
+    public int getMisses() {
+        return misses;
+    }
+
+    /** @return shaders held */
+    public int getSize() {
+        return shaders.size;
+    }
+}
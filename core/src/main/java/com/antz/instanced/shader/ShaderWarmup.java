@@ -0,0 +1,90 @@
+package com.antz.instanced.shader;
+
+import com.antz.instanced.InstanceLayout;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Attributes;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.OrderedMap;
+import com.badlogic.gdx.utils.Pool;
+
+/** The shader permutations a scene needs, one renderable of each, to compile their shaders while loading instead of
+ * on the first frame each shows up in: the providers make the shaders lazily, the first time a renderable needs one.
+ *
+ * A permutation is what the prefix of the PBR shaders is made from, apart from the environment which is the same for
+ * every renderable of a pass: the vertex attributes, the material attributes, and whether the mesh is instanced and
+ * with which {@link InstanceLayout} ({@code #define instanced} and the layout defines). Add the models of the scene,
+ * then draw a frame with this as the only renderable provider of the {@code SceneManager}: every shadow and color
+ * pass, with its lights and skybox, compiles what it will need.
+ *
+ * Renderables of the same permutation could still need different shaders, with textures on other uv sets for example,
+ * only the first one is kept. */
+public class ShaderWarmup implements RenderableProvider {
+
+    private final OrderedMap<String, Renderable> permutations = new OrderedMap<>();
+    private final Array<Renderable> renderables = new Array<>();
+    private final Pool<Renderable> pool = new Pool<Renderable>() {
+        @Override
+        protected Renderable newObject() {
+            return new Renderable();
+        }
+    };
+
+    /** Adds the permutations of the renderables of the provider, a model instance for example. */
+    public void add(RenderableProvider provider) {
+        provider.getRenderables(renderables, pool);
+        for (Renderable renderable : renderables)
+            add(renderable);
+        pool.freeAll(renderables);
+        renderables.clear();
+    }
+
+    /** @return true if the renderable is of a new permutation, kept as a copy */
+    public boolean add(Renderable renderable) {
+        Mesh mesh = renderable.meshPart.mesh;
+        return add(key(mesh.getVertexAttributes(), mesh.getInstancedAttributes(), renderable.material), renderable);
+    }
+
+    /** @param key the permutation of the renderable, see {@link #key(VertexAttributes, VertexAttributes, Attributes)}
+     * @return true if the permutation is new and the renderable kept as a copy */
+    public boolean add(String key, Renderable renderable) {
+        if (permutations.containsKey(key)) return false;
+        Renderable copy = new Renderable().set(renderable);
+        copy.shader = null; // the providers pick the shader
+        copy.environment = null;
+        permutations.put(key, copy);
+        return true;
+    }
+
+    /** @param vertexAttributes attributes of the vertices of the mesh
+     * @param instancedAttributes attributes of the instances, null if the mesh is not instanced
+     * @param material attributes of the material, their types only
+     * @return the permutation of a renderable with these */
+    public static String key(VertexAttributes vertexAttributes, VertexAttributes instancedAttributes, Attributes material) {
+        String instancing = instancedAttributes == null ? "none" : InstanceLayout.of(instancedAttributes).name();
+        return vertexAttributes.getMaskWithSizePacked() + "/" + instancing + "/" + material.getMask();
+    }
+
+    /** @return the permutations added */
+    public int getPermutationCount() {
+        return permutations.size;
+    }
+
+    /** @return the permutations, in the order they were added */
+    public Array<String> getKeys() {
+        return permutations.orderedKeys();
+    }
+
+    public void clear() {
+        permutations.clear();
+    }
+
+    /** One renderable of every permutation. */
+    @Override
+    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool) {
+        for (Renderable renderable : permutations.values())
+            renderables.add(pool.obtain().set(renderable));
+    }
+}
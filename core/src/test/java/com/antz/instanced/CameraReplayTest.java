@@ -0,0 +1,70 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** The benchmark camera path over the box field, with the camera and culling of the Basic screen: the instance totals
+ * only depend on the path, the seed and the field, a change in them means the culling or the update changed. */
+public class CameraReplayTest {
+
+    private static final int SIDE = 29;
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Test
+    public void replaysTheSameTotals() {
+        long[] totals = replay(new SerialTaskRunner());
+        assertEquals("frames", 1681, totals[0]);
+        assertEquals("instances updated", 181020, totals[1]);
+        assertEquals("instances tested", 3680589, totals[2]);
+    }
+
+    @Test
+    public void replaysTheSameTotalsInParallel() {
+        ForkJoinTaskRunner runner = new ForkJoinTaskRunner(4);
+        try {
+            assertArrayEquals(replay(new SerialTaskRunner()), replay(runner));
+        } finally {
+            runner.dispose();
+        }
+    }
+
+    // the replay of HeadlessReplay, tests run from the assets folder
+    private static long[] replay(TaskRunner runner) {
+        CameraReplay replay = new CameraReplay(CameraPath.load(new FileHandle(CameraReplay.DEFAULT_PATH)), 1 / 60f, 42);
+        int instanceCount = SIDE * SIDE * SIDE;
+        float size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+
+        PerspectiveCamera camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 2f;
+
+        InstanceStore store = new InstanceStore(instanceCount);
+        replay.seedRandom();
+        float spacing = InstanceFields.boxField(store, SIDE);
+        InstanceBuffer instances = new InstanceBuffer(null, instanceCount, 16);
+        InstanceUpdater updater = new InstanceUpdater(store, runner, Vector3.X, Vector3.Y);
+        updater.setCulling(size * 2, camera.far * 0.25f);
+        updater.setGrid(new InstanceGrid(store, 8f * spacing));
+
+        long updated = 0, tested = 0;
+        while (!replay.isFinished()) {
+            float delta = replay.step(camera, Vector3.Zero, 1f);
+            updated += updater.update(camera, 45 * delta, instances);
+            tested += updater.getInstancesTested();
+            instances.clearDirty();
+        }
+        return new long[] {replay.getFrame(), updated, tested};
+    }
+}
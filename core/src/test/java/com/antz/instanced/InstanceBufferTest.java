@@ -0,0 +1,175 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** What {@link InstanceBuffer#flush()} sends: the ranges it merges the dirty instances into, when it sends everything
+ * instead, and the counters of the last flush. */
+public class InstanceBufferTest {
+
+    private static final int FLOATS = 16;
+    private static final int BYTES = FLOATS * 4;
+
+    private RecordingMesh mesh;
+    private InstanceBuffer buffer;
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // the vertex array of the mesh is a native buffer
+    }
+
+    @Before
+    public void setUp() {
+        mesh = new RecordingMesh();
+        mesh.enableInstancedRendering(true, 1000, InstanceLayout.MATRIX.createAttributes());
+        buffer = new InstanceBuffer(mesh, 1000, FLOATS);
+        buffer.uploadAll();
+        mesh.clearRecord();
+    }
+
+    @Test
+    public void mergesDirtyInstancesSeparatedByUpToTheGap() {
+        buffer.setMergeGap(8);
+        buffer.markDirty(10);
+        buffer.markDirty(15);   // 4 clean instances after 10
+        buffer.markDirty(100);
+        buffer.markDirty(109);  // 8 clean instances after 100
+        buffer.markDirty(200);  // too far from 109
+
+        assertEquals(3, buffer.flush());
+        assertEquals(3, buffer.getRangesFlushed());
+        assertFalse(buffer.wasFullUpload());
+        assertEquals((6 + 10 + 1) * BYTES, buffer.getBytesUploaded());
+        assertArrayEquals(new int[] {10 * FLOATS, 100 * FLOATS, 200 * FLOATS}, mesh.rangeOffsets.toArray());
+        assertArrayEquals(new int[] {6 * FLOATS, 10 * FLOATS, FLOATS}, mesh.rangeCounts.toArray());
+        assertEquals(0, buffer.getDirtyCount());
+    }
+
+    @Test
+    public void sortsAndMergesInstancesMarkedOutOfOrder() {
+        buffer.setMergeGap(0);
+        buffer.markDirty(7);
+        buffer.markDirty(3);
+        buffer.markDirty(5, 7);
+        buffer.markDirty(3);
+        buffer.markDirty(4);
+
+        assertEquals(1, buffer.flush());
+        assertEquals(5 * BYTES, buffer.getBytesUploaded()); // 3 to 7, each once
+    }
+
+    @Test
+    public void sendsEverythingOnceEnoughIsDirty() {
+        buffer.setMergeGap(0);
+        buffer.setFullUploadFraction(0.5f);
+
+        // every other instance of the first 998: 499 ranges, just under half of the buffer
+        for (int i = 0; i < 998; i += 2)
+            buffer.markDirty(i);
+        assertEquals(499, buffer.flush());
+        assertFalse(buffer.wasFullUpload());
+        assertEquals(499L * BYTES, buffer.getBytesUploaded());
+        assertEquals(0, mesh.fullUploads);
+
+        for (int i = 0; i < 1000; i += 2)
+            buffer.markDirty(i);
+        assertEquals(1, buffer.flush());
+        assertTrue(buffer.wasFullUpload());
+        assertEquals(1000L * BYTES, buffer.getBytesUploaded());
+        assertEquals(1, mesh.fullUploads);
+    }
+
+    @Test
+    public void dropsDirtyInstancesPastTheDrawCount() {
+        buffer.setDrawCount(100);
+        buffer.flush();
+        mesh.clearRecord();
+
+        buffer.markDirty(5);
+        buffer.markDirty(150);
+        buffer.markDirty(300);
+        assertEquals(1, buffer.flush());
+        assertEquals(BYTES, buffer.getBytesUploaded());
+        assertArrayEquals(new int[] {5 * FLOATS}, mesh.rangeOffsets.toArray());
+
+        buffer.markDirty(100);
+        buffer.markDirty(999);
+        assertEquals(0, buffer.flush());
+        assertEquals(0, buffer.getBytesUploaded());
+        assertEquals(0, buffer.getDirtyCount());
+    }
+
+    @Test
+    public void sendsTheDrawnInstancesAfterTheDrawCountChanged() {
+        buffer.markDirty(3);
+        buffer.setDrawCount(50);
+        assertEquals(1, buffer.flush());
+        assertTrue(buffer.wasFullUpload());
+        assertEquals(50L * BYTES, buffer.getBytesUploaded());
+        assertEquals(50, mesh.drawnInstances);
+        assertEquals(0, mesh.rangeOffsets.size);
+
+        // nothing changed since
+        assertEquals(0, buffer.flush());
+        assertFalse(buffer.wasFullUpload());
+        assertEquals(0, buffer.getBytesUploaded());
+
+        // the same count again is no change
+        buffer.setDrawCount(50);
+        buffer.markDirty(3);
+        assertEquals(1, buffer.flush());
+        assertFalse(buffer.wasFullUpload());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsADrawCountPastTheInstances() {
+        buffer.setDrawCount(1001);
+    }
+
+    @Test
+    public void countsTheBytesOfEveryMesh() {
+        RecordingMesh second = new RecordingMesh();
+        second.enableInstancedRendering(true, 1000, InstanceLayout.MATRIX.createAttributes());
+        buffer.addMesh(second);
+        buffer.getData()[42 * FLOATS] = 1f;
+        buffer.markDirty(42);
+
+        assertEquals(1, buffer.flush());
+        assertEquals(2L * BYTES, buffer.getBytesUploaded());
+        assertEquals(1f, mesh.instanceData[42 * FLOATS], 0f);
+        assertEquals(1f, second.instanceData[42 * FLOATS], 0f);
+    }
+
+    @Test
+    public void countsRangesWithoutAMesh() {
+        InstanceBuffer headless = new InstanceBuffer(null, 1000, FLOATS);
+        headless.markDirty(1);
+        headless.markDirty(500);
+        assertEquals(2, headless.flush());
+        assertEquals(0, headless.getBytesUploaded()); // copied to no mesh
+    }
+
+    @Test
+    public void packsTheDirtyInstancesFromTheSource() {
+        InstanceStore store = new InstanceStore(1000);
+        buffer.setSource(store, InstanceLayout.MATRIX);
+        store.set(7, 1, 2, 3, new Quaternion(), 1f);
+        buffer.markDirty(7);
+        buffer.flush();
+
+        float[] expected = new float[FLOATS];
+        InstanceLayout.MATRIX.pack(store, 7, expected, 0);
+        float[] sent = new float[FLOATS];
+        System.arraycopy(mesh.instanceData, 7 * FLOATS, sent, 0, FLOATS);
+        assertArrayEquals(expected, sent, 0f);
+    }
+}
@@ -0,0 +1,94 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The shadow casters of the zebra field of the PBR screen: the instances an {@link InstanceCompactor} packs over the
+ * {@link InstanceGrid} for the light camera of every shadow cascade, against testing every instance. */
+public class InstanceCompactorTest {
+
+    private static final float SIZE = 2, SEPARATION = 9;
+    private static final int SIDE = 29, CASCADES = 3, MAP_SIZE = 2048;
+    private static final InstanceLayout LAYOUT = InstanceLayout.COMPACT;
+
+    private final Vector3 lightDirection = new Vector3(1, -1, 1).nor();
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Test
+    public void packsTheCastersBruteForceFinds() {
+        MathUtils.random.setSeed(42);
+        InstanceStore store = new InstanceStore(SIDE * SIDE * SIDE);
+        float spacing = InstanceFields.modelField(store, SIDE, SIZE * SEPARATION);
+        RecordingMesh mesh = new RecordingMesh();
+        mesh.enableInstancedRendering(false, store.getCount(), LAYOUT.createAttributes());
+        InstanceCompactor casters = new InstanceCompactor(mesh, store, LAYOUT);
+        casters.setGrid(new InstanceGrid(store, 8f * spacing));
+
+        PerspectiveCamera camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.1f;
+        camera.far = SIDE * SEPARATION * SIZE * 2;
+        ShadowCascades cascades = new ShadowCascades(CASCADES, MAP_SIZE);
+        cascades.setCasterDistance(100);
+        OrthographicCamera light = new OrthographicCamera();
+
+        RandomXS128 random = new RandomXS128(42);
+        float fieldSize = SIDE * spacing;
+        long casterSum = 0;
+        for (int n = 0; n < 20; n++) {
+            camera.position.set(random.nextFloat(), random.nextFloat(), random.nextFloat()).scl(fieldSize);
+            camera.direction.set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).nor();
+            camera.up.set(Vector3.Y);
+            camera.update();
+            cascades.update(camera, 20 * SEPARATION * SIZE, lightDirection);
+            for (int i = 0; i < CASCADES; i++) {
+                fitLight(light, cascades, i);
+                int count = casters.compact(light.frustum, SIZE * 2);
+                checkCasters(store, light, count, casters.getData());
+                if (count > 0) assertEquals(count, mesh.drawnInstances);
+                casterSum += count;
+            }
+        }
+        assertTrue(casterSum > 0);
+        assertTrue(casterSum / (20 * CASCADES) < store.getCount() / 2); // a small share of the field per shadow map
+    }
+
+    // the light camera as DirectionalShadowLight#validate() places it
+    private void fitLight(OrthographicCamera light, ShadowCascades cascades, int cascade) {
+        float depth = cascades.getDepth(cascade);
+        light.viewportWidth = light.viewportHeight = cascades.getSize(cascade);
+        light.near = 0;
+        light.far = depth;
+        light.position.set(lightDirection).scl(-depth / 2).add(cascades.getCenter(cascade));
+        light.direction.set(lightDirection);
+        light.up.set(Vector3.Y);
+        light.normalizeUp();
+        light.update();
+    }
+
+    // the same instances in the order of the store
+    private static void checkCasters(InstanceStore store, OrthographicCamera light, int count, float[] packed) {
+        Vector3 position = new Vector3();
+        int expected = 0;
+        for (int i = 0; i < store.getCount(); i++) {
+            if (!light.frustum.sphereInFrustum(store.getPosition(i, position), SIZE * 2)) continue;
+            int p = expected++ * LAYOUT.floatsPerInstance; // i_posScale comes first
+            assertTrue("caster " + (expected - 1) + " should be instance " + i, expected <= count
+                && packed[p] == position.x && packed[p + 1] == position.y && packed[p + 2] == position.z);
+        }
+        assertEquals(expected, count);
+    }
+}
@@ -0,0 +1,66 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Culling with an {@link InstanceGrid} against testing every instance, with the camera of the Basic screen looking
+ * from inside the box field. */
+public class InstanceGridTest {
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Test
+    public void updatesTheSameInstancesAsBruteForce() {
+        MathUtils.random.setSeed(42);
+        int side = 29, instanceCount = side * side * side;
+        float size = 1f / (float)Math.sqrt(instanceCount) * 0.95f;
+
+        PerspectiveCamera camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 2f;
+
+        InstanceStore gridStore = new InstanceStore(instanceCount);
+        InstanceFields.boxField(gridStore, side);
+        InstanceGrid grid = new InstanceGrid(gridStore, 8f / (side * 0.5f)); // sorts the store by cell
+
+        // same instances in the same order, culled one by one
+        InstanceStore store = new InstanceStore(instanceCount);
+        System.arraycopy(gridStore.positions, 0, store.positions, 0, store.positions.length);
+        System.arraycopy(gridStore.rotations, 0, store.rotations, 0, store.rotations.length);
+
+        InstanceBuffer instances = new InstanceBuffer(null, instanceCount, 16);
+        InstanceUpdater bruteForce = new InstanceUpdater(store, new SerialTaskRunner(), Vector3.X, Vector3.Y);
+        bruteForce.setCulling(size * 2, camera.far * 0.25f);
+        InstanceUpdater gridded = new InstanceUpdater(gridStore, new SerialTaskRunner(), Vector3.X, Vector3.Y);
+        gridded.setCulling(size * 2, camera.far * 0.25f);
+        gridded.setGrid(grid);
+
+        for (int i = 0; i < 32; i++) {
+            camera.direction.set(MathUtils.random(-1f, 1f), MathUtils.random(-1f, 1f), MathUtils.random(-1f, 1f)).nor();
+            camera.up.set(Vector3.Y);
+            camera.update();
+
+            int expected = bruteForce.update(camera, 45 / 60f, instances);
+            instances.clearDirty();
+            int actual = gridded.update(camera, 45 / 60f, instances);
+            instances.clearDirty();
+
+            assertEquals("direction " + i, expected, actual);
+            assertTrue(expected > 0);
+            assertTrue(gridded.getInstancesTested() < bruteForce.getInstancesTested());
+            assertArrayEquals("direction " + i, store.rotations, gridStore.rotations, 0f);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The floats of every {@link InstanceLayout} against {@link Matrix4#set(Vector3, Quaternion, Vector3)}: the matrix
+ * layout float for float, the compact one by transforming a point the way the vertex shaders do. The spin of the
+ * animated layout against rotating the instances on the CPU frame by frame. */
+public class InstanceLayoutTest {
+
+    private InstanceStore store;
+
+    @Before
+    public void setUp() {
+        MathUtils.random.setSeed(42);
+        store = new InstanceStore(29 * 29 * 29);
+        InstanceFields.boxField(store, 29);
+        for (int i = 0; i < store.getCount(); i++)
+            store.scales[i] = 0.5f + MathUtils.random(); // the box field has the same scale everywhere
+    }
+
+    @Test
+    public void packsTheMatrixOfMatrix4() {
+        Matrix4 expected = new Matrix4();
+        float[] packed = new float[16];
+        for (int i = 0; i < store.getCount(); i += 97) {
+            setMatrix(i, expected);
+            InstanceLayout.MATRIX.pack(store, i, packed, 0);
+            assertArrayEquals("instance " + i, expected.val, packed, 1e-6f);
+        }
+    }
+
+    @Test
+    public void packsWhatTransformsLikeMatrix4() {
+        Matrix4 expected = new Matrix4();
+        Quaternion q = new Quaternion();
+        Vector3 point = new Vector3(0.3f, -0.7f, 0.5f), fromMatrix = new Vector3(), fromCompact = new Vector3();
+        for (InstanceLayout layout : new InstanceLayout[] {InstanceLayout.COMPACT, InstanceLayout.ANIMATED}) {
+            float[] packed = new float[layout.floatsPerInstance];
+            for (int i = 0; i < store.getCount(); i += 97) {
+                setMatrix(i, expected);
+                layout.pack(store, i, packed, 0);
+
+                // what the vertex shaders do with i_posScale and i_rotation
+                fromMatrix.set(point).mul(expected);
+                q.set(packed[4], packed[5], packed[6], packed[7]);
+                q.transform(fromCompact.set(point).scl(packed[3])).add(packed[0], packed[1], packed[2]);
+                assertTrue(layout + " instance " + i + ": " + fromCompact + " instead of " + fromMatrix,
+                    fromCompact.epsilonEquals(fromMatrix, 1e-5f));
+            }
+        }
+    }
+
+    @Test
+    public void spinsLikeTheCpuRotation() {
+        InstanceFields.alternateSpins(store, Vector3.X, Vector3.Y, 45);
+        InstanceStore cpu = new InstanceStore(store.getCount());
+        System.arraycopy(store.rotations, 0, cpu.rotations, 0, store.rotations.length);
+
+        // 10 seconds of 60 fps frames of InstanceUpdater
+        Quaternion rotationX = new Quaternion(Vector3.X, 45 / 60f), rotationY = new Quaternion(Vector3.Y, 45 / 60f);
+        for (int frame = 0; frame < 600; frame++) {
+            for (int i = 0; i < cpu.getCount(); i += 97)
+                cpu.rotate(i, (i & 1) == 0 ? rotationX : rotationY);
+        }
+
+        Quaternion expected = new Quaternion(), actual = new Quaternion();
+        for (int i = 0; i < store.getCount(); i += 97) {
+            cpu.getRotation(i, expected);
+            store.getRotation(i, 10f, actual);
+            // q and -q are the same rotation
+            assertEquals("instance " + i, 1f, Math.abs(expected.dot(actual)), 1e-4f);
+        }
+    }
+
+    private void setMatrix(int index, Matrix4 out) {
+        float scale = store.scales[index];
+        out.set(store.getPosition(index, new Vector3()), store.getRotation(index, new Quaternion()),
+            new Vector3(scale, scale, scale));
+    }
+}
@@ -0,0 +1,227 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The levels of an {@link InstanceLod} over a small box field, with a camera in front of it that sees every cell,
+ * against the level each cell gets from the distance to the bounds of its instances. */
+public class InstanceLodTest {
+
+    private static final int SIDE = 15;
+    private static final float NEAR_LEVEL = 2.5f, MIDDLE_LEVEL = 3.2f;
+    private static final InstanceLayout LAYOUT = InstanceLayout.COMPACT;
+
+    private InstanceStore store;
+    private InstanceGrid grid;
+    private float[] bounds;             // of the instances of every cell, computed here
+    private PerspectiveCamera camera;
+    private float radius;
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Before
+    public void setUp() {
+        MathUtils.random.setSeed(42);
+        store = new InstanceStore(SIDE * SIDE * SIDE);
+        float spacing = InstanceFields.boxField(store, SIDE);
+        grid = new InstanceGrid(store, 4f * spacing);
+        radius = spacing / 2;
+
+        bounds = new float[grid.getCellCount() * 6];
+        Vector3 position = new Vector3();
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            int b = cell * 6;
+            bounds[b] = bounds[b + 1] = bounds[b + 2] = Float.MAX_VALUE;
+            bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = -Float.MAX_VALUE;
+            for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+                store.getPosition(i, position);
+                bounds[b] = Math.min(bounds[b], position.x);
+                bounds[b + 1] = Math.min(bounds[b + 1], position.y);
+                bounds[b + 2] = Math.min(bounds[b + 2], position.z);
+                bounds[b + 3] = Math.max(bounds[b + 3], position.x);
+                bounds[b + 4] = Math.max(bounds[b + 4], position.y);
+                bounds[b + 5] = Math.max(bounds[b + 5], position.z);
+            }
+        }
+
+        // wide enough to see the whole field from 2 in front of it on
+        camera = new PerspectiveCamera(100, 1000, 1000);
+        camera.near = 0.01f;
+        camera.far = 100f;
+        camera.direction.set(Vector3.Z);
+        camera.up.set(Vector3.Y);
+    }
+
+    @Test
+    public void splitsTheCellsByDistanceAndSendsOnlyTheLevelsThatChanged() {
+        RecordingMesh[] meshes = {new RecordingMesh(), new RecordingMesh(), new RecordingMesh()};
+        InstanceLod lod = createLod(meshes, store.getCount());
+        lod.setHysteresis(0);
+
+        // towards the field across both boundaries, and back
+        int[] previous = null;
+        for (int step = 0; step <= 80; step++) {
+            moveCamera(-2 - Math.abs(step - 40) * 0.05f);
+            for (RecordingMesh mesh : meshes)
+                mesh.clearRecord();
+            lod.update(camera, radius, false);
+
+            int[] levels = getLevels(1);
+            int[] counts = countLevels(levels);
+            assertEquals(store.getCount(), lod.getVisibleCount());
+            for (int level = 0; level < meshes.length; level++) {
+                assertEquals("step " + step + " level " + level, counts[level], lod.getCount(level));
+                boolean changed = previous == null || levelChanged(previous, levels, level);
+                assertEquals("step " + step + " level " + level + " sent", changed && counts[level] > 0,
+                    meshes[level].fullUploads == 1);
+                if (counts[level] > 0) assertPacked(meshes[level], levels, level);
+            }
+            previous = levels;
+        }
+
+        // standing still sends nothing, instances that moved send every level
+        for (RecordingMesh mesh : meshes)
+            mesh.clearRecord();
+        lod.update(camera, radius, false);
+        assertEquals(0, lod.getCellsChanged());
+        for (RecordingMesh mesh : meshes)
+            assertEquals(0, mesh.fullUploads);
+        lod.update(camera, radius, true);
+        for (int level = 0; level < meshes.length; level++)
+            assertEquals(lod.getCount(level) > 0 ? 1 : 0, meshes[level].fullUploads);
+    }
+
+    @Test
+    public void keepsTheCellsInTheHysteresisBand() {
+        RecordingMesh[] meshes = {new RecordingMesh(), new RecordingMesh(), new RecordingMesh()};
+        InstanceLod lod = createLod(meshes, store.getCount());
+        float hysteresis = 0.1f;
+        lod.setHysteresis(hysteresis);
+
+        // moving away, a cell only goes to the next level once past the boundary by the band
+        for (int step = 0; step <= 40; step++) {
+            moveCamera(-2 - step * 0.05f);
+            lod.update(camera, radius, false);
+            int near = lod.getCount(0);
+            assertTrue(step + ": " + near, near >= countLevels(getLevels(1))[0]);
+            assertTrue(step + ": " + near, near <= countLevels(getLevels(1 + hysteresis))[0]);
+        }
+
+        // coming back, it only goes to the previous level once past the boundary by the band, and the cells that
+        // stayed in the band on the way out are still there
+        for (int step = 40; step >= 0; step--) {
+            moveCamera(-2 - step * 0.05f);
+            lod.update(camera, radius, false);
+            int near = lod.getCount(0);
+            assertTrue(step + ": " + near, near >= countLevels(getLevels(1 - hysteresis))[0]);
+            assertTrue(step + ": " + near, near <= countLevels(getLevels(1 + hysteresis))[0]);
+        }
+
+        // the front of the field right on the boundary: small moves flip its cells without the band only
+        float front = Float.MAX_VALUE;
+        for (int cell = 0; cell < grid.getCellCount(); cell++)
+            front = Math.min(front, bounds[cell * 6 + 2]);
+        InstanceLod noBand = createLod(new RecordingMesh[] {new RecordingMesh(), new RecordingMesh(), new RecordingMesh()},
+            store.getCount());
+        noBand.setHysteresis(0);
+        int changedWithBand = 0, changedWithoutBand = 0;
+        for (int step = 0; step < 10; step++) {
+            moveCamera(front - NEAR_LEVEL + ((step & 1) == 0 ? 0.01f : -0.01f));
+            lod.update(camera, radius, false);
+            noBand.update(camera, radius, false);
+            if (step > 0) {
+                changedWithBand += lod.getCellsChanged();
+                changedWithoutBand += noBand.getCellsChanged();
+            }
+        }
+        assertEquals(0, changedWithBand);
+        assertTrue(changedWithoutBand > 0);
+    }
+
+    @Test
+    public void spillsTheCellsThatDoNotFit() {
+        int capacity = store.getCount() / 10;
+        RecordingMesh[] meshes = {new RecordingMesh(), new RecordingMesh(), new RecordingMesh()};
+        InstanceLod lod = createLod(meshes, capacity);
+        lod.setHysteresis(0);
+        moveCamera(-1.8f); // most of the field in the first level
+
+        lod.update(camera, radius, false);
+        int[] counts = countLevels(getLevels(1));
+        assertTrue(counts[0] > capacity);
+        assertTrue(lod.getCount(0) <= capacity);
+        assertTrue(lod.getCount(1) <= capacity);
+        assertEquals(store.getCount(), lod.getVisibleCount());
+        assertTrue(lod.getCount(0) > capacity - 4 * 4 * 4); // full up to a cell
+    }
+
+    // near and middle levels of the capacity, the far one fits everything
+    private InstanceLod createLod(RecordingMesh[] meshes, int capacity) {
+        for (int level = 0; level < meshes.length; level++)
+            meshes[level].enableInstancedRendering(false, level < 2 ? capacity : store.getCount(), LAYOUT.createAttributes());
+        return new InstanceLod(store, grid, LAYOUT)
+            .addLevel(meshes[0], NEAR_LEVEL, capacity)
+            .addLevel(meshes[1], MIDDLE_LEVEL, capacity)
+            .addLevel(meshes[2], Float.POSITIVE_INFINITY, store.getCount());
+    }
+
+    private void moveCamera(float z) {
+        camera.position.set(0, 0, z);
+        camera.update();
+    }
+
+    // level of every cell from the distance to its bounds, with the boundaries scaled by the hysteresis
+    private int[] getLevels(float boundaryScale) {
+        int[] levels = new int[grid.getCellCount()];
+        Vector3 p = camera.position;
+        for (int cell = 0; cell < levels.length; cell++) {
+            int b = cell * 6;
+            float dx = Math.max(Math.max(bounds[b] - p.x, p.x - bounds[b + 3]), 0);
+            float dy = Math.max(Math.max(bounds[b + 1] - p.y, p.y - bounds[b + 4]), 0);
+            float dz = Math.max(Math.max(bounds[b + 2] - p.z, p.z - bounds[b + 5]), 0);
+            float distance = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+            levels[cell] = distance > MIDDLE_LEVEL * boundaryScale ? 2 : distance > NEAR_LEVEL * boundaryScale ? 1 : 0;
+        }
+        return levels;
+    }
+
+    private int[] countLevels(int[] levels) {
+        int[] counts = new int[3];
+        for (int cell = 0; cell < levels.length; cell++)
+            counts[levels[cell]] += grid.getCellEnd(cell) - grid.getCellStart(cell);
+        return counts;
+    }
+
+    private static boolean levelChanged(int[] previous, int[] levels, int level) {
+        for (int cell = 0; cell < levels.length; cell++)
+            if ((previous[cell] == level) != (levels[cell] == level)) return true;
+        return false;
+    }
+
+    // the instances of the cells of the level, in cell order
+    private void assertPacked(RecordingMesh mesh, int[] levels, int level) {
+        int floats = LAYOUT.floatsPerInstance;
+        float[] expected = new float[floats];
+        int offset = 0;
+        for (int cell = 0; cell < levels.length; cell++) {
+            if (levels[cell] != level) continue;
+            for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++, offset += floats) {
+                LAYOUT.pack(store, i, expected, 0);
+                for (int f = 0; f < floats; f++)
+                    assertEquals("level " + level + " instance " + i, expected[f], mesh.instanceData[offset + f], 0f);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The instance pipeline of the Basic screen against the {@link InstanceMemoryReport} budget, in every layout. */
+public class InstanceMemoryReportTest {
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Test
+    public void staysWithinTheBudget() {
+        int side = 29, instanceCount = side * side * side;
+        PerspectiveCamera camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.001f;
+        camera.far = 10f;
+        camera.position.set(0, 0, -4);
+        camera.direction.set(Vector3.Z);
+        camera.update();
+
+        for (InstanceLayout layout : InstanceLayout.values()) {
+            MathUtils.random.setSeed(42);
+            InstanceStore store = new InstanceStore(instanceCount);
+            float spacing = InstanceFields.boxField(store, side);
+            InstanceFields.alternateSpins(store, Vector3.X, Vector3.Y, 45); // the most the store holds
+
+            // the meshes count the direct memory of libGDX's instance buffer
+            RecordingMesh mesh = new RecordingMesh();
+            mesh.enableInstancedRendering(true, instanceCount, layout.createAttributes());
+            InstanceBuffer buffer = new InstanceBuffer(mesh, instanceCount, layout.floatsPerInstance);
+            buffer.setSource(store, layout);
+            buffer.markDirty(0, instanceCount);
+            InstanceUpdater updater = new InstanceUpdater(store, new SerialTaskRunner(), Vector3.X, Vector3.Y);
+            updater.setGrid(new InstanceGrid(store, 8f * spacing));
+            InstanceCompactor compactor = new InstanceCompactor(mesh, store, layout);
+            compactor.setGrid(updater.getGrid());
+            updater.update(camera, 1 / 60f, buffer);
+            compactor.compact(camera.frustum, spacing);
+
+            InstanceMemoryReport memory = InstanceMemoryReport.of(store, buffer, updater, compactor);
+            assertTrue(layout + " direct memory", memory.getDirectBytes() > 0);
+            assertTrue(layout + " over " + InstanceMemoryReport.getBudgetBytes(instanceCount, layout) + " bytes: " + memory,
+                memory.isWithinBudget(layout));
+        }
+    }
+
+    @Test
+    public void formatsTheBytesWithoutStringFormat() {
+        InstanceMemoryReport memory = new InstanceMemoryReport(2)
+            .add("heap only", 1536 * 1024, 0)
+            .add("both", 100 * 1024, 1024 * 1024);
+        assertEquals("2 instances\n  heap only: 1.5 MB heap\n  both: 0.1 MB heap, 1.0 MB direct\n"
+            + "  total: 1.6 MB heap, 1.0 MB direct, 1361920 bytes per instance", memory.toString());
+    }
+}
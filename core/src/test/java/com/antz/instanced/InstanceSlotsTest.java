@@ -0,0 +1,70 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Random adds and removes against a map of handle to value, moving the values along with the slots like
+ * {@link InstancedBatch} moves the instance data. */
+public class InstanceSlotsTest {
+
+    @Test
+    public void keepsEveryHandleOnItsInstance() {
+        InstanceSlots slots = new InstanceSlots(4);
+        IntIntMap expected = new IntIntMap();
+        IntArray live = new IntArray();
+        int[] values = new int[1 << 16]; // value of every slot, moved like the instance data
+        RandomXS128 random = new RandomXS128(1);
+
+        for (int n = 0; n < 200000; n++) {
+            if (live.size == 0 || (live.size < values.length && random.nextInt(3) != 0)) {
+                int handle = slots.add();
+                assertEquals(slots.getCount() - 1, slots.getSlot(handle));
+                values[slots.getSlot(handle)] = n;
+                expected.put(handle, n);
+                live.add(handle);
+            } else {
+                int handle = live.removeIndex(random.nextInt(live.size)); // not the end of the array: order is mixed
+                int slot = slots.getSlot(handle);
+                int moved = slots.remove(handle);
+                if (moved >= 0) values[slot] = values[moved];
+                expected.remove(handle, 0);
+                assertFalse("removed handle " + handle, slots.contains(handle));
+            }
+        }
+
+        assertEquals(expected.size, slots.getCount());
+        for (IntIntMap.Entry entry : expected) {
+            int slot = slots.getSlot(entry.key);
+            assertTrue(slot < slots.getCount());
+            assertEquals(entry.key, slots.getHandle(slot));
+            assertEquals("handle " + entry.key, entry.value, values[slot]);
+        }
+    }
+
+    @Test
+    public void movesTheLastInstanceIntoTheHole() {
+        InstanceSlots slots = new InstanceSlots(1); // grows on the second add
+        int a = slots.add(), b = slots.add(), c = slots.add();
+        assertEquals(2, slots.remove(a));
+        assertEquals(0, slots.getSlot(c));
+        assertEquals(1, slots.getSlot(b));
+        assertEquals(-1, slots.remove(b)); // the last one, nothing moves
+        assertEquals(1, slots.getCount());
+
+        // handles are reused
+        int d = slots.add();
+        assertTrue(d == a || d == b);
+        assertEquals(1, slots.getSlot(d));
+
+        slots.clear();
+        assertEquals(0, slots.getCount());
+        assertEquals(0, slots.add());
+    }
+}
@@ -0,0 +1,92 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** The {@link InstanceStore} transforms against the {@link Matrix4} ones the screens used to keep per instance. */
+public class InstanceStoreTest {
+
+    @Test
+    public void composesTheSameMatrixAsMatrix4() {
+        RandomXS128 random = new RandomXS128(42);
+        InstanceStore store = new InstanceStore(100);
+        Vector3 position = new Vector3();
+        Quaternion rotation = new Quaternion();
+        Matrix4 expected = new Matrix4();
+        float[] actual = new float[16];
+        for (int i = 0; i < store.getCount(); i++) {
+            position.set(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+            rotation.setEulerAngles(random.nextFloat() * 360, random.nextFloat() * 360, random.nextFloat() * 360);
+            float scale = 0.5f + random.nextFloat();
+            store.set(i, position.x, position.y, position.z, rotation, scale);
+
+            store.getMatrix(i, actual, 0);
+            expected.set(position, rotation, new Vector3(scale, scale, scale));
+            assertArrayEquals("instance " + i, expected.val, actual, 1e-6f);
+        }
+    }
+
+    @Test
+    public void rotatesLikeMatrix4() {
+        // the update loop of the Basic screen before the store: Matrix4.rotate() every frame, every other instance
+        // around X or Y
+        InstanceStore store = new InstanceStore(2);
+        Matrix4[] matrices = {new Matrix4(), new Matrix4()};
+        Quaternion start = new Quaternion().setEulerAngles(30, 60, 90);
+        for (int i = 0; i < 2; i++) {
+            store.set(i, i, 2 * i, 3 * i, start, 1f);
+            matrices[i].set(new Vector3(i, 2 * i, 3 * i), start);
+        }
+
+        float delta = 1 / 60f;
+        Quaternion rotationX = new Quaternion(Vector3.X, 45 * delta), rotationY = new Quaternion(Vector3.Y, 45 * delta);
+        for (int frame = 0; frame < 600; frame++) {
+            store.rotate(0, rotationX);
+            matrices[0].rotate(Vector3.X, 45 * delta);
+            store.rotate(1, rotationY);
+            matrices[1].rotate(Vector3.Y, 45 * delta);
+        }
+
+        float[] actual = new float[16];
+        for (int i = 0; i < 2; i++) {
+            store.getMatrix(i, actual, 0);
+            assertArrayEquals("instance " + i, matrices[i].val, actual, 1e-4f);
+        }
+    }
+
+    @Test
+    public void permutesEveryArray() {
+        InstanceStore store = new InstanceStore(3);
+        for (int i = 0; i < 3; i++) {
+            store.set(i, i, 0, 0, new Quaternion(Vector3.Y, 10 * i), 1 + i);
+            store.setSpin(i, Vector3.X, i);
+        }
+        store.permute(new int[] {2, 0, 1});
+
+        Vector3 position = new Vector3();
+        Quaternion rotation = new Quaternion();
+        int[] from = {2, 0, 1};
+        for (int i = 0; i < 3; i++) {
+            assertEquals(from[i], store.getPosition(i, position).x, 0f);
+            assertEquals(1 + from[i], store.scales[i], 0f);
+            assertEquals(10 * from[i], store.getRotation(i, rotation).getAngleAround(Vector3.Y), 1e-3f);
+            assertEquals(from[i] * MathUtils.degreesToRadians, store.getSpins()[i * 4 + 3], 1e-6f);
+        }
+    }
+
+    @Test
+    public void writesNoSpinWithoutSpins() {
+        InstanceStore store = new InstanceStore(1);
+        float[] out = new float[12];
+        store.getAnimated(0, out, 0);
+        assertArrayEquals(new float[] {0, 0, 0, 1, 0, 0, 0, 1, 1, 0, 0, 0}, out, 0f);
+    }
+}
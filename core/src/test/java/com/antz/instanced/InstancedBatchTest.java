@@ -0,0 +1,168 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Spawning and despawning through an {@link InstancedBatch}, checked on what a {@link RecordingMesh} would draw. */
+public class InstancedBatchTest {
+
+    private static final int FLOATS = InstanceLayout.MATRIX.floatsPerInstance;
+
+    private final RecordingMesh mesh = new RecordingMesh();
+
+    @Test
+    public void drawsHiddenInstancesFromTheStart() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 256);
+        assertEquals(0, batch.getCount());
+        assertEquals(64, batch.getDrawnCount());
+        assertEquals(64, mesh.drawnInstances);
+        assertEquals(1, mesh.fullUploads);
+        assertHidden(batch);
+    }
+
+    @Test
+    public void sendsOnlyTheInstancesThatChanged() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 256);
+        mesh.clearRecord();
+        int a = batch.add(translation(1)), b = batch.add(translation(2)), c = batch.add(translation(3));
+        batch.flush();
+        assertEquals(0, mesh.fullUploads);
+        assertEquals(64, mesh.drawnInstances); // the hidden instances were filled
+        assertInstance(0, translation(1));
+        assertInstance(1, translation(2));
+        assertInstance(2, translation(3));
+
+        mesh.clearRecord();
+        batch.update(b, translation(5));
+        batch.flush();
+        assertEquals(1, mesh.rangeOffsets.size);
+        assertEquals(FLOATS, mesh.rangeOffsets.get(0));
+        assertEquals(FLOATS, mesh.rangeCounts.get(0));
+        assertInstance(1, translation(5));
+        assertTrue(batch.contains(a) && batch.contains(c));
+    }
+
+    @Test
+    public void movesTheLastInstanceIntoARemovedOne() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 256);
+        int a = batch.add(translation(1)), b = batch.add(translation(2)), c = batch.add(translation(3));
+        batch.remove(a);
+        batch.flush();
+        assertFalse(batch.contains(a));
+        assertEquals(2, batch.getCount());
+        assertInstance(0, translation(3));
+        assertInstance(1, translation(2));
+        assertHidden(batch); // the last slot was emptied
+
+        // the handle follows its instance to the new slot
+        batch.update(c, translation(4));
+        batch.remove(b);
+        batch.flush();
+        assertInstance(0, translation(4));
+        assertHidden(batch);
+    }
+
+    @Test
+    public void growsAndKeepsTheInstances() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 4);
+        assertEquals(4, batch.getDrawnCount()); // the hidden instances do not grow the mesh
+        for (int i = 0; i < 5; i++)
+            batch.add(translation(i));
+        batch.flush();
+        assertEquals(1, batch.getGrowCount());
+        assertEquals(8, batch.getCapacity());
+        assertEquals(8, mesh.instanceCapacity);
+        assertEquals(8, mesh.drawnInstances);
+        for (int i = 0; i < 5; i++)
+            assertInstance(i, translation(i));
+        assertHidden(batch);
+
+        for (int i = 5; i < 100; i++)
+            batch.add(translation(i));
+        batch.flush();
+        assertEquals(128, batch.getCapacity());
+        assertEquals(5, batch.getGrowCount());
+        for (int i = 0; i < 100; i++)
+            assertInstance(i, translation(i));
+    }
+
+    @Test
+    public void shrinksTheDrawnInstancesAfterDespawning() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 1024);
+        int[] handles = new int[600];
+        for (int i = 0; i < handles.length; i++)
+            handles[i] = batch.add(translation(i));
+        batch.flush();
+        assertTrue(batch.getDrawnCount() >= 600);
+        assertEquals(batch.getDrawnCount(), mesh.drawnInstances);
+
+        mesh.clearRecord();
+        for (int i = 10; i < handles.length; i++) {
+            batch.remove(handles[i]);
+            batch.flush();
+        }
+        assertEquals(10, batch.getCount());
+        assertTrue(batch.getDrawnCount() + " drawn", batch.getDrawnCount() <= 10 + 2 * 64);
+        assertEquals(batch.getDrawnCount(), mesh.drawnInstances);
+        assertTrue(mesh.fullUploads + " full uploads", mesh.fullUploads < 10); // not one per removal
+        for (int i = 0; i < 10; i++)
+            assertInstance(i, translation(i));
+        assertHidden(batch);
+    }
+
+    @Test
+    public void packsTheLayoutOfTheBatch() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.COMPACT, 16);
+        Quaternion rotation = new Quaternion(Vector3.Y, 30);
+        Vector3 position = new Vector3(1, 2, 3);
+        batch.add(position, rotation, 0.5f);
+        batch.add(new Matrix4().set(position, rotation, new Vector3(0.5f, 0.5f, 0.5f)));
+        batch.flush();
+
+        float[] expected = new float[InstanceLayout.COMPACT.floatsPerInstance];
+        InstanceStore store = new InstanceStore(1);
+        store.set(0, 1, 2, 3, rotation, 0.5f);
+        InstanceLayout.COMPACT.pack(store, 0, expected, 0);
+        for (int slot = 0; slot < 2; slot++) {
+            for (int i = 0; i < expected.length; i++)
+                assertEquals("slot " + slot + " float " + i, expected[i], mesh.instanceData[slot * expected.length + i], 1e-6f);
+        }
+    }
+
+    @Test
+    public void clearsToHiddenInstances() {
+        InstancedBatch batch = new InstancedBatch(mesh, InstanceLayout.MATRIX, 256);
+        for (int i = 0; i < 100; i++)
+            batch.add(translation(i));
+        batch.flush();
+        batch.clear();
+        assertEquals(0, batch.getCount());
+        assertEquals(64, mesh.drawnInstances);
+        assertHidden(batch);
+    }
+
+    private static Matrix4 translation(float x) {
+        return new Matrix4().setToTranslation(x, 0, 0);
+    }
+
+    private void assertInstance(int slot, Matrix4 expected) {
+        float[] actual = new float[FLOATS];
+        System.arraycopy(mesh.instanceData, slot * FLOATS, actual, 0, FLOATS);
+        assertArrayEquals("slot " + slot, expected.val, actual, 0f);
+    }
+
+    // the shaders collapse instances of all zeros to a point
+    private void assertHidden(InstancedBatch batch) {
+        int floats = mesh.instanceData.length / mesh.instanceCapacity;
+        for (int i = batch.getCount() * floats; i < batch.getDrawnCount() * floats; i++)
+            assertEquals("float " + i, 0f, mesh.instanceData[i], 0f);
+    }
+}
@@ -0,0 +1,108 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Renderables of a few shaders and materials in random order, as the renderable providers hand them to the batch. */
+public class InstancedRenderableSorterTest {
+
+    private static final int SHADERS = 4, MATERIALS = 8;
+
+    private final InstancedRenderableSorter sorter = new InstancedRenderableSorter();
+    private final Camera camera = new PerspectiveCamera();
+    private final RandomXS128 random = new RandomXS128(42);
+    private final Shader[] shaders = new Shader[SHADERS];
+    private final Material[] materials = new Material[MATERIALS];
+
+    public InstancedRenderableSorterTest() {
+        for (int i = 0; i < SHADERS; i++)
+            shaders[i] = new NoShader();
+        for (int i = 0; i < MATERIALS; i++)
+            materials[i] = new Material(ColorAttribute.createDiffuse(new Color(i / (float)MATERIALS, 0, 0, 1)));
+    }
+
+    @Test
+    public void bindsEveryShaderAndMaterialOnce() {
+        Array<Renderable> renderables = new Array<>();
+        for (int i = 0; i < 1024; i++)
+            renderables.add(renderable(materials[random.nextInt(MATERIALS)]));
+        int before = InstancedRenderableSorter.countStateChanges(renderables);
+
+        sorter.sort(camera, renderables);
+        ObjectSet<Shader> doneShaders = new ObjectSet<>();
+        ObjectSet<Material> doneMaterials = new ObjectSet<>();
+        for (int i = 1; i < renderables.size; i++) {
+            Renderable previous = renderables.get(i - 1), renderable = renderables.get(i);
+            if (previous.shader != renderable.shader) {
+                doneShaders.add(previous.shader);
+                doneMaterials.clear();
+            } else if (previous.material != renderable.material) {
+                doneMaterials.add(previous.material);
+            }
+            assertFalse("renderable " + i + " binds a shader again", doneShaders.contains(renderable.shader));
+            assertFalse("renderable " + i + " binds a material again", doneMaterials.contains(renderable.material));
+        }
+        assertTrue(InstancedRenderableSorter.countStateChanges(renderables) < SHADERS + SHADERS * MATERIALS);
+        assertTrue(before > SHADERS * MATERIALS);
+    }
+
+    @Test
+    public void drawsTheBlendedOnesLastBackToFront() {
+        Material blended = new Material(new BlendingAttribute(0.5f));
+        Array<Renderable> renderables = new Array<>();
+        for (int i = 0; i < 64; i++) {
+            Renderable renderable = renderable(random.nextBoolean() ? blended : materials[random.nextInt(MATERIALS)]);
+            renderable.worldTransform.setToTranslation(random.nextFloat() * 10, 0, random.nextFloat() * 10);
+            renderables.add(renderable);
+        }
+
+        sorter.sort(camera, renderables);
+        float distance = Float.POSITIVE_INFINITY;
+        boolean blending = false;
+        for (Renderable renderable : renderables) {
+            if (renderable.material != blended) {
+                assertFalse("opaque after blended", blending);
+                continue;
+            }
+            blending = true;
+            float next = renderable.worldTransform.getTranslation(new Vector3()).dst2(camera.position);
+            assertTrue(next <= distance);
+            distance = next;
+        }
+        assertTrue(blending);
+    }
+
+    private Renderable renderable(Material material) {
+        Renderable renderable = new Renderable();
+        renderable.shader = shaders[random.nextInt(SHADERS)];
+        renderable.material = material;
+        return renderable;
+    }
+
+    // the sorter only compares shaders, nothing is drawn
+    private static class NoShader implements Shader {
+        @Override public void init() {}
+        @Override public int compareTo(Shader other) { return 0; }
+        @Override public boolean canRender(Renderable instance) { return true; }
+        @Override public void begin(Camera camera, RenderContext context) {}
+        @Override public void render(Renderable renderable) {}
+        @Override public void end() {}
+        @Override public void dispose() {}
+    }
+}
@@ -0,0 +1,61 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.utils.IntArray;
+
+/** Mesh keeping the instance data it is sent in a float array instead of an instance buffer object, so the classes
+ * uploading instances can be tested without a GL context: the vertices are a plain vertex array too. It records the
+ * ranges of every update, in floats. */
+class RecordingMesh extends Mesh {
+
+    float[] instanceData;           // what the GPU would have, null until instancing is enabled
+    int instanceCapacity;
+    int drawnInstances;             // set by the last setInstanceData()
+    int fullUploads;
+    final IntArray rangeOffsets = new IntArray(), rangeCounts = new IntArray();
+    private int floatsPerInstance;
+
+    RecordingMesh() {
+        super(VertexDataType.VertexArray, true, 4, 6, VertexAttribute.Position());
+    }
+
+    @Override
+    public Mesh enableInstancedRendering(boolean isStatic, int maxInstances, VertexAttribute... attributes) {
+        if (instanceData != null) throw new IllegalStateException("instancing enabled twice");
+        floatsPerInstance = new VertexAttributes(attributes).vertexSize / 4;
+        instanceCapacity = maxInstances;
+        instanceData = new float[maxInstances * floatsPerInstance];
+        return this;
+    }
+
+    @Override
+    public Mesh disableInstancedRendering() {
+        instanceData = null;
+        instanceCapacity = 0;
+        return this;
+    }
+
+    @Override
+    public Mesh setInstanceData(float[] data, int offset, int count) {
+        System.arraycopy(data, offset, instanceData, 0, count);
+        drawnInstances = count / floatsPerInstance;
+        fullUploads++;
+        return this;
+    }
+
+    @Override
+    public Mesh updateInstanceData(int targetOffset, float[] source, int sourceOffset, int count) {
+        System.arraycopy(source, sourceOffset, instanceData, targetOffset, count);
+        rangeOffsets.add(targetOffset);
+        rangeCounts.add(count);
+        return this;
+    }
+
+    void clearRecord() {
+        fullUploads = 0;
+        rangeOffsets.clear();
+        rangeCounts.clear();
+    }
+}
@@ -0,0 +1,97 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** The shadow maps a {@link ShadowCache} draws over the cascades of the PBR screen: none for a still camera and the
+ * same instances, all of them when the instances change, and with the updates limited, the ones waiting the longest. */
+public class ShadowCacheTest {
+
+    private static final int CASCADES = 4;
+    private static final float SHADOW_DISTANCE = 360;
+
+    private final Vector3 lightDirection = new Vector3(1, -1, 1).nor();
+    private PerspectiveCamera camera;
+    private ShadowCascades cascades;
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Before
+    public void setUp() {
+        camera = new PerspectiveCamera(45, 1920, 1080);
+        camera.near = 0.1f;
+        camera.far = 3636;
+        camera.position.set(900, 20, 900);
+        camera.direction.set(1, -0.2f, 0.5f).nor();
+        camera.up.set(Vector3.Y);
+        camera.update();
+        cascades = new ShadowCascades(CASCADES, 2048);
+        cascades.setCasterDistance(100);
+    }
+
+    @Test
+    public void drawsNothingForAStillCamera() {
+        ShadowCache cache = new ShadowCache(CASCADES);
+        update(cache, 1);
+        assertEquals(CASCADES, cache.getDrawnCount());
+        for (int frame = 0; frame < 10; frame++) {
+            update(cache, 1);
+            assertEquals("frame " + frame, 0, cache.getDrawnCount());
+            for (int i = 0; i < CASCADES; i++)
+                assertFalse(cache.isDrawn(i));
+        }
+    }
+
+    @Test
+    public void drawsEveryMapWhenTheInstancesChange() {
+        ShadowCache cache = new ShadowCache(CASCADES);
+        update(cache, 1);
+        update(cache, 1);
+        update(cache, 2);
+        assertEquals(CASCADES, cache.getDrawnCount());
+        for (int i = 0; i < CASCADES; i++)
+            assertTrue("cascade " + i, cache.isDrawn(i));
+        update(cache, 2);
+        assertEquals(0, cache.getDrawnCount());
+    }
+
+    @Test
+    public void drawsTheMapsWaitingTheLongestFirst() {
+        ShadowCache cache = new ShadowCache(CASCADES);
+        cache.setMaxUpdates(1);
+
+        // all waiting as long: the closest cascade first; the version changes once the first two are drawn, the last
+        // two have been waiting longer and go before them
+        int[] expected = {0, 1, 2, 3, 0, 1};
+        for (int frame = 0; frame < expected.length; frame++) {
+            update(cache, frame < 2 ? 1 : 2);
+            assertEquals("frame " + frame, 1, cache.getDrawnCount());
+            assertEquals("frame " + frame, expected[frame], getDrawn(cache));
+        }
+        update(cache, 2);
+        assertEquals(0, cache.getDrawnCount());
+    }
+
+    private void update(ShadowCache cache, long version) {
+        cascades.update(camera, SHADOW_DISTANCE, lightDirection);
+        cache.update(cascades, lightDirection, version);
+    }
+
+    private static int getDrawn(ShadowCache cache) {
+        for (int i = 0; i < cache.getCount(); i++)
+            if (cache.isDrawn(i)) return i;
+        return -1;
+    }
+}
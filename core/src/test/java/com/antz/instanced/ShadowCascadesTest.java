@@ -0,0 +1,99 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The split schemes, and for random camera positions and directions with the camera and light of the PBR screen,
+ * that the light camera of every cascade, set up as DirectionalShadowLight does, sees the whole view from the near
+ * plane to the split of the cascade, that the boxes keep their size when the camera turns and that their centers move
+ * by whole texels. */
+public class ShadowCascadesTest {
+
+    private static final int MAP_SIZE = 2048;
+    private static final float SHADOW_DISTANCE = 360;
+
+    private final Vector3 lightDirection = new Vector3(1, -1, 1).nor();
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load(); // camera.update() uses native Matrix4.prj()
+    }
+
+    @Test
+    public void splitsUniformlyLogarithmicallyAndInBetween() {
+        float[] splits = new float[5];
+        ShadowCascades.computeSplits(1, 81, 4, 0, splits);
+        for (int i = 0; i < 5; i++)
+            assertEquals("uniform split " + i, 1 + 20 * i, splits[i], 1e-3f);
+        ShadowCascades.computeSplits(1, 81, 4, 1, splits);
+        for (int i = 0; i < 5; i++)
+            assertEquals("logarithmic split " + i, (float)Math.pow(3, i), splits[i], 1e-3f);
+        ShadowCascades.computeSplits(0.1f, 360, 4, 0.75f, splits);
+        for (int i = 1; i < 5; i++)
+            assertTrue(splits[i - 1] + ", " + splits[i], splits[i] > splits[i - 1]);
+    }
+
+    @Test
+    public void coversTheViewWithBoxesOfConstantSize() {
+        for (int cascadeCount : new int[] {1, 4}) {
+            PerspectiveCamera camera = new PerspectiveCamera(45, 1920, 1080);
+            camera.near = 0.1f;
+            camera.far = 3636;
+            ShadowCascades cascades = new ShadowCascades(cascadeCount, MAP_SIZE);
+            cascades.setCasterDistance(100);
+
+            RandomXS128 random = new RandomXS128(42);
+            float[] sizes = new float[cascadeCount];
+            for (int n = 0; n < 200; n++) {
+                camera.position.set(random.nextFloat(), random.nextFloat(), random.nextFloat()).scl(1800);
+                camera.direction.set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).nor();
+                camera.up.set(Vector3.Y); // not perpendicular to the direction, as with FirstPersonCameraController
+                camera.update();
+                cascades.update(camera, SHADOW_DISTANCE, lightDirection);
+                for (int i = 0; i < cascadeCount; i++) {
+                    checkCovered(cascades, camera, i);
+                    if (n > 0) assertEquals("size of cascade " + i, sizes[i], cascades.getSize(i), 0f);
+                    sizes[i] = cascades.getSize(i);
+                    if (i > 0) assertTrue("cascade 0 is the closest", cascades.getSplit(i) > cascades.getSplit(i - 1));
+                }
+            }
+        }
+    }
+
+    // the light camera as DirectionalShadowLight#validate() places it
+    private void checkCovered(ShadowCascades cascades, PerspectiveCamera camera, int cascade) {
+        float depth = cascades.getDepth(cascade);
+        OrthographicCamera light = new OrthographicCamera(cascades.getSize(cascade), cascades.getSize(cascade));
+        light.near = 0;
+        light.far = depth;
+        light.position.set(lightDirection).scl(-depth / 2).add(cascades.getCenter(cascade));
+        light.direction.set(lightDirection);
+        light.up.set(Vector3.Y);
+        light.normalizeUp();
+        light.update();
+
+        Vector3 corner = new Vector3();
+        for (int c = 0; c < 8; c++) {
+            cascades.getSliceCorner(camera, camera.near, cascades.getSplit(cascade), c, corner).prj(light.combined);
+            assertTrue("corner " + c + " of cascade " + cascade + " is outside its light box: " + corner,
+                Math.abs(corner.x) <= 1.0001f && Math.abs(corner.y) <= 1.0001f && Math.abs(corner.z) <= 1.0001f);
+        }
+
+        // the center moves by whole texels across the light, up to float rounding kilometers away from the origin
+        double texel = cascades.getSize(cascade) / (double)MAP_SIZE;
+        Vector3 right = new Vector3(light.direction).crs(light.up).nor();
+        for (float offset : new float[] {cascades.getCenter(cascade).dot(right), cascades.getCenter(cascade).dot(light.up)}) {
+            double texels = offset / texel;
+            assertEquals("texels of cascade " + cascade, Math.round(texels), texels, 0.05);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.antz.instanced;
+
+import com.antz.instanced.FrameMetrics.Metric;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.StringBuilder;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/** The numbers of the stats HUD, and a frame of its text allocating nothing once warmed up. */
+public class StatsHudTest {
+
+    private final FrameMetrics metrics = new FrameMetrics(300);
+    private final StatsHud hud = new StatsHud(null, 3, 10, 40, 40); // never drawn, no font needed
+    private final Vector3 position = new Vector3(0.125f, -0.5f, 1.75f);
+
+    @Test
+    public void appendsFixedDecimals() {
+        assertEquals("1.50", fixed(1.5f, 2));
+        assertEquals("-0.13", fixed(-0.125f, 2));
+        assertEquals("0.00", fixed(-0.001f, 2)); // no minus zero
+        assertEquals("3", fixed(3.14159f, 0));
+        assertEquals("12.063", fixed(12.0625f, 3));
+        assertEquals("7.05", fixed(7.05f, 2)); // leading zero of the decimals
+        assertEquals("(0.13, -0.50, 1.75)", StatsHud.appendFixed(new StringBuilder(), position, 2).toString());
+    }
+
+    private static String fixed(float value, int decimals) {
+        return StatsHud.appendFixed(new StringBuilder(), value, decimals).toString();
+    }
+
+    @Test
+    public void writesAFrameWithoutAllocating() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int frame = 0; frame < 20000; frame++)
+            frame(frame);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int frame = 0; frame < 1000; frame++)
+            frame(frame);
+        assertEquals("bytes allocated by 1000 frames", 0, threads.getThreadAllocatedBytes(thread) - before);
+    }
+
+    // the kind of lines the screens show
+    private void frame(int frame) {
+        metrics.beginFrame();
+        metrics.begin(Metric.UPDATE);
+        position.x += 0.001f;
+        metrics.end(Metric.UPDATE);
+        metrics.endFrame(1 / 60f, null);
+
+        hud.line(0).append("Rotation: ").append((frame & 1) == 0).append("   Updated: ").append(frame)
+            .append("   Bytes Uploaded: ").append(frame * 48L);
+        StringBuilder line = hud.line(1).append("Update Time: ");
+        StatsHud.appendFixed(line, metrics.getLatest(Metric.UPDATE), 2).append("ms   Camera Position: ");
+        StatsHud.appendFixed(line, position, 2).append("  ");
+        metrics.appendGLCounters(line);
+        metrics.appendSummary(hud.line(2).append("Frame Time min/avg/p95/p99: "), Metric.FRAME).append("ms");
+    }
+}
@@ -0,0 +1,83 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** A palette compressed chunk against a plain array, through every palette size and back. */
+public class VoxelChunkTest {
+
+    private static final int SIZE = VoxelWorld.CHUNK_SIZE;
+
+    @Test
+    public void readsBackThroughPaletteGrowthAndCompaction() {
+        VoxelChunk chunk = new VoxelChunk(0, 0, 0);
+        byte[] expected = new byte[SIZE * SIZE * SIZE];
+        RandomXS128 random = new RandomXS128(3);
+        for (int types : new int[] {1, 2, 3, 15, 200, 2, 1}) {
+            for (int n = 0; n < 20000; n++) {
+                int i = random.nextInt(expected.length);
+                byte type = (byte)random.nextInt(types + 1);
+                expected[i] = type;
+                chunk.set(i >> 10, (i >> 5) & 31, i & 31, type);
+            }
+            if (types == 1) chunk.compact();
+
+            int solid = 0;
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(types + " types, " + chunk.getBits() + " bits, voxel " + i, expected[i],
+                    chunk.get(i >> 10, (i >> 5) & 31, i & 31));
+                if (expected[i] != 0) solid++;
+            }
+            assertEquals(solid, chunk.getSolidCount());
+        }
+    }
+
+    @Test
+    public void compactsASingleTypeToNoVoxelData() {
+        VoxelChunk chunk = new VoxelChunk(0, 0, 0);
+        for (int x = 0; x < SIZE; x++)
+            for (int y = 0; y < SIZE; y++)
+                for (int z = 0; z < SIZE; z++)
+                    chunk.set(x, y, z, (byte)(x < 4 ? 7 : 3));
+        assertEquals(2, chunk.getBits()); // air, 7 and 3
+
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < SIZE; y++)
+                for (int z = 0; z < SIZE; z++)
+                    chunk.set(x, y, z, (byte)3);
+        chunk.compact();
+        assertEquals(0, chunk.getBits());
+        assertEquals(1, chunk.getPaletteSize());
+        assertEquals(3, chunk.get(5, 6, 7));
+        assertEquals(SIZE * SIZE * SIZE, chunk.getSolidCount());
+        assertTrue(chunk.getMemoryBytes() < 8); // the palette alone
+    }
+
+    @Test
+    public void compactsGroundAndAirToOneBit() {
+        VoxelChunk chunk = new VoxelChunk(0, 0, 0);
+        chunk.set(1, 2, 3, (byte)9);
+        chunk.set(1, 2, 4, (byte)5);
+        chunk.set(1, 2, 3, (byte)0);
+        assertEquals(2, chunk.getBits());
+        chunk.compact();
+        assertEquals(1, chunk.getBits());
+        assertEquals(5, chunk.get(1, 2, 4));
+        assertEquals(0, chunk.get(1, 2, 3));
+        assertTrue(chunk.getMemoryBytes() < 8 + SIZE * SIZE * SIZE / 8);
+    }
+
+    @Test
+    public void startsAsAirWithoutVoxelData() {
+        VoxelChunk chunk = new VoxelChunk(1, -2, 3);
+        assertEquals(0, chunk.get(0, 0, 0));
+        assertEquals(0, chunk.getBits());
+        assertEquals(0, chunk.getSolidCount());
+        chunk.compact();
+        assertEquals(0, chunk.getBits());
+    }
+}
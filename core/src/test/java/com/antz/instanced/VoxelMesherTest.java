@@ -0,0 +1,100 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Greedy meshing against counting the faces between a block and air one voxel at a time, and the chunks an edit
+ * marks for meshing again. */
+public class VoxelMesherTest {
+
+    private final VoxelMesher mesher = new VoxelMesher();
+    private final FloatArray vertices = new FloatArray();
+
+    @Test
+    public void meshesOneBlockAsACube() {
+        VoxelWorld world = new VoxelWorld();
+        world.set(3, 4, 5, (byte)1);
+        assertEquals(6, mesher.mesh(world, world.getChunk(0, 0, 0), vertices));
+        assertEquals(6, mesher.getFaceCount());
+        assertEquals(6 * VoxelMesher.VERTICES_PER_QUAD * VoxelMesher.FLOATS_PER_VERTEX, vertices.size);
+    }
+
+    @Test
+    public void mergesTheFacesOfASlab() {
+        VoxelWorld world = new VoxelWorld();
+        for (int x = 0; x < 4; x++)
+            for (int z = 0; z < 4; z++)
+                world.set(x, 0, z, (byte)1);
+        assertEquals(6, mesher.mesh(world, world.getChunk(0, 0, 0), vertices));
+        assertEquals(4 * 4 * 2 + 4 * 4, mesher.getFaceCount());
+    }
+
+    @Test
+    public void coversTheExposedFacesOfTheTerrain() {
+        MathUtils.random.setSeed(42);
+        int instanceCount = 29 * 29 * 29;
+        VoxelWorld world = new VoxelWorld();
+        InstanceFields.voxelTerrain(world, instanceCount, 1, (byte)1);
+
+        long quads = 0, faces = 0;
+        for (VoxelChunk chunk : world.getChunks()) {
+            quads += mesher.mesh(world, chunk, vertices);
+            faces += mesher.getFaceCount();
+        }
+        assertEquals(countExposedFaces(world), faces);
+        assertTrue(quads * 2 + " triangles", quads * 2 < instanceCount * 12L); // 12 per cube instance
+        assertTrue(quads + " quads for " + faces + " faces", quads < faces);
+    }
+
+    @Test
+    public void remeshesOnlyTheChunksAnEditTouches() {
+        VoxelWorld world = new VoxelWorld();
+        world.set(-1, 0, 0, (byte)1);
+        world.set(0, -1, 0, (byte)1);
+        world.set(40, 40, 40, (byte)1); // not a neighbour of chunk 0, 0, 0
+        world.set(5, 5, 5, (byte)1);
+        Array<VoxelChunk> dirty = new Array<>();
+        world.takeDirtyChunks(dirty);
+        dirty.clear();
+
+        world.set(5, 6, 5, (byte)2);
+        world.takeDirtyChunks(dirty);
+        assertEquals(1, dirty.size);
+
+        // a voxel on the corner of a chunk touches the chunks before it, where there are any
+        dirty.clear();
+        world.set(0, 0, 0, (byte)2);
+        world.takeDirtyChunks(dirty);
+        assertEquals(3, dirty.size);
+        assertTrue(dirty.contains(world.getChunk(0, 0, 0), true));
+        assertTrue(dirty.contains(world.getChunk(-1, 0, 0), true));
+        assertTrue(dirty.contains(world.getChunk(0, -1, 0), true));
+    }
+
+    private static long countExposedFaces(VoxelWorld world) {
+        long faces = 0;
+        for (VoxelChunk chunk : world.getChunks()) {
+            int x0 = chunk.x * VoxelWorld.CHUNK_SIZE, y0 = chunk.y * VoxelWorld.CHUNK_SIZE, z0 = chunk.z * VoxelWorld.CHUNK_SIZE;
+            for (int x = x0; x < x0 + VoxelWorld.CHUNK_SIZE; x++) {
+                for (int y = y0; y < y0 + VoxelWorld.CHUNK_SIZE; y++) {
+                    for (int z = z0; z < z0 + VoxelWorld.CHUNK_SIZE; z++) {
+                        if (world.get(x, y, z) == 0) continue;
+                        if (world.get(x - 1, y, z) == 0) faces++;
+                        if (world.get(x + 1, y, z) == 0) faces++;
+                        if (world.get(x, y - 1, z) == 0) faces++;
+                        if (world.get(x, y + 1, z) == 0) faces++;
+                        if (world.get(x, y, z - 1) == 0) faces++;
+                        if (world.get(x, y, z + 1) == 0) faces++;
+                    }
+                }
+            }
+        }
+        return faces;
+    }
+}
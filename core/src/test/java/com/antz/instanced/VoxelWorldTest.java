@@ -0,0 +1,104 @@
+package com.antz.instanced;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The voxel terrain of the Basic screen as a {@link VoxelWorld}: the same blocks as the instanced terrain of the same
+ * seed, at most 1 bit per voxel, and instanced as the blocks with a face showing, also after digging. */
+public class VoxelWorldTest {
+
+    private static final int SIDE = 29, INSTANCE_COUNT = SIDE * SIDE * SIDE;
+
+    private VoxelWorld world;
+
+    @Before
+    public void setUp() {
+        MathUtils.random.setSeed(42);
+        world = new VoxelWorld();
+        InstanceFields.voxelTerrain(world, INSTANCE_COUNT, 1, (byte)1);
+    }
+
+    @Test
+    public void holdsTheBlocksOfTheInstancedTerrain() {
+        MathUtils.random.setSeed(42);
+        InstanceStore store = new InstanceStore(INSTANCE_COUNT);
+        float size = 1f / (float)Math.sqrt(INSTANCE_COUNT) * 0.95f;
+        float spacing = InstanceFields.voxelTerrain(store, size);
+        VoxelWorld fromInstances = new VoxelWorld();
+        float[] positions = store.positions;
+        for (int i = 0; i < store.getCount() * 3; i += 3)
+            fromInstances.set(Math.round(positions[i] / spacing), Math.round(positions[i + 1] / spacing),
+                Math.round(positions[i + 2] / spacing), (byte)1);
+
+        assertEquals(fromInstances.getSolidCount(), world.getSolidCount());
+        for (VoxelChunk chunk : fromInstances.getChunks()) {
+            int x0 = chunk.x * VoxelWorld.CHUNK_SIZE, y0 = chunk.y * VoxelWorld.CHUNK_SIZE, z0 = chunk.z * VoxelWorld.CHUNK_SIZE;
+            for (int x = x0; x < x0 + VoxelWorld.CHUNK_SIZE; x++)
+                for (int y = y0; y < y0 + VoxelWorld.CHUNK_SIZE; y++)
+                    for (int z = z0; z < z0 + VoxelWorld.CHUNK_SIZE; z++)
+                        assertEquals(x + ", " + y + ", " + z, fromInstances.get(x, y, z), world.get(x, y, z));
+        }
+    }
+
+    @Test
+    public void takesAtMostOneBitPerVoxel() {
+        // ground and air chunks: 1 bit per voxel and a palette of 2 types
+        long budget = world.getChunks().size * (VoxelWorld.CHUNK_SIZE * VoxelWorld.CHUNK_SIZE * VoxelWorld.CHUNK_SIZE / 8 + 2L);
+        assertTrue(world.getMemoryBytes() + " bytes, more than " + budget, world.getMemoryBytes() <= budget);
+    }
+
+    @Test
+    public void instancesTheBlocksShowing() {
+        assertEquals(countExposed(), world.countExposed());
+
+        InstanceStore store = new InstanceStore(world.countExposed());
+        assertEquals(store.getCount(), world.getExposed(store, 0.5f));
+        Vector3 position = new Vector3();
+        for (int i = 0; i < store.getCount(); i++) {
+            store.getPosition(i, position).scl(2);
+            assertTrue("instance " + i + " at " + position,
+                world.isExposed(Math.round(position.x), Math.round(position.y), Math.round(position.z)));
+        }
+    }
+
+    @Test
+    public void instancesTheBlockUncoveredByDigging() {
+        VoxelWorld cube = new VoxelWorld();
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++)
+                for (int z = 0; z < 3; z++)
+                    cube.set(x, y, z, (byte)1);
+        assertEquals(26, cube.countExposed()); // all but the middle one
+
+        cube.set(1, 2, 1, (byte)0);
+        assertEquals(26, cube.countExposed());
+        InstanceStore store = new InstanceStore(cube.countExposed());
+        cube.getExposed(store, 1f);
+        boolean middle = false;
+        Vector3 position = new Vector3();
+        for (int i = 0; i < store.getCount(); i++) {
+            store.getPosition(i, position);
+            assertTrue(position.toString(), cube.get((int)position.x, (int)position.y, (int)position.z) != 0);
+            if (position.epsilonEquals(1, 1, 1, 0)) middle = true;
+        }
+        assertTrue(middle);
+    }
+
+    private long countExposed() {
+        long exposed = 0;
+        for (VoxelChunk chunk : world.getChunks()) {
+            int x0 = chunk.x * VoxelWorld.CHUNK_SIZE, y0 = chunk.y * VoxelWorld.CHUNK_SIZE, z0 = chunk.z * VoxelWorld.CHUNK_SIZE;
+            for (int x = x0; x < x0 + VoxelWorld.CHUNK_SIZE; x++)
+                for (int y = y0; y < y0 + VoxelWorld.CHUNK_SIZE; y++)
+                    for (int z = z0; z < z0 + VoxelWorld.CHUNK_SIZE; z++)
+                        if (world.isExposed(x, y, z)) exposed++;
+        }
+        return exposed;
+    }
+}
@@ -0,0 +1,156 @@
+package com.antz.instanced.shader;
+
+import com.antz.instanced.InstanceLayout;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.BaseShaderProvider;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Renderables of a few permutations (instanced or not, instance layout, material flags) sent through two shader
+ * providers sharing a {@link ShaderCache}, as the providers of two screens, with shaders that count their
+ * compilations instead of compiling. The key is built as MyPBRShaderProvider does. */
+public class ShaderCacheTest {
+
+    private static final String VERTEX_SHADER = "void main() { gl_Position = vec4(0.0); }";
+    private static final String FRAGMENT_SHADER = "void main() { gl_FragColor = vec4(1.0); }";
+    private static final int MATERIALS = 4;
+
+    private ShaderCache cache;
+    private int compiled, initialized, disposed;
+
+    @Test
+    public void compilesEveryPermutationOnce() {
+        Material[] materials = new Material[MATERIALS];
+        materials[0] = new Material(ColorAttribute.createDiffuse(Color.WHITE));
+        materials[1] = new Material(ColorAttribute.createDiffuse(Color.RED)); // same flags, same shader
+        materials[2] = new Material(ColorAttribute.createDiffuse(Color.WHITE), new BlendingAttribute());
+        materials[3] = new Material(ColorAttribute.createDiffuse(Color.WHITE), FloatAttribute.createAlphaTest(0.5f));
+
+        for (int renderableCount : new int[] {8, 4096}) {
+            RandomXS128 random = new RandomXS128(42);
+            Array<Renderable> renderables = new Array<>();
+            for (int i = 0; i < renderableCount; i++) {
+                Renderable renderable = new Renderable();
+                renderable.material = materials[random.nextInt(MATERIALS)];
+                int layout = random.nextInt(InstanceLayout.values().length + 1);
+                renderable.userData = layout == 0 ? null : InstanceLayout.values()[layout - 1]; // null: not instanced
+                renderables.add(renderable);
+            }
+
+            cache = new ShaderCache();
+            compiled = initialized = disposed = 0;
+            CountingProvider first = new CountingProvider(), second = new CountingProvider();
+            for (Renderable renderable : renderables)
+                first.getShader(renderable);
+            for (Renderable renderable : renderables)
+                second.getShader(renderable);
+
+            // 3 material flag sets, the two diffuse colors share theirs
+            int permutations = (1 + InstanceLayout.values().length) * (MATERIALS - 1);
+            String message = renderableCount + " renderables";
+            assertTrue(message, compiled <= Math.min(permutations, renderableCount));
+            if (renderableCount > 1000) assertEquals(message, permutations, compiled);
+            assertEquals(message, compiled, initialized);
+            assertEquals(message + ", the second provider compiled none", compiled, cache.getHits());
+
+            // the programs go with the last provider using them
+            first.dispose();
+            assertEquals(message, 0, disposed);
+            assertEquals(message, compiled, cache.getSize());
+            second.dispose();
+            assertEquals(message, compiled, disposed);
+            assertEquals(message, 0, cache.getSize());
+        }
+    }
+
+    @Test
+    public void keepsAShaderThatCannotRenderTheCallers() {
+        cache = new ShaderCache();
+        Renderable instanced = new Renderable(), notInstanced = new Renderable();
+        instanced.material = notInstanced.material = new Material();
+        instanced.userData = InstanceLayout.MATRIX;
+
+        Shader shader = new CountingShader(prefix(instanced));
+        cache.add("key", shader);
+        assertNull(cache.obtain("key", notInstanced));
+        Shader other = new CountingShader(prefix(notInstanced));
+        cache.add("key", other); // the cached one stays
+        assertSame(shader, cache.obtain("key", instanced));
+        assertTrue(cache.release(other)); // never cached
+        assertFalse(cache.release(shader));
+        assertTrue(cache.release(shader));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void keysTheSourcesByHash() {
+        assertEquals(ShaderCache.key("#define a\n", VERTEX_SHADER, FRAGMENT_SHADER),
+            ShaderCache.key("#define a\n", new String(VERTEX_SHADER), FRAGMENT_SHADER));
+        assertFalse(ShaderCache.key("#define a\n", VERTEX_SHADER, FRAGMENT_SHADER)
+            .equals(ShaderCache.key("#define a\n", FRAGMENT_SHADER, VERTEX_SHADER)));
+        assertFalse(ShaderCache.key("", null, null).equals(ShaderCache.key("", VERTEX_SHADER, null)));
+    }
+
+    // what the prefix of MyPBRShaderProvider depends on: material attributes, instancing and instance layout
+    private static String prefix(Renderable renderable) {
+        String prefix = "#define materialMask " + renderable.material.getMask() + "\n";
+        if (renderable.userData != null)
+            prefix += "#define instanced\n" + ((InstanceLayout)renderable.userData).getShaderDefines();
+        return prefix;
+    }
+
+    private class CountingProvider extends BaseShaderProvider {
+        @Override
+        protected Shader createShader(Renderable renderable) {
+            String prefix = prefix(renderable);
+            String key = ShaderCache.key(prefix, VERTEX_SHADER, FRAGMENT_SHADER);
+            Shader shader = cache.obtain(key, renderable);
+            if (shader == null) {
+                shader = new CountingShader(prefix);
+                cache.add(key, shader);
+            }
+            return shader;
+        }
+    }
+
+    // stands for a compiled program, renders what has its prefix
+    private class CountingShader implements Shader {
+        private final String prefix;
+        private boolean isInitialized;
+
+        CountingShader(String prefix) {
+            this.prefix = prefix;
+            compiled++;
+        }
+
+        @Override public void init() {
+            if (isInitialized) return;
+            isInitialized = true;
+            initialized++;
+        }
+        @Override public int compareTo(Shader other) { return 0; }
+        @Override public boolean canRender(Renderable renderable) { return prefix.equals(prefix(renderable)); }
+        @Override public void begin(Camera camera, RenderContext context) {}
+        @Override public void render(Renderable renderable) {}
+        @Override public void end() {}
+        @Override public void dispose() {
+            if (cache.release(this)) disposed++;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.antz.instanced.shader;
+
+import com.antz.instanced.InstanceLayout;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.Pool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** The shader permutations of renderables of random combinations of vertex attributes, instance layout and material
+ * flags. Meshes with instancing need a GL context, so the renderables are described by their attributes, what the key
+ * of a permutation is made from. */
+public class ShaderWarmupTest {
+
+    private final VertexAttributes[] vertexAttributes = {
+        new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0)),
+        new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.Tangent(), VertexAttribute.TexCoords(0))};
+    private final VertexAttributes[] instancedAttributes = new VertexAttributes[InstanceLayout.values().length + 1]; // 0: not instanced
+    private final Material[] materials = {
+        new Material(ColorAttribute.createDiffuse(Color.WHITE)),
+        new Material(ColorAttribute.createDiffuse(Color.RED)), // same flags, same shader
+        new Material(ColorAttribute.createDiffuse(Color.WHITE), new BlendingAttribute()),
+        new Material(ColorAttribute.createDiffuse(Color.WHITE), FloatAttribute.createAlphaTest(0.5f))};
+
+    public ShaderWarmupTest() {
+        InstanceLayout[] layouts = InstanceLayout.values();
+        for (int i = 0; i < layouts.length; i++)
+            instancedAttributes[i + 1] = new VertexAttributes(layouts[i].createAttributes());
+    }
+
+    @Test
+    public void findsOnePermutationPerCombination() {
+        RandomXS128 random = new RandomXS128(42);
+        ShaderWarmup warmup = new ShaderWarmup();
+        ObjectSet<String> combinations = new ObjectSet<>();
+        for (int i = 0; i < 4096; i++) {
+            int vertex = random.nextInt(vertexAttributes.length), instanced = random.nextInt(instancedAttributes.length);
+            int material = random.nextInt(materials.length);
+            Renderable renderable = new Renderable();
+            renderable.material = materials[material];
+            warmup.add(ShaderWarmup.key(vertexAttributes[vertex], instancedAttributes[instanced], materials[material]), renderable);
+            // materials 0 and 1 only differ by color
+            combinations.add(vertex + "/" + instanced + "/" + Math.max(1, material));
+        }
+        assertEquals(combinations.size, warmup.getPermutationCount());
+        assertEquals(vertexAttributes.length * instancedAttributes.length * (materials.length - 1), combinations.size);
+    }
+
+    @Test
+    public void tellsTheInstanceLayoutsApart() {
+        ObjectSet<String> keys = new ObjectSet<>();
+        for (VertexAttributes attributes : instancedAttributes)
+            keys.add(ShaderWarmup.key(vertexAttributes[0], attributes, materials[0]));
+        assertEquals("instance layouts sharing permutations: " + keys, instancedAttributes.length, keys.size);
+
+        for (InstanceLayout layout : InstanceLayout.values())
+            assertSame(layout, InstanceLayout.of(new VertexAttributes(layout.createAttributes())));
+        assertSame(InstanceLayout.MATRIX, InstanceLayout.of((VertexAttributes)null));
+    }
+
+    @Test
+    public void keepsACopyOfTheFirstRenderable() {
+        ShaderWarmup warmup = new ShaderWarmup();
+        Renderable first = new Renderable(), second = new Renderable();
+        first.material = materials[0];
+        first.environment = new Environment();
+        second.material = materials[1];
+        String key = ShaderWarmup.key(vertexAttributes[0], null, materials[0]);
+        assertTrue(warmup.add(key, first));
+        assertFalse(warmup.add(key, second));
+
+        Array<Renderable> renderables = new Array<>();
+        warmup.getRenderables(renderables, new Pool<Renderable>() {
+            @Override
+            protected Renderable newObject() {
+                return new Renderable();
+            }
+        });
+        assertEquals(1, renderables.size);
+        assertSame(materials[0], renderables.first().material);
+        assertNull("the pass sets its own environment", renderables.first().environment);
+        assertEquals(key, warmup.getKeys().first());
+
+        warmup.clear();
+        assertEquals(0, warmup.getPermutationCount());
+    }
+}
@@ -2,27 +2,68 @@ package com.antz.instanced.lwjgl3;
 
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.antz.instanced.ForkJoinTaskRunner;
 import com.antz.instanced.ModelInstancedRendering;
+import com.antz.instanced.RenderingConfig;
 
-/** Launches the desktop (LWJGL3) application. */
+/** Launches the desktop (LWJGL3) application.
+ *
+ * Settings of {@link RenderingConfig} come from system properties {@code -Dinstanced.<key>=<value>}, then from the
+ * arguments {@code --<key>=<value>} or {@code --<key> <value>}, for example:
+ * <pre>
+ * --screen=basic --field=voxel --instances=250000 --culling=0.5 --layout=compact --vsync=false --fps=-1
+ * </pre>
+ * {@code --benchmark [camera path]} replays a camera path instead of letting the user fly, logs the frame metrics and
+ * exits at its end, see {@link com.antz.instanced.CameraReplay}. */
 public class Lwjgl3Launcher {
+
     public static void main(String[] args) {
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        createApplication(parseConfig(args));
+    }
+
+    private static Lwjgl3Application createApplication(RenderingConfig config) {
+        return new Lwjgl3Application(new ModelInstancedRendering(new ForkJoinTaskRunner(), config), getDefaultConfiguration(config));
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new ModelInstancedRendering(), getDefaultConfiguration());
+    static RenderingConfig parseConfig(String[] args) {
+        RenderingConfig config = new RenderingConfig();
+        for (String key : RenderingConfig.KEYS) {
+            String value = System.getProperty("instanced." + key);
+            if (value != null) config.set(key, value);
+        }
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("expected --<key>=<value> instead of " + args[i] + ", keys: " + RenderingConfig.USAGE);
+            String key = args[i].substring(2), value;
+            int equals = key.indexOf('=');
+            if (equals >= 0) {
+                value = key.substring(equals + 1);
+                key = key.substring(0, equals);
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                value = args[++i];
+            } else if (key.equals("benchmark")) {
+                value = ""; // the default camera path
+            } else {
+                throw new IllegalArgumentException("missing value of --" + key);
+            }
+            config.set(key, value);
+        }
+        return config;
     }
 
-    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration(RenderingConfig config) {
         Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
         configuration.setTitle("Model Instanced Rendering");
-        configuration.useVsync(true);
+        configuration.useVsync(config.vsync);
         configuration.setMaximized(true);
         configuration.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.GL30,4,3);
-        //// Limits FPS to the refresh rate of the currently active monitor.
-        configuration.setForegroundFPS(Lwjgl3ApplicationConfiguration.getDisplayMode().refreshRate);
+        //// Limits FPS to the refresh rate of the currently active monitor, unless --fps says otherwise.
+        if (config.fpsCap == 0)
+            configuration.setForegroundFPS(Lwjgl3ApplicationConfiguration.getDisplayMode().refreshRate);
+        else
+            configuration.setForegroundFPS(Math.max(0, config.fpsCap)); // 0 is no limit
         //// If you remove the above line and set Vsync to false, you can get unlimited FPS, which can be
         //// useful for testing performance, but can also be very stressful to some hardware.
         //// You may also need to configure GPU drivers to fully disable Vsync; this can cause screen tearing.